@@ -0,0 +1,71 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+/**
+ * The neighbours of the nodes of a graph whose nodes are numbered 0, ...,
+ * size() - 1, grouped by node: the neighbours of node n are at the positions
+ * start(n), ..., end(n) - 1 and can be obtained by get. This is all a Model
+ * and its algorithms need of the transitions, so that they can be kept on the
+ * heap, as a CompressedSparseRow, or in memory-mapped files, as a
+ * MappedCompressedSparseRow.
+ *
+ * Implementations should support concurrent reads.
+ */
+public interface Adjacency {
+	/**
+	 * Returns the number of nodes.
+	 *
+	 * @return the number of nodes
+	 */
+	int size();
+
+	/**
+	 * Returns the position of the first neighbour of the given node.
+	 *
+	 * @param node a node
+	 * @return the position of the first neighbour of the given node
+	 */
+	int start(int node);
+
+	/**
+	 * Returns the position following the last neighbour of the given node.
+	 *
+	 * @param node a node
+	 * @return the position following the last neighbour of the given node
+	 */
+	int end(int node);
+
+	/**
+	 * Returns the number of neighbours of the given node.
+	 *
+	 * @param node a node
+	 * @return the number of neighbours of the given node
+	 */
+	default int degree(int node) {
+		return this.end(node) - this.start(node);
+	}
+
+	/**
+	 * Returns the neighbour at the given position.
+	 *
+	 * @param position a position between start(n) and end(n) - 1 for some node n
+	 * @return the neighbour at the given position
+	 */
+	int get(int position);
+}
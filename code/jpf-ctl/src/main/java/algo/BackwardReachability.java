@@ -0,0 +1,82 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.BitSet;
+
+/**
+ * Backward reachability over the predecessors of a graph. This is the fixpoint
+ * underlying EF, EU and AG: the states that can reach a given set of states
+ * along a path that stays within another given set of states.
+ *
+ * The states to be explored are kept in a ring buffer of ints and the visited
+ * states in the bit set that holds the result, so that no objects are created
+ * per visited state. The buffer is allocated once and reused by every call,
+ * hence a kernel should not be used by several threads at the same time.
+ */
+public class BackwardReachability {
+	private final Adjacency pre;
+
+	// the states to be explored are queue[head], ..., queue[tail - 1], modulo its length
+	private final int[] queue;
+
+	/**
+	 * Initializes this kernel for the graph with the given predecessors.
+	 *
+	 * @param pre the predecessors of each node of the graph
+	 */
+	public BackwardReachability(Adjacency pre) {
+		this.pre = pre;
+		this.queue = new int[Math.max(1, pre.size())];
+	}
+
+	/**
+	 * Adds to the given set all states that can reach one of its states along a
+	 * path of which all states, except for the last, are in the given set of
+	 * allowed states. The given set is both the start and the result of the
+	 * search, and serves to mark the visited states.
+	 *
+	 * @param reached the states to start from, to which the reached states are added
+	 * @param allowed the states that may be passed through, or null if all states may be
+	 */
+	public void reach(BitSet reached, BitSet allowed) {
+		int capacity = this.queue.length;
+		int head = 0;
+		int tail = 0;
+		int size = 0;
+		for (int state = reached.nextSetBit(0); state >= 0; state = reached.nextSetBit(state + 1)) {
+			this.queue[tail] = state;
+			tail = tail + 1 == capacity ? 0 : tail + 1;
+			size++;
+		}
+		while (size > 0) {
+			int target = this.queue[head];
+			head = head + 1 == capacity ? 0 : head + 1;
+			size--;
+			for (int position = this.pre.start(target); position < this.pre.end(target); position++) {
+				int source = this.pre.get(position);
+				if (!reached.get(source) && (allowed == null || allowed.get(source))) {
+					reached.set(source);
+					this.queue[tail] = source;
+					tail = tail + 1 == capacity ? 0 : tail + 1;
+					size++;
+				}
+			}
+		}
+	}
+}
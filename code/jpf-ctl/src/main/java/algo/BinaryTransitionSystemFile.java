@@ -0,0 +1,288 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary alternative to the .tra and .lab files, written by the
+ * PartialTransitionSystemListener if its format option is binary. A single
+ * file contains the transitions, the states that are not fully explored and
+ * the labels, and is several times smaller, and faster to write and read, than
+ * the text files.
+ *
+ * All numbers are written as variable length integers, seven bits per byte,
+ * least significant first, with the high bit set in all but the last byte.
+ * Numbers that may be negative are zigzag encoded first, so that small
+ * negative numbers take a single byte as well. The file consists of
+ * <ul>
+ * <li>a header: the bytes of {@code MAGIC} followed by the version;</li>
+ * <li>the adjacency: the number of sources, and for each source, in increasing
+ * order, the difference with the previous source (zigzag, the first with 0),
+ * the number of its targets, the difference of the first target with the
+ * source (zigzag) and the differences of the other targets with the previous
+ * one, in increasing order;</li>
+ * <li>the states that are not fully explored: the number of bytes of a bitmap
+ * followed by the bitmap, in the format of {@link BitSet#toByteArray()};</li>
+ * <li>the labels: the number of fields and their qualified names, each as the
+ * number of its UTF-8 bytes followed by these bytes, where the index of a field
+ * is its position; the number of labelled states, and for each labelled state,
+ * in increasing order, the difference with the previous one (the first with
+ * 0), the number of its labels and the differences of its labels with the
+ * previous label (the first with 0), in increasing order.</li>
+ * </ul>
+ *
+ * As with the text files, the transitions to the sink state are not written;
+ * the states that are not fully explored are.
+ */
+public final class BinaryTransitionSystemFile {
+	private static final byte[] MAGIC = { 'L', 'P', 'T', 'S' };
+	private static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// at most five bytes of seven bits make up an int
+	private static final int MAX_VARINT_BYTES = 5;
+
+	private BinaryTransitionSystemFile() {
+	}
+
+	/**
+	 * Writes the given system to the given file.
+	 *
+	 * @param file        the file to write to
+	 * @param transitions the targets of each source
+	 * @param partial     the states that are not fully explored, which are not
+	 *                    negative
+	 * @param fields      the qualified names of the fields, by index
+	 * @param labels      the indices of the fields that hold in each labelled
+	 *                    state, which is not negative
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, Map<Integer, ? extends Collection<Integer>> transitions,
+			Collection<Integer> partial, List<String> fields, Map<Integer, BitSet> labels) throws IOException {
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+			output.write(MAGIC);
+			output.write(VERSION);
+
+			int[] sources = toSortedArray(transitions.keySet());
+			writeVarint(output, sources.length);
+			int previous = 0;
+			for (int source : sources) {
+				writeVarint(output, zigzag(source - previous));
+				int[] targets = toSortedArray(transitions.get(source));
+				writeVarint(output, targets.length);
+				for (int i = 0; i < targets.length; i++) {
+					if (i == 0) {
+						writeVarint(output, zigzag(targets[i] - source));
+					} else {
+						writeVarint(output, targets[i] - targets[i - 1]);
+					}
+				}
+				previous = source;
+			}
+
+			BitSet bitmap = new BitSet();
+			for (int state : partial) {
+				bitmap.set(state);
+			}
+			byte[] bytes = bitmap.toByteArray();
+			writeVarint(output, bytes.length);
+			output.write(bytes);
+
+			writeVarint(output, fields.size());
+			for (String field : fields) {
+				byte[] name = field.getBytes(StandardCharsets.UTF_8);
+				writeVarint(output, name.length);
+				output.write(name);
+			}
+			int[] labelled = toSortedArray(labels.keySet());
+			writeVarint(output, labelled.length);
+			previous = 0;
+			for (int state : labelled) {
+				writeVarint(output, state - previous);
+				BitSet set = labels.get(state);
+				writeVarint(output, set.cardinality());
+				int previousLabel = 0;
+				for (int label = set.nextSetBit(0); label >= 0; label = set.nextSetBit(label + 1)) {
+					writeVarint(output, label - previousLabel);
+					previousLabel = label;
+				}
+				previous = state;
+			}
+		}
+	}
+
+	/**
+	 * Adds the transitions, the states that are not fully explored, the labels and
+	 * the fields of the given file to the given builder.
+	 *
+	 * @param file    a file written by {@link #write}
+	 * @param builder a builder
+	 * @throws IOException if the file cannot be read or is not well formed
+	 */
+	static void read(Path file, LabelledPartialTransitionSystem.Builder builder) throws IOException {
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+			byte[] magic = new byte[MAGIC.length];
+			readFully(input, magic, file);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException(file + ": not a binary labelled partial transition system");
+			}
+			int version = input.read();
+			if (version != VERSION) {
+				throw new IOException(file + ": version " + version + " is not supported");
+			}
+
+			int sources = readCount(input, file);
+			int source = 0;
+			for (int i = 0; i < sources; i++) {
+				source += unzigzag(readVarint(input, file));
+				int targets = readCount(input, file);
+				int target = source;
+				for (int j = 0; j < targets; j++) {
+					target += j == 0 ? unzigzag(readVarint(input, file)) : readVarint(input, file);
+					builder.addTransition(source, target);
+				}
+			}
+
+			byte[] bytes = new byte[readCount(input, file)];
+			readFully(input, bytes, file);
+			BitSet partial = BitSet.valueOf(bytes);
+			for (int state = partial.nextSetBit(0); state >= 0; state = partial.nextSetBit(state + 1)) {
+				builder.addPartial(state);
+			}
+
+			int fields = readCount(input, file);
+			for (int index = 0; index < fields; index++) {
+				byte[] name = new byte[readCount(input, file)];
+				readFully(input, name, file);
+				builder.addField(new String(name, StandardCharsets.UTF_8), index);
+			}
+			int labelled = readCount(input, file);
+			int state = 0;
+			for (int i = 0; i < labelled; i++) {
+				state += readVarint(input, file);
+				int labels = readCount(input, file);
+				int label = 0;
+				for (int j = 0; j < labels; j++) {
+					label += readVarint(input, file);
+					if (label >= fields) {
+						throw new IOException(file + ": label " + label + " of state " + state + " is not a field");
+					}
+					builder.addLabel(state, label);
+				}
+			}
+
+			if (input.read() != -1) {
+				throw new IOException(file + ": unexpected data after the labels");
+			}
+		}
+	}
+
+	/*
+	 * Returns the given numbers as an array in increasing order.
+	 */
+	private static int[] toSortedArray(Collection<Integer> numbers) {
+		int[] array = new int[numbers.size()];
+		int i = 0;
+		for (int number : numbers) {
+			array[i++] = number;
+		}
+		Arrays.sort(array);
+		return array;
+	}
+
+	/*
+	 * Maps numbers of small magnitude, negative or not, to small unsigned numbers:
+	 * 0, -1, 1, -2, ... to 0, 1, 2, 3, ...
+	 */
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/*
+	 * Writes the given number, interpreted as unsigned, seven bits per byte.
+	 */
+	private static void writeVarint(OutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	/*
+	 * Reads a number written by writeVarint.
+	 */
+	private static int readVarint(InputStream input, Path file) throws IOException {
+		int value = 0;
+		for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+			int b = input.read();
+			if (b == -1) {
+				throw new EOFException(file + ": unexpected end of the file");
+			}
+			value |= (b & 0x7F) << (7 * i);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException(file + ": a number is longer than " + MAX_VARINT_BYTES + " bytes");
+	}
+
+	/*
+	 * Reads a number of elements, which is not negative.
+	 */
+	private static int readCount(InputStream input, Path file) throws IOException {
+		int count = readVarint(input, file);
+		if (count < 0) {
+			throw new IOException(file + ": negative number of elements " + count);
+		}
+		return count;
+	}
+
+	/*
+	 * Fills the given array with the next bytes of the given input.
+	 */
+	private static void readFully(InputStream input, byte[] bytes, Path file) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			int read = input.read(bytes, offset, bytes.length - offset);
+			if (read == -1) {
+				throw new EOFException(file + ": unexpected end of the file");
+			}
+			offset += read;
+		}
+	}
+}
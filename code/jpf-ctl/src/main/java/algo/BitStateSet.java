@@ -0,0 +1,83 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.BitSet;
+
+/**
+ * A set of states backed by a bit set. The bulk operations are performed a word
+ * (64 states) at a time.
+ */
+public class BitStateSet implements StateSet {
+	private final BitSet bits;
+
+	/**
+	 * Initializes this set with the given bits. The bit set is not copied and
+	 * should not be modified afterwards.
+	 *
+	 * @param bits the indices of the states of this set
+	 */
+	public BitStateSet(BitSet bits) {
+		this.bits = bits;
+	}
+
+	@Override
+	public boolean contains(int index) {
+		return this.bits.get(index);
+	}
+
+	@Override
+	public int cardinality() {
+		return this.bits.cardinality();
+	}
+
+	@Override
+	public int nextSetBit(int fromIndex) {
+		return this.bits.nextSetBit(fromIndex);
+	}
+
+	@Override
+	public int nextClearBit(int fromIndex) {
+		return this.bits.nextClearBit(fromIndex);
+	}
+
+	@Override
+	public BitSet toBitSet() {
+		return (BitSet) this.bits.clone();
+	}
+
+	@Override
+	public void retainIn(BitSet bits) {
+		bits.and(this.bits);
+	}
+
+	@Override
+	public void addTo(BitSet bits) {
+		bits.or(this.bits);
+	}
+
+	@Override
+	public void removeFrom(BitSet bits) {
+		bits.andNot(this.bits);
+	}
+
+	@Override
+	public String toString() {
+		return this.bits.toString();
+	}
+}
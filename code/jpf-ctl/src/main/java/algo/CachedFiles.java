@@ -0,0 +1,163 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files of a cache, in the order in which they were last used, and their
+ * total size, which is bounded. The last modification time of a file records
+ * when it was last used, so that the order survives the process.
+ *
+ * The directory is listed once, when the files are first needed. From then on
+ * the files are tracked in memory, so that using or storing a file takes
+ * constant time, and the least recently used files are removed only when the
+ * total size exceeds the maximum. Files that other processes store in the
+ * same directory in the meantime are not counted.
+ */
+class CachedFiles {
+	private final Path directory;
+	private final String extension;
+	private final long maximumSize;
+
+	// the size of each file, from the least to the most recently used, or null if the directory has not been listed yet
+	private LinkedHashMap<Path, Long> files;
+	private long size;
+
+	/**
+	 * Initializes the files of the cache in the given directory that have the
+	 * given extension, whose total size is at most the given maximum.
+	 *
+	 * @param directory   the directory of the cache
+	 * @param extension   the extension of the files of the cache
+	 * @param maximumSize the maximum total size, in bytes, of the files
+	 */
+	CachedFiles(Path directory, String extension, long maximumSize) {
+		this.directory = directory;
+		this.extension = extension;
+		this.maximumSize = maximumSize;
+		this.files = null;
+		this.size = 0;
+	}
+
+	/**
+	 * Records that the given file has been used.
+	 *
+	 * @param file a file of the cache
+	 */
+	synchronized void used(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// the file is considered less recently used than it is
+		}
+		// if the directory has not been listed yet, the modification time orders the file
+		if (this.files != null) {
+			Long bytes = this.files.remove(file);
+			if (bytes != null) {
+				this.files.put(file, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Records that the given file has been stored, replacing the file with the
+	 * same name, if any, and removes the least recently used files while their
+	 * total size exceeds the maximum.
+	 *
+	 * @param file a file of the cache
+	 * @throws IOException if the directory cannot be listed or a file cannot be
+	 *                     measured or removed
+	 */
+	synchronized void stored(Path file) throws IOException {
+		this.list();
+		Long previous = this.files.remove(file);
+		if (previous != null) {
+			this.size -= previous;
+		}
+		long bytes = Files.size(file);
+		this.files.put(file, bytes);
+		this.size += bytes;
+
+		Iterator<Map.Entry<Path, Long>> iterator = this.files.entrySet().iterator();
+		while (this.size > this.maximumSize && iterator.hasNext()) {
+			Map.Entry<Path, Long> eldest = iterator.next();
+			Files.deleteIfExists(eldest.getKey());
+			this.size -= eldest.getValue();
+			iterator.remove();
+		}
+	}
+
+	/*
+	 * Lists the files of the cache, in order of their last modification time, if
+	 * that has not been done yet.
+	 */
+	private void list() throws IOException {
+		if (this.files != null) {
+			return;
+		}
+		List<Path> found = new ArrayList<Path>();
+		if (Files.isDirectory(this.directory)) {
+			try (Stream<Path> entries = Files.list(this.directory)) {
+				found = entries.filter(file -> file.toString().endsWith(this.extension))
+						.collect(Collectors.toList());
+			}
+		}
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Path file : found) {
+			try {
+				entries.add(new Entry(file, Files.getLastModifiedTime(file).toMillis(), Files.size(file)));
+			} catch (NoSuchFileException e) {
+				// the file has been removed in the meantime
+			}
+		}
+		entries.sort(Comparator.comparingLong(entry -> entry.used));
+		this.files = new LinkedHashMap<Path, Long>();
+		for (Entry entry : entries) {
+			this.files.put(entry.file, entry.size);
+			this.size += entry.size;
+		}
+	}
+
+	/*
+	 * A file of the cache, when it was last used, and its size.
+	 */
+	private static class Entry {
+		private final Path file;
+		private final long used;
+		private final long size;
+
+		Entry(Path file, long used, long size) {
+			this.file = file;
+			this.used = used;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package algo;
+
+import java.util.BitSet;
+
+/**
+ * The complement of a set of states, that is, the states with index between 0
+ * and size - 1 that are not in the set. The complement is a view and does not
+ * copy the set.
+ */
+public class ComplementStateSet implements StateSet {
+	private final StateSet set;
+	private final int size;
+
+	private ComplementStateSet(StateSet set, int size) {
+		this.set = set;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the complement of the given set of states with respect to the states
+	 * with index between 0 and size - 1.
+	 *
+	 * @param set  a set of states
+	 * @param size the number of states
+	 * @return the complement of the given set of states
+	 */
+	public static StateSet of(StateSet set, int size) {
+		if (set instanceof ComplementStateSet) {
+			return ((ComplementStateSet) set).set;
+		} else {
+			return new ComplementStateSet(set, size);
+		}
+	}
+
+	@Override
+	public boolean contains(int index) {
+		return index >= 0 && index < this.size && !this.set.contains(index);
+	}
+
+	@Override
+	public int cardinality() {
+		return this.size - this.set.cardinality();
+	}
+
+	@Override
+	public int nextSetBit(int fromIndex) {
+		int next = this.set.nextClearBit(fromIndex);
+		return next < this.size ? next : -1;
+	}
+
+	@Override
+	public int nextClearBit(int fromIndex) {
+		int next = this.set.nextSetBit(fromIndex);
+		return next >= 0 ? next : Math.max(fromIndex, this.size);
+	}
+
+	@Override
+	public BitSet toBitSet() {
+		BitSet bits = this.set.toBitSet();
+		bits.flip(0, this.size);
+		return bits;
+	}
+
+	@Override
+	public void retainIn(BitSet bits) {
+		this.set.removeFrom(bits);
+	}
+
+	@Override
+	public void addTo(BitSet bits) {
+		bits.or(this.toBitSet());
+	}
+
+	@Override
+	public void removeFrom(BitSet bits) {
+		this.set.retainIn(bits);
+	}
+
+	@Override
+	public String toString() {
+		return this.toBitSet().toString();
+	}
+}
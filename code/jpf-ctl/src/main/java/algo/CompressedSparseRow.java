@@ -0,0 +1,123 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+/**
+ * A compressed sparse row (CSR) representation of the edges of a graph whose
+ * nodes are numbered 0, ..., size() - 1. The neighbours of node n are stored in
+ * the positions start(n), ..., end(n) - 1 and can be obtained by get.
+ */
+public class CompressedSparseRow implements Adjacency {
+	// offsets[n] is the position of the first neighbour of node n, offsets[size] the number of edges
+	private final int[] offsets;
+
+	// the neighbours of all nodes, grouped by node
+	private final int[] neighbours;
+
+	/**
+	 * Initializes this CSR with the given edges. The i-th edge goes from
+	 * {@code from[i]} to {@code to[i]}, for 0 <= i < edges.
+	 *
+	 * @param size  the number of nodes
+	 * @param from  the nodes the edges start in
+	 * @param to    the nodes the edges end in
+	 * @param edges the number of edges
+	 */
+	public CompressedSparseRow(int size, int[] from, int[] to, int edges) {
+		this.offsets = new int[size + 1];
+		this.neighbours = new int[edges];
+
+		// count the neighbours of each node
+		for (int i = 0; i < edges; i++) {
+			this.offsets[from[i] + 1]++;
+		}
+		for (int n = 0; n < size; n++) {
+			this.offsets[n + 1] += this.offsets[n];
+		}
+
+		// place the neighbours (counting sort on the start node)
+		int[] next = new int[size];
+		System.arraycopy(this.offsets, 0, next, 0, size);
+		for (int i = 0; i < edges; i++) {
+			this.neighbours[next[from[i]]++] = to[i];
+		}
+	}
+
+	/*
+	 * Initializes this CSR with the given offsets and neighbours, which are not
+	 * copied.
+	 */
+	CompressedSparseRow(int[] offsets, int[] neighbours) {
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 *
+	 * @return the number of nodes
+	 */
+	@Override
+	public int size() {
+		return this.offsets.length - 1;
+	}
+
+	/**
+	 * Returns the position of the first neighbour of the given node.
+	 *
+	 * @param node a node
+	 * @return the position of the first neighbour of the given node
+	 */
+	@Override
+	public int start(int node) {
+		return this.offsets[node];
+	}
+
+	/**
+	 * Returns the position following the last neighbour of the given node.
+	 *
+	 * @param node a node
+	 * @return the position following the last neighbour of the given node
+	 */
+	@Override
+	public int end(int node) {
+		return this.offsets[node + 1];
+	}
+
+	/**
+	 * Returns the number of neighbours of the given node.
+	 *
+	 * @param node a node
+	 * @return the number of neighbours of the given node
+	 */
+	@Override
+	public int degree(int node) {
+		return this.offsets[node + 1] - this.offsets[node];
+	}
+
+	/**
+	 * Returns the neighbour at the given position.
+	 *
+	 * @param position a position between start(n) and end(n) - 1 for some node n
+	 * @return the neighbour at the given position
+	 */
+	@Override
+	public int get(int position) {
+		return this.neighbours[position];
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A compressed set of states. The indices are split into chunks of 2^16
+ * consecutive indices and the states of each nonempty chunk are kept in a
+ * container: a sorted array if there are few of them, a run-length encoding if
+ * they form few ranges, and a bitmap otherwise. As JPF numbers states in the
+ * order in which they are discovered, the sets of states computed by the model
+ * checker are often either very sparse or consist of a few long ranges, and
+ * then this representation is much smaller than a bit set.
+ */
+public class CompressedStateSet implements StateSet {
+	// number of bits of an index that determine its position within a chunk
+	private static final int CHUNK_BITS = 16;
+
+	// number of indices per chunk
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	// size in bytes of a bitmap container
+	private static final int BITMAP_BYTES = CHUNK_SIZE / Byte.SIZE;
+
+	// estimated overhead in bytes of a container, including its key
+	private static final int CONTAINER_BYTES = 32;
+
+	// the chunks that contain states, in increasing order
+	private final int[] keys;
+
+	// the container of each chunk
+	private final Container[] containers;
+
+	private final int cardinality;
+
+	/**
+	 * Initializes this set with the given states.
+	 *
+	 * @param bits the indices of the states of this set
+	 */
+	public CompressedStateSet(BitSet bits) {
+		int chunks = (bits.length() + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+		int[] cardinalities = new int[chunks];
+		int[] runs = new int[chunks];
+		census(bits, cardinalities, runs);
+
+		int nonempty = 0;
+		for (int key = 0; key < chunks; key++) {
+			if (cardinalities[key] > 0) {
+				nonempty++;
+			}
+		}
+
+		this.keys = new int[nonempty];
+		this.containers = new Container[nonempty];
+		int cardinality = 0;
+		int position = 0;
+		for (int key = 0; key < chunks; key++) {
+			if (cardinalities[key] > 0) {
+				this.keys[position] = key;
+				this.containers[position] = container(bits, key, cardinalities[key], runs[key]);
+				cardinality += cardinalities[key];
+				position++;
+			}
+		}
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Returns an estimate of the number of bytes a compressed set with the given
+	 * states takes.
+	 *
+	 * @param bits the indices of some states
+	 * @return an estimate of the size in bytes of a compressed set with those states
+	 */
+	public static long sizeInBytes(BitSet bits) {
+		int chunks = (bits.length() + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+		int[] cardinalities = new int[chunks];
+		int[] runs = new int[chunks];
+		census(bits, cardinalities, runs);
+
+		long size = 0;
+		for (int key = 0; key < chunks; key++) {
+			if (cardinalities[key] > 0) {
+				size += CONTAINER_BYTES + Math.min(BITMAP_BYTES, Math.min(2L * cardinalities[key], 4L * runs[key]));
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * Computes, for each chunk, the number of states and the number of ranges of
+	 * consecutive states in the given set.
+	 */
+	private static void census(BitSet bits, int[] cardinalities, int[] runs) {
+		for (int start = bits.nextSetBit(0); start >= 0; start = bits.nextSetBit(start)) {
+			int end = bits.nextClearBit(start);
+			while (start < end) {
+				int key = start >>> CHUNK_BITS;
+				int last = Math.min(end, (key + 1) << CHUNK_BITS);
+				cardinalities[key] += last - start;
+				runs[key]++;
+				start = last;
+			}
+		}
+	}
+
+	/*
+	 * Returns the smallest container for the states of the given set in the given
+	 * chunk.
+	 */
+	private static Container container(BitSet bits, int key, int cardinality, int runs) {
+		int base = key << CHUNK_BITS;
+		BitSet chunk = bits.get(base, base + CHUNK_SIZE);
+		if (4 * runs <= 2 * cardinality && 4 * runs < BITMAP_BYTES) {
+			return new RunContainer(chunk, runs);
+		} else if (2 * cardinality < BITMAP_BYTES) {
+			return new ArrayContainer(chunk, cardinality);
+		} else {
+			return new BitmapContainer(chunk);
+		}
+	}
+
+	/*
+	 * Returns the position of the chunk of the given index in keys, or a negative
+	 * number if that chunk is empty.
+	 */
+	private int position(int index) {
+		return Arrays.binarySearch(this.keys, index >>> CHUNK_BITS);
+	}
+
+	@Override
+	public boolean contains(int index) {
+		int position = this.position(index);
+		return position >= 0 && this.containers[position].contains(index & (CHUNK_SIZE - 1));
+	}
+
+	@Override
+	public int cardinality() {
+		return this.cardinality;
+	}
+
+	@Override
+	public int nextSetBit(int fromIndex) {
+		int position = this.position(fromIndex);
+		if (position >= 0) {
+			int next = this.containers[position].next(fromIndex & (CHUNK_SIZE - 1));
+			if (next >= 0) {
+				return (this.keys[position] << CHUNK_BITS) | next;
+			}
+			position++;
+		} else {
+			position = -position - 1;
+		}
+		if (position < this.keys.length) {
+			return (this.keys[position] << CHUNK_BITS) | this.containers[position].next(0);
+		} else {
+			return -1;
+		}
+	}
+
+	@Override
+	public int nextClearBit(int fromIndex) {
+		int position = this.position(fromIndex);
+		if (position < 0) {
+			return fromIndex;
+		}
+		int next = this.containers[position].nextClear(fromIndex & (CHUNK_SIZE - 1));
+		// a chunk that is full up to its end may be followed by the next chunk
+		while (next == CHUNK_SIZE) {
+			int key = this.keys[position] + 1;
+			position++;
+			if (position == this.keys.length || this.keys[position] != key) {
+				return key << CHUNK_BITS;
+			}
+			next = this.containers[position].nextClear(0);
+		}
+		return (this.keys[position] << CHUNK_BITS) | next;
+	}
+
+	@Override
+	public BitSet toBitSet() {
+		BitSet bits = new BitSet();
+		this.addTo(bits);
+		return bits;
+	}
+
+	@Override
+	public void retainIn(BitSet bits) {
+		bits.and(this.toBitSet());
+	}
+
+	@Override
+	public void addTo(BitSet bits) {
+		for (int position = 0; position < this.keys.length; position++) {
+			this.containers[position].addTo(bits, this.keys[position] << CHUNK_BITS);
+		}
+	}
+
+	@Override
+	public void removeFrom(BitSet bits) {
+		for (int position = 0; position < this.keys.length; position++) {
+			this.containers[position].removeFrom(bits, this.keys[position] << CHUNK_BITS);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.toBitSet().toString();
+	}
+
+	/*
+	 * The states of a single chunk, given by their position within the chunk.
+	 */
+	private interface Container {
+		boolean contains(int low);
+
+		// the smallest element that is at least low, or -1 if there is none
+		int next(int low);
+
+		// the smallest non-element that is at least low, or CHUNK_SIZE if there is none
+		int nextClear(int low);
+
+		void addTo(BitSet bits, int base);
+
+		void removeFrom(BitSet bits, int base);
+	}
+
+	/*
+	 * The states of a chunk as a sorted array.
+	 */
+	private static class ArrayContainer implements Container {
+		private final char[] values;
+
+		ArrayContainer(BitSet chunk, int cardinality) {
+			this.values = new char[cardinality];
+			int position = 0;
+			for (int low = chunk.nextSetBit(0); low >= 0; low = chunk.nextSetBit(low + 1)) {
+				this.values[position++] = (char) low;
+			}
+		}
+
+		@Override
+		public boolean contains(int low) {
+			return Arrays.binarySearch(this.values, (char) low) >= 0;
+		}
+
+		@Override
+		public int next(int low) {
+			int position = Arrays.binarySearch(this.values, (char) low);
+			if (position < 0) {
+				position = -position - 1;
+			}
+			return position < this.values.length ? this.values[position] : -1;
+		}
+
+		@Override
+		public int nextClear(int low) {
+			int position = Arrays.binarySearch(this.values, (char) low);
+			if (position >= 0) {
+				while (position < this.values.length && this.values[position] == low) {
+					position++;
+					low++;
+				}
+			}
+			return low;
+		}
+
+		@Override
+		public void addTo(BitSet bits, int base) {
+			for (char value : this.values) {
+				bits.set(base + value);
+			}
+		}
+
+		@Override
+		public void removeFrom(BitSet bits, int base) {
+			for (char value : this.values) {
+				bits.clear(base + value);
+			}
+		}
+	}
+
+	/*
+	 * The states of a chunk as a bitmap.
+	 */
+	private static class BitmapContainer implements Container {
+		private final BitSet bits;
+
+		BitmapContainer(BitSet chunk) {
+			this.bits = chunk;
+		}
+
+		@Override
+		public boolean contains(int low) {
+			return this.bits.get(low);
+		}
+
+		@Override
+		public int next(int low) {
+			return this.bits.nextSetBit(low);
+		}
+
+		@Override
+		public int nextClear(int low) {
+			return this.bits.nextClearBit(low);
+		}
+
+		@Override
+		public void addTo(BitSet bits, int base) {
+			for (int low = this.bits.nextSetBit(0); low >= 0; low = this.bits.nextSetBit(low + 1)) {
+				int end = this.bits.nextClearBit(low);
+				bits.set(base + low, base + end);
+				low = end;
+			}
+		}
+
+		@Override
+		public void removeFrom(BitSet bits, int base) {
+			for (int low = this.bits.nextSetBit(0); low >= 0; low = this.bits.nextSetBit(low + 1)) {
+				int end = this.bits.nextClearBit(low);
+				bits.clear(base + low, base + end);
+				low = end;
+			}
+		}
+	}
+
+	/*
+	 * The states of a chunk as ranges: the i-th range starts at starts[i] and
+	 * contains lengths[i] + 1 states.
+	 */
+	private static class RunContainer implements Container {
+		private final char[] starts;
+		private final char[] lengths;
+
+		RunContainer(BitSet chunk, int runs) {
+			this.starts = new char[runs];
+			this.lengths = new char[runs];
+			int run = 0;
+			for (int low = chunk.nextSetBit(0); low >= 0; low = chunk.nextSetBit(low)) {
+				int end = chunk.nextClearBit(low);
+				this.starts[run] = (char) low;
+				this.lengths[run] = (char) (end - low - 1);
+				run++;
+				low = end;
+			}
+		}
+
+		/*
+		 * Returns the index of the last run that starts at or before low, or -1.
+		 */
+		private int run(int low) {
+			int position = Arrays.binarySearch(this.starts, (char) low);
+			return position >= 0 ? position : -position - 2;
+		}
+
+		@Override
+		public boolean contains(int low) {
+			int run = this.run(low);
+			return run >= 0 && low <= this.starts[run] + this.lengths[run];
+		}
+
+		@Override
+		public int next(int low) {
+			int run = this.run(low);
+			if (run >= 0 && low <= this.starts[run] + this.lengths[run]) {
+				return low;
+			} else if (run + 1 < this.starts.length) {
+				return this.starts[run + 1];
+			} else {
+				return -1;
+			}
+		}
+
+		@Override
+		public int nextClear(int low) {
+			int run = this.run(low);
+			if (run >= 0 && low <= this.starts[run] + this.lengths[run]) {
+				// runs are maximal, so the state following a run is not in the set
+				return this.starts[run] + this.lengths[run] + 1;
+			} else {
+				return low;
+			}
+		}
+
+		@Override
+		public void addTo(BitSet bits, int base) {
+			for (int run = 0; run < this.starts.length; run++) {
+				bits.set(base + this.starts[run], base + this.starts[run] + this.lengths[run] + 1);
+			}
+		}
+
+		@Override
+		public void removeFrom(BitSet bits, int base) {
+			for (int run = 0; run < this.starts.length; run++) {
+				bits.clear(base + this.starts[run], base + this.starts[run] + this.lengths[run] + 1);
+			}
+		}
+	}
+}
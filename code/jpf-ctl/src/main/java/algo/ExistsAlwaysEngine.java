@@ -0,0 +1,158 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.BitSet;
+
+/**
+ * Algorithms to compute the states that satisfy EG p from the states that
+ * satisfy p, that is, the states from which there is a path along which p holds
+ * forever or until a state without successors is reached. Both take time
+ * linear in the size of the graph.
+ *
+ * @see Model#setExistsAlwaysEngine(Class, ExistsAlwaysEngine)
+ */
+public enum ExistsAlwaysEngine {
+	/**
+	 * Removes the states all of whose successors have been removed, keeping for
+	 * each state a count of its successors that have not been removed yet.
+	 */
+	COUNTING {
+		@Override
+		void restrict(BitSet states, Adjacency post, Adjacency pre) {
+			int n = post.size();
+			int[] count = new int[n];
+			// each state is added at most once: either it is not in states or it is removed from it
+			int[] queue = new int[n];
+			int head = 0;
+			int tail = 0;
+			for (int state = 0; state < n; state++) {
+				if (states.get(state)) {
+					count[state] = post.degree(state);
+				} else {
+					queue[tail++] = state;
+				}
+			}
+			while (head < tail) {
+				int target = queue[head++];
+				for (int position = pre.start(target); position < pre.end(target); position++) {
+					int source = pre.get(position);
+					if (states.get(source) && --count[source] == 0) {
+						states.clear(source);
+						queue[tail++] = source;
+					}
+				}
+			}
+		}
+	},
+
+	/**
+	 * Decomposes the subgraph of the given states into strongly connected
+	 * components (Tarjan's algorithm, without recursion) and keeps the states
+	 * that can reach, within that subgraph, a component with a cycle or a state
+	 * without successors.
+	 */
+	SCC {
+		@Override
+		void restrict(BitSet states, Adjacency post, Adjacency pre) {
+			int n = post.size();
+			int[] order = new int[n]; // 0 if not visited yet
+			int[] low = new int[n];
+			int[] next = new int[n]; // position of the next successor to visit
+			int[] path = new int[n]; // the states on the current depth-first path
+			int[] component = new int[n]; // the states whose component has not been found yet
+			BitSet open = new BitSet(n); // the states in component
+			BitSet core = new BitSet(n);
+			int counter = 0;
+			int size = 0;
+			for (int root = states.nextSetBit(0); root >= 0; root = states.nextSetBit(root + 1)) {
+				if (post.degree(root) == 0) {
+					core.set(root);
+				}
+				if (order[root] != 0) {
+					continue;
+				}
+				int depth = 0;
+				order[root] = low[root] = ++counter;
+				next[root] = post.start(root);
+				path[depth++] = root;
+				component[size++] = root;
+				open.set(root);
+				while (depth > 0) {
+					int state = path[depth - 1];
+					if (next[state] < post.end(state)) {
+						int successor = post.get(next[state]++);
+						if (!states.get(successor)) {
+							continue;
+						}
+						if (order[successor] == 0) {
+							order[successor] = low[successor] = ++counter;
+							next[successor] = post.start(successor);
+							path[depth++] = successor;
+							component[size++] = successor;
+							open.set(successor);
+						} else if (open.get(successor)) {
+							low[state] = Math.min(low[state], order[successor]);
+						}
+					} else {
+						depth--;
+						if (depth > 0) {
+							int parent = path[depth - 1];
+							low[parent] = Math.min(low[parent], low[state]);
+						}
+						if (low[state] == order[state]) {
+							int first = size;
+							do {
+								open.clear(component[--first]);
+							} while (component[first] != state);
+							if (size - first > 1 || hasSelfLoop(state, post)) {
+								for (int i = first; i < size; i++) {
+									core.set(component[i]);
+								}
+							}
+							size = first;
+						}
+					}
+				}
+			}
+			new BackwardReachability(pre).reach(core, states);
+			states.and(core);
+		}
+
+		/*
+		 * Tests whether the given state is a successor of itself.
+		 */
+		private boolean hasSelfLoop(int state, Adjacency post) {
+			for (int position = post.start(state); position < post.end(state); position++) {
+				if (post.get(position) == state) {
+					return true;
+				}
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Removes from the given states those that do not satisfy EG of them.
+	 *
+	 * @param states the states that satisfy p, which are restricted to those that satisfy EG p
+	 * @param post   the successors of each state
+	 * @param pre    the predecessors of each state
+	 */
+	abstract void restrict(BitSet states, Adjacency post, Adjacency pre);
+}
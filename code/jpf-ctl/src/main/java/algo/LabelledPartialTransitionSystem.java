@@ -1,9 +1,12 @@
 package algo;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 /*
  * Copyright (C)  2021
@@ -22,36 +25,76 @@ import java.nio.file.Paths;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
 import java.util.Set;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A class which represents a labelled partial transition system.
  * 
+ * The system is stored in primitive arrays rather than collections of objects.
+ * The states are numbered 0, 1, ... in increasing order (see getIndex). The
+ * transitions are kept in compressed sparse row form: the successors of each
+ * state, sorted, by the index of the state. If all labels are smaller than 64,
+ * the labels of each state are kept as a bit mask in a single long; otherwise
+ * each state refers to its set of labels in a dictionary of the distinct label
+ * sets, which are few in practice. For each label, the states with that label
+ * are kept as a state set, as are the states that are not fully explored. The
+ * getters that return collections return read-only views of these arrays.
+ *
+ * A system that is built by a Builder with a directory is kept in
+ * memory-mapped files in that directory instead, so that it can be larger than
+ * the heap: the states, the transitions (see MappedCompressedSparseRow) and
+ * the state sets (see MappedStateSet). Its builder keeps the states,
+ * transitions and labels that are added in such files as well. The labels of a
+ * state are then found in the state sets of the labels.
+ * 
  * @author Franck van Breugel
  * @author Matt Walker
  */
 public class LabelledPartialTransitionSystem {
 
-	// states that are not fully explored
-	private Set<Integer> partial;
+	// states that are not fully explored, by index
+	private StateSet partial;
+
+	// the successors of the state with index i, sorted; the transitions are numbered by their position
+	private Adjacency successors;
+
+	private int numberOfTransitions;
+
+	// the labels of the state with index i as a bit mask, or null if some label is at least MASK_LABELS
+	private long[] labelMasks;
+
+	// otherwise, the labels of the state with index i are labelSets[labelSetIds[i]], sorted, or null if mapped
+	private int[] labelSetIds;
+	private int[][] labelSets;
 
-	// transitions
-	private Set<Transition> transitions;
+	// label -> the indices of the states with that label
+	private Map<Integer, StateSet> labelIndex;
+
+	// states that have a (possibly empty) labelling, by index
+	private StateSet labelled;
 
-	// labelling of the states
-	private Map<Integer, Set<Integer>> labelling; // stateID -> indicies
 	private Map<String, Integer> fields; // qualifiedFieldNames -> indicies
 
-	// all states
-	private Set<Integer> stateSet;
+	// all states in increasing order, the index of a state is its position, or null if mapped
+	private int[] stateIds;
+
+	// otherwise, all states in increasing order in a memory-mapped file
+	private MappedArray mappedStateIds;
+
+	private int numberOfStates;
 
 	// maximum number of states
 	private static final int MAX_STATES = 50;
@@ -65,31 +108,41 @@ public class LabelledPartialTransitionSystem {
 	// probability that a state is labeled
 	private static final double LABELLED = 0.9;
 
-	// number of states in the system
-	private int states;
-
 	// sink state
 	private static final int SINK_STATE = -2;
 
+	// number of labels that fit in a bit mask
+	private static final int MASK_LABELS = Long.SIZE;
+
+	// the empty set of labels
+	private static final int[] NO_LABELS = new int[0];
+
+	// identifies (version 1 of) the binary form written by write, "LPT1"
+	private static final int FORMAT = 0x4C505431;
+
 	/**
 	 * Initializes this labeled partial transition system randomly.
 	 */
 	public LabelledPartialTransitionSystem() {
 		Random random = new Random(System.currentTimeMillis());
+		Builder builder = new Builder();
 
 		// The number of states that will be in this transition system
-		states = 1 + random.nextInt(MAX_STATES);
-		stateSet = IntStream.range(0, states).boxed().collect(Collectors.toSet());
-		stateSet.add(SINK_STATE);
+		int states = 1 + random.nextInt(MAX_STATES);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+		}
+		builder.addState(SINK_STATE);
 
 		/*
 		 * Randomly generates a set of states that will be considered 'not fully
 		 * explored'
 		 */
-		this.partial = new HashSet<Integer>();
+		BitSet partial = new BitSet();
 		for (int state = 0; state < states; state++) {
 			if (random.nextDouble() < PARTIAL) {
-				this.partial.add(state);
+				partial.set(state);
+				builder.addPartial(state);
 			}
 		}
 
@@ -97,148 +150,468 @@ public class LabelledPartialTransitionSystem {
 		 * Randomly generates transitions between states (explored and not explored)
 		 */
 		final double TRANSITIONS = 2 * Math.log(states) / Math.pow(states, 1.5);// 2 * Math.log(states) / states;
-		this.transitions = new HashSet<Transition>();
 		for (int source = 0; source < states; source++) {
 			for (int target = 0; target < states; target++) {
 				if (random.nextDouble() < TRANSITIONS) {
-					this.transitions.add(new Transition(source, target));
+					builder.addTransition(source, target);
 				}
 			}
-			if (this.partial.contains(source)) {
-				this.transitions.add(new Transition(source, SINK_STATE));
+			if (partial.get(source)) {
+				builder.addTransition(source, SINK_STATE);
 			}
 		}
 
 		// Field Setup
-		this.fields = new HashMap<String, Integer>();
 		String[] fieldNames = new String[] { "algo.JavaFields.p1", "algo.JavaFields.p2", "algo.JavaFields.p3",
 				"algo.JavaFields.p4" };
 		for (int i = 0; i < fieldNames.length; i++) {
-			fields.put(fieldNames[i], i);
+			builder.addField(fieldNames[i], i);
 		}
 
 		// TODO So I need to label -2 (sink state) as true once and false another time
 		// but not at the same time..?
-		this.labelling = new HashMap<Integer, Set<Integer>>();
 		for (int state = 0; state < states; state++) {
-			Set<Integer> labelSet = new HashSet<Integer>();
-			this.labelling.put(state, labelSet);
+			builder.addLabelled(state);
 			// Do we give this state a labeling?
 			if (random.nextDouble() < LABELLED) {
 				// How many labels should this state have (roughly since it's a set and may have
 				// duplicates)
 				int labels = 1 + random.nextInt(MAX_LABELS_PER_STATE);
 				for (int label = 0; label < labels; label++) {
-					labelSet.add(random.nextInt(fields.size())); // next int is exclusive
+					builder.addLabel(state, random.nextInt(fieldNames.length)); // next int is exclusive
 				}
 			}
 		}
+
+		this.initialize(builder);
 	}
 
 	// Constructor for debugging with specific transition system
 	public LabelledPartialTransitionSystem(int states, Set<Transition> transitions, Set<Integer> partial,
 			Map<Integer, Set<Integer>> labelling, Map<String, Integer> fields) {
-		this.states = states;
-		stateSet = IntStream.range(0, states).boxed().collect(Collectors.toSet());
-		stateSet.add(SINK_STATE);
-		this.transitions = transitions;
-		this.partial = partial;
-		this.labelling = labelling;
-		this.fields = fields;
+		Builder builder = new Builder(partial, transitions, labelling);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+		}
+		builder.addState(SINK_STATE);
+		for (Map.Entry<String, Integer> field : fields.entrySet()) {
+			builder.addField(field.getKey(), field.getValue());
+		}
+		this.initialize(builder);
 	}
 	
 	public LabelledPartialTransitionSystem(Set<Integer> s, Set<Transition> t, Map<Integer, Set<Integer>> l)
 	{
-		this.partial = s;
-		this.transitions = t;
-		this.labelling = l;
-		this.fields = new HashMap<>();
+		this.initialize(new Builder(s, t, l));
 	}
 	
 	// Actual Constructor for production
 	public LabelledPartialTransitionSystem(String jpfLabelFile, String listenerFile) throws IOException {
-		// Wrap path string with Path object
-		Path pathToListenerFile = Paths.get(listenerFile);
-		Path pathToJpfLabelFile = Paths.get(jpfLabelFile);
-
-		// Get files as stream (of lines)
-		Stream<String> listenerFileLines = Files.lines(pathToListenerFile);
-		Stream<String> jpfLabelFileLines = Files.lines(pathToJpfLabelFile);
-
-		// regex for different line types
-		final String TRANSITION = "-?\\d+\\s->\\s\\d+"; // 3 -> 4
-		final String TRANSITION_DELIMETER = "\\s->\\s";
-		final String PARTIAL = "(\\d+\\s?)+"; // 3 4 5
-		final String PARTIAL_DELIMETER = "\\s";
-		final String MAPPING = "(\\d+=\"(([a-zA-Z_$][a-zA-Z\\d_$]*\\.)*[a-zA-Z_$][a-zA-Z\\d_$]*)\"\\s?)+"; // 2="something"
-																											// 3="anotherthing"
-		final String MAPPING_DELIMETER = "\\s";
-		final String LABELLING = "\\d+:\\s(\\d+\\s?)+"; // 2: 3 4
-		final String LABELLING_DELIMETER = ":\\s";
-
-		this.stateSet = new HashSet<Integer>();
-		this.transitions = new HashSet<Transition>();
-		this.partial = new HashSet<Integer>();
-		// Listener File
-		listenerFileLines.forEach(line -> {
-			if (line.matches(TRANSITION)) {
-				String[] t = line.split(TRANSITION_DELIMETER);
-				int source = Integer.parseInt(t[0]);
-				int target = Integer.parseInt(t[1]);
-				this.stateSet.add(source);
-				this.stateSet.add(target);
-				this.transitions.add(new Transition(source, target));
-			}
-			if (line.matches(PARTIAL)) {
-				this.partial.addAll(Pattern.compile(PARTIAL_DELIMETER).splitAsStream(line)
-						.map(e -> Integer.parseInt(e))
-						.collect(Collectors.toSet()));
-				this.stateSet.addAll(this.partial);
+		this(jpfLabelFile, listenerFile, null);
+	}
+
+	/**
+	 * Reads the labelled partial transition system from the given jpf-label file
+	 * and the given text file written by the PartialTransitionSystemListener, and
+	 * keeps it in memory-mapped files in the given directory.
+	 *
+	 * @param jpfLabelFile a file written by jpf-label
+	 * @param listenerFile a text file written by the listener
+	 * @param directory    the directory of the memory-mapped files, or null to
+	 *                     keep the system on the heap
+	 * @throws IOException if a file cannot be read, created or mapped
+	 */
+	public LabelledPartialTransitionSystem(String jpfLabelFile, String listenerFile, Path directory)
+			throws IOException {
+		Builder builder = new Builder(directory);
+		try {
+			// Listener File
+			TransitionSystemReader.readTransitions(Paths.get(listenerFile), builder);
+
+			builder.addState(SINK_STATE);
+
+			// jpf-label File
+			TransitionSystemReader.readLabels(Paths.get(jpfLabelFile), builder);
+
+			this.initialize(builder);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Reads the labelled partial transition system from the given binary file,
+	 * written by the PartialTransitionSystemListener if its format option is
+	 * binary. The file contains the labels as well, so no jpf-label file is
+	 * needed.
+	 *
+	 * @param listenerFile a binary file written by the listener
+	 * @return the labelled partial transition system of the given file
+	 * @throws IOException if the file cannot be read or is not well formed
+	 */
+	public static LabelledPartialTransitionSystem fromBinaryFile(String listenerFile) throws IOException {
+		return fromBinaryFile(listenerFile, null);
+	}
+
+	/**
+	 * Reads the labelled partial transition system from the given binary file,
+	 * as {@link #fromBinaryFile(String)} does, and keeps it in memory-mapped
+	 * files in the given directory.
+	 *
+	 * @param listenerFile a binary file written by the listener
+	 * @param directory    the directory of the memory-mapped files, or null to
+	 *                     keep the system on the heap
+	 * @return the labelled partial transition system of the given file
+	 * @throws IOException if the file cannot be read or is not well formed, or a
+	 *                     memory-mapped file cannot be created or mapped
+	 */
+	public static LabelledPartialTransitionSystem fromBinaryFile(String listenerFile, Path directory)
+			throws IOException {
+		Builder builder = new Builder(directory);
+		try {
+			BinaryTransitionSystemFile.read(Paths.get(listenerFile), builder);
+			builder.addState(SINK_STATE);
+			return builder.build();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*
+	 * Initializes this system with the states, transitions and labels collected by
+	 * the given builder.
+	 */
+	private LabelledPartialTransitionSystem(Builder builder) {
+		this.initialize(builder);
+	}
+
+	/*
+	 * Numbers the states 0, 1, ... in increasing order and stores the transitions,
+	 * labels and partial states of the given builder in terms of these indices,
+	 * on the heap or in memory-mapped files, as the builder does. The states that
+	 * only occur in a transition, as partial state or in the labelling are added
+	 * to the set of states.
+	 */
+	private void initialize(Builder builder) {
+		if (builder.directory == null) {
+			this.initializeOnHeap(builder);
+		} else {
+			try {
+				this.initializeMapped(builder);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-		});
-		listenerFileLines.close();
-
-		this.stateSet.add(SINK_STATE);
-		this.states = this.stateSet.size();
-
-		// jpf-label File
-		this.labelling = new HashMap<Integer, Set<Integer>>();
-		this.fields = new HashMap<String, Integer>();
-		jpfLabelFileLines.forEach(line -> {
-			if (line.matches(LABELLING)) {
-				String[] lr = line.split(LABELLING_DELIMETER);
-				Set<Integer> labels = new HashSet<Integer>();
-				labels = Pattern.compile(MAPPING_DELIMETER).splitAsStream(lr[1])
-						.map(Integer::parseInt)
-						.filter(fields::containsValue)
-						.collect(Collectors.toSet());
-				if (!labels.isEmpty()) {
-					this.labelling.put(Integer.parseInt(lr[0]), labels);
+		}
+		this.fields = builder.fields;
+	}
+
+	/*
+	 * Stores the system of the given builder, which keeps it on the heap, in
+	 * arrays.
+	 */
+	private void initializeOnHeap(Builder builder) {
+		int[] states = new int[builder.states + 2 * builder.transitions + builder.partial + builder.labelled
+				+ builder.labels];
+		int length = 0;
+		System.arraycopy(builder.stateArray, 0, states, length, builder.states);
+		length += builder.states;
+		for (int i = 0; i < builder.transitions; i++) {
+			states[length++] = source(builder.transitionArray[i]);
+			states[length++] = target(builder.transitionArray[i]);
+		}
+		System.arraycopy(builder.partialArray, 0, states, length, builder.partial);
+		length += builder.partial;
+		System.arraycopy(builder.labelledArray, 0, states, length, builder.labelled);
+		length += builder.labelled;
+		for (int i = 0; i < builder.labels; i++) {
+			states[length++] = source(builder.labelArray[i]);
+		}
+		Arrays.sort(states);
+		this.stateIds = Arrays.copyOf(states, unique(states, length));
+		this.numberOfStates = this.stateIds.length;
+		int n = this.numberOfStates;
+
+		long[] transitions = new long[builder.transitions];
+		for (int i = 0; i < builder.transitions; i++) {
+			long transition = builder.transitionArray[i];
+			transitions[i] = pack(this.getIndex(source(transition)), this.getIndex(target(transition)));
+		}
+		Arrays.sort(transitions);
+		this.numberOfTransitions = unique(transitions, transitions.length);
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[this.numberOfTransitions];
+		for (int i = 0; i < this.numberOfTransitions; i++) {
+			offsets[source(transitions[i]) + 1]++;
+			targets[i] = target(transitions[i]);
+		}
+		for (int state = 0; state < n; state++) {
+			offsets[state + 1] += offsets[state];
+		}
+		this.successors = new CompressedSparseRow(offsets, targets);
+
+		BitSet partial = new BitSet(n);
+		for (int i = 0; i < builder.partial; i++) {
+			partial.set(this.getIndex(builder.partialArray[i]));
+		}
+		this.partial = StateSet.of(partial);
+
+		BitSet labelled = new BitSet(n);
+		for (int i = 0; i < builder.labelled; i++) {
+			labelled.set(this.getIndex(builder.labelledArray[i]));
+		}
+		long[] labels = new long[builder.labels];
+		for (int i = 0; i < builder.labels; i++) {
+			long label = builder.labelArray[i];
+			labels[i] = pack(this.getIndex(source(label)), target(label));
+		}
+		Arrays.sort(labels);
+		int size = unique(labels, labels.length);
+		this.index(labels, size, labelled);
+		this.labelled = StateSet.of(labelled);
+	}
+
+	/*
+	 * Stores the system of the given builder, which keeps it in memory-mapped
+	 * files, in memory-mapped files in the same directory. Only a buffer for the
+	 * successors of a single state is kept on the heap.
+	 */
+	private void initializeMapped(Builder builder) throws IOException {
+		Path directory = builder.directory;
+		MappedArray states = new MappedArray(directory,
+				builder.states + 2L * builder.transitions + builder.partial + builder.labelled + builder.labels);
+		long length = 0;
+		for (int i = 0; i < builder.states; i++) {
+			states.set(length++, builder.mappedStates.get(i));
+		}
+		for (long i = 0; i < 2L * builder.transitions; i++) {
+			states.set(length++, builder.mappedTransitions.get(i));
+		}
+		for (int i = 0; i < builder.partial; i++) {
+			states.set(length++, builder.mappedPartial.get(i));
+		}
+		for (int i = 0; i < builder.labelled; i++) {
+			states.set(length++, builder.mappedLabelled.get(i));
+		}
+		for (int i = 0; i < builder.labels; i++) {
+			states.set(length++, builder.mappedLabels.get(2L * i));
+		}
+		states.sort(length);
+		int n = 0;
+		for (long i = 0; i < length; i++) {
+			if (n == 0 || states.get(n - 1) != states.get(i)) {
+				states.set(n++, states.get(i));
+			}
+		}
+		this.mappedStateIds = states;
+		this.numberOfStates = n;
+
+		// the offsets of the states followed by their successors, placed by a counting sort on the source
+		MappedArray csr = new MappedArray(directory, n + 1L + builder.transitions);
+		MappedArray indices = new MappedArray(directory, 2L * builder.transitions);
+		for (int i = 0; i < builder.transitions; i++) {
+			int source = this.getIndex(builder.mappedTransitions.get(2L * i));
+			indices.set(2L * i, source);
+			indices.set(2L * i + 1, this.getIndex(builder.mappedTransitions.get(2L * i + 1)));
+			csr.set(source, csr.get(source) + 1);
+		}
+		for (int state = 1; state < n; state++) {
+			csr.set(state, csr.get(state) + csr.get(state - 1));
+		}
+		csr.set(n, builder.transitions);
+		for (int i = builder.transitions - 1; i >= 0; i--) {
+			int source = indices.get(2L * i);
+			int position = csr.get(source) - 1;
+			csr.set(source, position);
+			csr.set(n + 1L + position, indices.get(2L * i + 1));
+		}
+
+		// sort the successors of each state and remove the duplicates
+		int[] buffer = new int[Builder.INITIAL_CAPACITY];
+		int transitions = 0;
+		int start = 0;
+		for (int state = 0; state < n; state++) {
+			int end = csr.get(state + 1L);
+			int degree = end - start;
+			if (degree > buffer.length) {
+				buffer = new int[Math.max(degree, 2 * buffer.length)];
+			}
+			for (int i = 0; i < degree; i++) {
+				buffer[i] = csr.get(n + 1L + start + i);
+			}
+			Arrays.sort(buffer, 0, degree);
+			csr.set(state, transitions);
+			for (int i = 0; i < degree; i++) {
+				if (i == 0 || buffer[i - 1] != buffer[i]) {
+					csr.set(n + 1L + transitions++, buffer[i]);
 				}
 			}
-			if (line.matches(MAPPING)) {
-				Pattern.compile(MAPPING_DELIMETER).splitAsStream(line).forEach(e -> {
-					String l = e.replace("\"", "");
-					int index = Integer.parseInt(l.split("=")[0]);
-					String AP = l.split("=")[1];
-					String[] LR = AP.split("__");
-					if (LR[0].equals("true")) {
-						this.fields.put(LR[1].replace("_", "."), index);
-					}
-				});
+			start = end;
+		}
+		csr.set(n, transitions);
+		this.successors = new MappedCompressedSparseRow(csr, n);
+		this.numberOfTransitions = transitions;
+
+		MappedStateSet partial = new MappedStateSet(n, directory);
+		for (int i = 0; i < builder.partial; i++) {
+			partial.add(this.getIndex(builder.mappedPartial.get(i)));
+		}
+		this.partial = partial;
+
+		MappedStateSet labelled = new MappedStateSet(n, directory);
+		for (int i = 0; i < builder.labelled; i++) {
+			labelled.add(this.getIndex(builder.mappedLabelled.get(i)));
+		}
+		Map<Integer, MappedStateSet> index = new HashMap<Integer, MappedStateSet>();
+		for (int i = 0; i < builder.labels; i++) {
+			int state = this.getIndex(builder.mappedLabels.get(2L * i));
+			int label = builder.mappedLabels.get(2L * i + 1);
+			MappedStateSet withLabel = index.get(label);
+			if (withLabel == null) {
+				withLabel = new MappedStateSet(n, directory);
+				index.put(label, withLabel);
 			}
-		});
-		jpfLabelFileLines.close();
+			withLabel.add(state);
+			labelled.add(state);
+		}
+		this.labelled = labelled;
+		this.labelIndex = new HashMap<Integer, StateSet>(index);
+	}
+
+	/*
+	 * Stores the given labels, each packed as state index << 32 | label and sorted
+	 * without duplicates, per state and per label, and adds their states to the
+	 * given labelled states.
+	 */
+	private void index(long[] labels, int size, BitSet labelled) {
+		int n = this.numberOfStates;
+		boolean masks = true;
+		for (int i = 0; i < size && masks; i++) {
+			masks = target(labels[i]) >= 0 && target(labels[i]) < MASK_LABELS;
+		}
+		if (masks) {
+			this.labelMasks = new long[n];
+		} else {
+			this.labelSetIds = new int[n];
+		}
+
+		Map<LabelSet, Integer> dictionary = new HashMap<LabelSet, Integer>();
+		if (!masks) {
+			dictionary.put(new LabelSet(NO_LABELS), 0);
+		}
+		Map<Integer, BitSet> index = new HashMap<Integer, BitSet>();
+		int i = 0;
+		while (i < size) {
+			int state = source(labels[i]);
+			int first = i;
+			while (i < size && source(labels[i]) == state) {
+				int label = target(labels[i]);
+				labelled.set(state);
+				index.computeIfAbsent(label, l -> new BitSet(n)).set(state);
+				if (masks) {
+					this.labelMasks[state] |= 1L << label;
+				}
+				i++;
+			}
+			if (!masks) {
+				int[] set = new int[i - first];
+				for (int j = first; j < i; j++) {
+					set[j - first] = target(labels[j]);
+				}
+				this.labelSetIds[state] = dictionary.computeIfAbsent(new LabelSet(set), s -> dictionary.size());
+			}
+		}
+		if (!masks) {
+			this.labelSets = new int[dictionary.size()][];
+			for (Map.Entry<LabelSet, Integer> entry : dictionary.entrySet()) {
+				this.labelSets[entry.getValue()] = entry.getKey().labels;
+			}
+		}
+
+		this.labelIndex = new HashMap<Integer, StateSet>();
+		for (Map.Entry<Integer, BitSet> entry : index.entrySet()) {
+			this.labelIndex.put(entry.getKey(), StateSet.of(entry.getValue()));
+		}
+	}
+
+	/*
+	 * Returns the labels of the state with the given index in increasing order.
+	 * The returned array should not be modified.
+	 */
+	private int[] labelsOf(int index) {
+		if (this.labelMasks != null) {
+			long mask = this.labelMasks[index];
+			int[] labels = new int[Long.bitCount(mask)];
+			for (int i = 0; mask != 0; i++) {
+				labels[i] = Long.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+			}
+			return labels;
+		} else if (this.labelSetIds != null) {
+			return this.labelSets[this.labelSetIds[index]];
+		} else {
+			return this.labelIndex.entrySet().stream().filter(entry -> entry.getValue().contains(index))
+					.mapToInt(Map.Entry::getKey).sorted().toArray();
+		}
+	}
+
+	/*
+	 * Returns the given numbers packed in a single long.
+	 */
+	private static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * Returns the high 32 bits of the given packed pair.
+	 */
+	private static int source(long pair) {
+		return (int) (pair >> 32);
+	}
+
+	/*
+	 * Returns the low 32 bits of the given packed pair.
+	 */
+	private static int target(long pair) {
+		return (int) pair;
+	}
+
+	/*
+	 * Removes the duplicates from the first length elements of the given sorted
+	 * array and returns the number of remaining elements.
+	 */
+	private static int unique(int[] values, int length) {
+		int size = 0;
+		for (int i = 0; i < length; i++) {
+			if (size == 0 || values[size - 1] != values[i]) {
+				values[size++] = values[i];
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * Removes the duplicates from the first length elements of the given sorted
+	 * array and returns the number of remaining elements.
+	 */
+	private static int unique(long[] values, int length) {
+		int size = 0;
+		for (int i = 0; i < length; i++) {
+			if (size == 0 || values[size - 1] != values[i]) {
+				values[size++] = values[i];
+			}
+		}
+		return size;
 	}
 
 	@Override
 	public String toString() {
+		Map<Integer, Set<Integer>> labelling = this.getLabelling();
 		StringBuffer toString = new StringBuffer();
-		for (Transition transition : this.transitions) {
+		for (Transition transition : this.getTransitions()) {
 			toString.append(transition);
 			toString.append("\n");
 		}
-		for (Integer state : this.partial) {
+		for (Integer state : this.getPartial()) {
 			toString.append(state);
 			toString.append(" ");
 		}
@@ -265,12 +638,13 @@ public class LabelledPartialTransitionSystem {
 	 *         a string.
 	 */
 	public String toDot() {
+		Map<Integer, Set<Integer>> labelling = this.getLabelling();
 		StringBuffer toDot = new StringBuffer();
 
 		toDot.append("digraph system {\n");
 		toDot.append("  node [colorscheme=\"set312\" style=wedged]\n");
 
-		for (Transition transition : this.transitions) {
+		for (Transition transition : this.getTransitions()) {
 			toDot.append(String.format("  %d -> %d%n", transition.source, transition.target));
 		}
 
@@ -278,7 +652,7 @@ public class LabelledPartialTransitionSystem {
 			toDot.append("  " + state + " [");
 
 			// if this state is not fully explored
-			if (this.partial.contains(state)) {
+			if (this.getPartial().contains(state)) {
 				toDot.append("shape=box ");
 			}
 
@@ -320,16 +694,273 @@ public class LabelledPartialTransitionSystem {
 		return toDot.toString();
 	}
 
+	/**
+	 * Writes this labelled partial transition system to the given output, in a
+	 * binary form that can be read back by {@link #read(DataInput)}: the states,
+	 * the transitions as pairs of state indices, the partial and labelled states,
+	 * the labels of each state, and the fields.
+	 * 
+	 * @param output the output to write to
+	 * @throws IOException if this system cannot be written
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeInt(FORMAT);
+		int n = this.numberOfStates;
+		output.writeInt(n);
+		for (int index = 0; index < n; index++) {
+			output.writeInt(this.getState(index));
+		}
+		output.writeInt(this.numberOfTransitions);
+		for (int source = 0; source < n; source++) {
+			for (int position = this.successors.start(source); position < this.successors.end(source); position++) {
+				output.writeLong(pack(source, this.successors.get(position)));
+			}
+		}
+		write(output, this.partial);
+		write(output, this.labelled);
+		for (int index = 0; index < n; index++) {
+			int[] labels = this.labelsOf(index);
+			output.writeInt(labels.length);
+			for (int label : labels) {
+				output.writeInt(label);
+			}
+		}
+		output.writeInt(this.fields.size());
+		for (Map.Entry<String, Integer> field : this.fields.entrySet()) {
+			output.writeUTF(field.getKey());
+			output.writeInt(field.getValue());
+		}
+	}
+
+	/*
+	 * Writes the indices in the given set to the given output.
+	 */
+	private static void write(DataOutput output, StateSet states) throws IOException {
+		output.writeInt(states.cardinality());
+		for (int index = states.nextSetBit(0); index >= 0; index = states.nextSetBit(index + 1)) {
+			output.writeInt(index);
+		}
+	}
+
+	/**
+	 * Reads a labelled partial transition system, written by
+	 * {@link #write(DataOutput)}, from the given input.
+	 * 
+	 * @param input the input to read from
+	 * @return the labelled partial transition system read from the given input
+	 * @throws IOException if no labelled partial transition system can be read
+	 */
+	public static LabelledPartialTransitionSystem read(DataInput input) throws IOException {
+		return read(input, null);
+	}
+
+	/**
+	 * Reads a labelled partial transition system, written by
+	 * {@link #write(DataOutput)}, from the given input, and keeps it in
+	 * memory-mapped files in the given directory.
+	 * 
+	 * @param input     the input to read from
+	 * @param directory the directory of the memory-mapped files, or null to keep
+	 *                  the system on the heap
+	 * @return the labelled partial transition system read from the given input
+	 * @throws IOException if no labelled partial transition system can be read, or
+	 *                     a memory-mapped file cannot be created or mapped
+	 */
+	public static LabelledPartialTransitionSystem read(DataInput input, Path directory) throws IOException {
+		if (input.readInt() != FORMAT) {
+			throw new IOException("Not a labelled partial transition system");
+		}
+		Builder builder = new Builder(directory);
+		try {
+			readInto(input, builder);
+			return builder.build();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*
+	 * Adds the states, transitions, partial states, labels and fields read from
+	 * the given input, following the format, to the given builder.
+	 */
+	private static void readInto(DataInput input, Builder builder) throws IOException {
+		int[] states = new int[input.readInt()];
+		for (int index = 0; index < states.length; index++) {
+			states[index] = input.readInt();
+			builder.addState(states[index]);
+		}
+		try {
+			int transitions = input.readInt();
+			for (int i = 0; i < transitions; i++) {
+				long transition = input.readLong();
+				builder.addTransition(states[source(transition)], states[target(transition)]);
+			}
+			int partial = input.readInt();
+			for (int i = 0; i < partial; i++) {
+				builder.addPartial(states[input.readInt()]);
+			}
+			int labelled = input.readInt();
+			for (int i = 0; i < labelled; i++) {
+				builder.addLabelled(states[input.readInt()]);
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Unknown state index: " + e.getMessage());
+		}
+		for (int index = 0; index < states.length; index++) {
+			int labels = input.readInt();
+			for (int i = 0; i < labels; i++) {
+				builder.addLabel(states[index], input.readInt());
+			}
+		}
+		int fields = input.readInt();
+		for (int i = 0; i < fields; i++) {
+			builder.addField(input.readUTF(), input.readInt());
+		}
+	}
+
+	/**
+	 * Returns the index of the given state, that is, a number between 0 and the
+	 * number of states - 1. If the given state is not a state of this system, a
+	 * negative number is returned.
+	 * 
+	 * @param state a state
+	 * @return the index of the given state, or a negative number if it is not a state
+	 */
+	public int getIndex(int state) {
+		if (this.stateIds != null) {
+			return Arrays.binarySearch(this.stateIds, state);
+		} else {
+			return this.mappedStateIds.binarySearch(this.numberOfStates, state);
+		}
+	}
+
+	/**
+	 * Returns the state with the given index.
+	 * 
+	 * @param index a number between 0 and the number of states - 1
+	 * @return the state with the given index
+	 */
+	public int getState(int index) {
+		if (this.stateIds != null) {
+			return this.stateIds[index];
+		} else {
+			return this.mappedStateIds.get(index);
+		}
+	}
+
+	/**
+	 * Returns the number of states of this system.
+	 * 
+	 * @return the number of states of this system
+	 */
+	public int getNumberOfStates() {
+		return this.numberOfStates;
+	}
+
+	/**
+	 * Returns the number of transitions of this system.
+	 * 
+	 * @return the number of transitions of this system
+	 */
+	public int getNumberOfTransitions() {
+		return this.numberOfTransitions;
+	}
+
+	/**
+	 * Returns the successors of the states, by index. The successors of each
+	 * state are sorted, and the position of a successor is the number of the
+	 * transition to it (see getSourceIndex).
+	 * 
+	 * @return the successors of the states
+	 */
+	public Adjacency getSuccessors() {
+		return this.successors;
+	}
+
+	/**
+	 * Returns the index of the source of the given transition. The transitions
+	 * are numbered 0, ..., the number of transitions - 1, ordered by the index of
+	 * their source and then by the index of their target. The source is found by
+	 * binary search; to visit the transitions in order, use getSuccessors.
+	 * 
+	 * @param transition a number between 0 and the number of transitions - 1
+	 * @return the index of the source of the given transition
+	 */
+	public int getSourceIndex(int transition) {
+		// the last state whose successors start at or before the transition
+		int low = 0;
+		int high = this.numberOfStates - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (this.successors.start(middle) <= transition) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the target of the given transition.
+	 * 
+	 * @param transition a number between 0 and the number of transitions - 1
+	 * @return the index of the target of the given transition
+	 * @see #getSourceIndex(int)
+	 */
+	public int getTargetIndex(int transition) {
+		return this.successors.get(transition);
+	}
+
+	/**
+	 * Tests whether the state with the given index is not fully explored.
+	 * 
+	 * @param index a number between 0 and the number of states - 1
+	 * @return true if the state with the given index is not fully explored, false otherwise
+	 */
+	public boolean isPartial(int index) {
+		return this.partial.contains(index);
+	}
+
+	/**
+	 * Tests whether the state with the given index has the given label.
+	 * 
+	 * @param index a number between 0 and the number of states - 1
+	 * @param label a label
+	 * @return true if the state with the given index has the given label, false otherwise
+	 */
+	public boolean hasLabel(int index, int label) {
+		if (this.labelMasks != null) {
+			return label >= 0 && label < MASK_LABELS && (this.labelMasks[index] & (1L << label)) != 0;
+		} else if (this.labelSetIds != null) {
+			return Arrays.binarySearch(this.labelSets[this.labelSetIds[index]], label) >= 0;
+		} else {
+			StateSet states = this.labelIndex.get(label);
+			return states != null && states.contains(index);
+		}
+	}
+
+	/**
+	 * Returns the (indices of the) states with the given label.
+	 * 
+	 * @param label a label
+	 * @return the states with the given label
+	 */
+	public StateSet getStatesWithLabel(int label) {
+		StateSet states = this.labelIndex.get(label);
+		return states == null ? StateSet.of(new BitSet()) : states;
+	}
+
 	public Set<Integer> getStates() {
-		return this.stateSet;
+		return new States();
 	}
 
 	public Set<Transition> getTransitions() {
-		return this.transitions;
+		return new Transitions();
 	}
 
 	public Map<Integer, Set<Integer>> getLabelling() {
-		return this.labelling;
+		return new Labelling();
 	}
 
 	public Map<String, Integer> getFields() {
@@ -337,7 +968,459 @@ public class LabelledPartialTransitionSystem {
 	}
 
 	public Set<Integer> getPartial() {
-		return this.partial;
+		return new Partial();
+	}
+
+	/*
+	 * Returns the indices of the states in the given set in increasing order.
+	 */
+	private static IntStream indices(StateSet states) {
+		PrimitiveIterator.OfInt iterator = new PrimitiveIterator.OfInt() {
+			private int next = states.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return this.next >= 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (this.next < 0) {
+					throw new NoSuchElementException();
+				}
+				int index = this.next;
+				this.next = states.nextSetBit(index + 1);
+				return index;
+			}
+		};
+		return StreamSupport.intStream(Spliterators.spliterator(iterator, states.cardinality(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL), false);
+	}
+
+	/*
+	 * Read-only view of the states.
+	 */
+	private class States extends AbstractSet<Integer> {
+		@Override
+		public boolean contains(Object object) {
+			return object instanceof Integer && getIndex((Integer) object) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return numberOfStates;
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return IntStream.range(0, numberOfStates).map(index -> getState(index)).iterator();
+		}
+	}
+
+	/*
+	 * Read-only view of the transitions.
+	 */
+	private class Transitions extends AbstractSet<Transition> {
+		@Override
+		public boolean contains(Object object) {
+			if (object instanceof Transition) {
+				Transition transition = (Transition) object;
+				int source = getIndex(transition.source);
+				int target = getIndex(transition.target);
+				return source >= 0 && target >= 0 && this.contains(source, target);
+			} else {
+				return false;
+			}
+		}
+
+		/*
+		 * Tests whether the state with the given source index has the state with the
+		 * given target index as successor, by binary search among its successors.
+		 */
+		private boolean contains(int source, int target) {
+			int low = successors.start(source);
+			int high = successors.end(source) - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int successor = successors.get(middle);
+				if (successor < target) {
+					low = middle + 1;
+				} else if (successor > target) {
+					high = middle - 1;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return numberOfTransitions;
+		}
+
+		@Override
+		public Iterator<Transition> iterator() {
+			return new Iterator<Transition>() {
+				private int source = 0;
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return this.next < numberOfTransitions;
+				}
+
+				@Override
+				public Transition next() {
+					if (this.next >= numberOfTransitions) {
+						throw new NoSuchElementException();
+					}
+					while (successors.end(this.source) <= this.next) {
+						this.source++;
+					}
+					return new Transition(getState(this.source), getState(successors.get(this.next++)));
+				}
+			};
+		}
+	}
+
+	/*
+	 * Read-only view of the states that are not fully explored.
+	 */
+	private class Partial extends AbstractSet<Integer> {
+		@Override
+		public boolean contains(Object object) {
+			if (object instanceof Integer) {
+				int index = getIndex((Integer) object);
+				return index >= 0 && partial.contains(index);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int size() {
+			return partial.cardinality();
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return indices(partial).map(index -> getState(index)).iterator();
+		}
+	}
+
+	/*
+	 * Read-only view of the labels of the state with the given index.
+	 */
+	private class Labels extends AbstractSet<Integer> {
+		private final int index;
+
+		Labels(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return object instanceof Integer && hasLabel(this.index, (Integer) object);
+		}
+
+		@Override
+		public int size() {
+			return labelsOf(this.index).length;
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return Arrays.stream(labelsOf(this.index)).iterator();
+		}
 	}
 
+	/*
+	 * Read-only view of the labelling: the states that are labelled, mapped to
+	 * their labels.
+	 */
+	private class Labelling extends AbstractMap<Integer, Set<Integer>> {
+		/*
+		 * Returns the index of the given state if it is labelled, or -1 otherwise.
+		 */
+		private int labelledIndex(Object object) {
+			if (object instanceof Integer) {
+				int index = getIndex((Integer) object);
+				if (index >= 0 && labelled.contains(index)) {
+					return index;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public boolean containsKey(Object object) {
+			return this.labelledIndex(object) >= 0;
+		}
+
+		@Override
+		public Set<Integer> get(Object object) {
+			int index = this.labelledIndex(object);
+			return index >= 0 ? new Labels(index) : null;
+		}
+
+		@Override
+		public int size() {
+			return labelled.cardinality();
+		}
+
+		@Override
+		public Set<Map.Entry<Integer, Set<Integer>>> entrySet() {
+			return new AbstractSet<Map.Entry<Integer, Set<Integer>>>() {
+				@Override
+				public int size() {
+					return labelled.cardinality();
+				}
+
+				@Override
+				public Iterator<Map.Entry<Integer, Set<Integer>>> iterator() {
+					return indices(labelled)
+							.mapToObj(index -> (Map.Entry<Integer, Set<Integer>>) new SimpleImmutableEntry<Integer, Set<Integer>>(
+									getState(index), new Labels(index)))
+							.iterator();
+				}
+			};
+		}
+	}
+
+	/*
+	 * A set of labels, sorted, that can be used as key of the dictionary of label
+	 * sets.
+	 */
+	private static class LabelSet {
+		private final int[] labels;
+
+		LabelSet(int[] labels) {
+			this.labels = labels;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(this.labels);
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof LabelSet && Arrays.equals(this.labels, ((LabelSet) object).labels);
+		}
+	}
+
+	/**
+	 * Collects the states, transitions, labels and fields of a labelled partial
+	 * transition system in growable primitive arrays, without creating an object
+	 * per transition or label. The states are identified by their JPF id; they
+	 * are numbered by build.
+	 *
+	 * A builder with a directory keeps these arrays, and the system it builds, in
+	 * memory-mapped files in that directory rather than on the heap. If such a
+	 * file cannot be created or grown, an UncheckedIOException is thrown.
+	 */
+	public static class Builder {
+		private static final int INITIAL_CAPACITY = 16;
+
+		// the initial number of ints of the memory-mapped arrays, which grow by copying
+		private static final int INITIAL_MAPPED_CAPACITY = 1 << 12;
+
+		// the directory of the memory-mapped files, or null if everything is kept on the heap
+		private final Path directory;
+
+		// the arrays below in memory-mapped files, a transition or label as two ints, or null if on the heap
+		private MappedArray mappedStates;
+		private MappedArray mappedTransitions;
+		private MappedArray mappedPartial;
+		private MappedArray mappedLabelled;
+		private MappedArray mappedLabels;
+
+		private int[] stateArray = new int[INITIAL_CAPACITY];
+		private int states;
+
+		// each transition packed as source << 32 | target
+		private long[] transitionArray = new long[INITIAL_CAPACITY];
+		private int transitions;
+
+		private int[] partialArray = new int[INITIAL_CAPACITY];
+		private int partial;
+
+		// states that are labelled, even if they have no labels
+		private int[] labelledArray = new int[INITIAL_CAPACITY];
+		private int labelled;
+
+		// each label packed as state << 32 | label
+		private long[] labelArray = new long[INITIAL_CAPACITY];
+		private int labels;
+
+		private final Map<String, Integer> fields = new HashMap<String, Integer>();
+
+		/**
+		 * Initializes this builder without states.
+		 */
+		public Builder() {
+			this.directory = null;
+		}
+
+		/**
+		 * Initializes this builder without states, which keeps the states,
+		 * transitions and labels, and the system it builds, in memory-mapped files
+		 * in the given directory, so that the system can be larger than the heap.
+		 *
+		 * @param directory the directory of the memory-mapped files, or null to keep
+		 *                  everything on the heap
+		 * @throws IOException if the files cannot be created or mapped
+		 */
+		public Builder(Path directory) throws IOException {
+			this.directory = directory;
+			if (directory != null) {
+				this.mappedStates = new MappedArray(directory, INITIAL_MAPPED_CAPACITY);
+				this.mappedTransitions = new MappedArray(directory, INITIAL_MAPPED_CAPACITY);
+				this.mappedPartial = new MappedArray(directory, INITIAL_MAPPED_CAPACITY);
+				this.mappedLabelled = new MappedArray(directory, INITIAL_MAPPED_CAPACITY);
+				this.mappedLabels = new MappedArray(directory, INITIAL_MAPPED_CAPACITY);
+			}
+		}
+
+		/*
+		 * Initializes this builder with the given partial states, transitions and
+		 * labelling.
+		 */
+		private Builder(Set<Integer> partial, Set<Transition> transitions, Map<Integer, Set<Integer>> labelling) {
+			this();
+			for (Integer state : partial) {
+				this.addPartial(state);
+			}
+			for (Transition transition : transitions) {
+				this.addTransition(transition.source, transition.target);
+			}
+			for (Map.Entry<Integer, Set<Integer>> entry : labelling.entrySet()) {
+				this.addLabelled(entry.getKey());
+				for (Integer label : entry.getValue()) {
+					this.addLabel(entry.getKey(), label);
+				}
+			}
+		}
+
+		/**
+		 * Adds the given state.
+		 * 
+		 * @param state a state
+		 */
+		public void addState(int state) {
+			if (this.directory != null) {
+				set(this.mappedStates, this.states++, state);
+				return;
+			}
+			if (this.states == this.stateArray.length) {
+				this.stateArray = Arrays.copyOf(this.stateArray, 2 * this.states);
+			}
+			this.stateArray[this.states++] = state;
+		}
+
+		/**
+		 * Adds a transition from the given source to the given target. Both are
+		 * added as states as well.
+		 * 
+		 * @param source the source of the transition
+		 * @param target the target of the transition
+		 */
+		public void addTransition(int source, int target) {
+			if (this.directory != null) {
+				set(this.mappedTransitions, 2L * this.transitions, source);
+				set(this.mappedTransitions, 2L * this.transitions++ + 1, target);
+				return;
+			}
+			if (this.transitions == this.transitionArray.length) {
+				this.transitionArray = Arrays.copyOf(this.transitionArray, 2 * this.transitions);
+			}
+			this.transitionArray[this.transitions++] = pack(source, target);
+		}
+
+		/**
+		 * Adds the given state as a state that is not fully explored.
+		 * 
+		 * @param state a state
+		 */
+		public void addPartial(int state) {
+			if (this.directory != null) {
+				set(this.mappedPartial, this.partial++, state);
+				return;
+			}
+			if (this.partial == this.partialArray.length) {
+				this.partialArray = Arrays.copyOf(this.partialArray, 2 * this.partial);
+			}
+			this.partialArray[this.partial++] = state;
+		}
+
+		/**
+		 * Adds the given state to the labelling, even if it has no labels.
+		 * 
+		 * @param state a state
+		 */
+		public void addLabelled(int state) {
+			if (this.directory != null) {
+				set(this.mappedLabelled, this.labelled++, state);
+				return;
+			}
+			if (this.labelled == this.labelledArray.length) {
+				this.labelledArray = Arrays.copyOf(this.labelledArray, 2 * this.labelled);
+			}
+			this.labelledArray[this.labelled++] = state;
+		}
+
+		/**
+		 * Adds the given label to the given state.
+		 * 
+		 * @param state a state
+		 * @param label the index of a field
+		 */
+		public void addLabel(int state, int label) {
+			if (this.directory != null) {
+				set(this.mappedLabels, 2L * this.labels, state);
+				set(this.mappedLabels, 2L * this.labels++ + 1, label);
+				return;
+			}
+			if (this.labels == this.labelArray.length) {
+				this.labelArray = Arrays.copyOf(this.labelArray, 2 * this.labels);
+			}
+			this.labelArray[this.labels++] = pack(state, label);
+		}
+
+		/**
+		 * Adds the given field with the given index.
+		 * 
+		 * @param field the qualified name of a field
+		 * @param index the index of the field
+		 */
+		public void addField(String field, int index) {
+			this.fields.put(field, index);
+		}
+
+		/*
+		 * Sets the int at the given index of the given memory-mapped array, which is
+		 * grown first if the index is its length.
+		 */
+		private static void set(MappedArray array, long index, int value) {
+			if (index == array.length()) {
+				try {
+					array.grow(2 * index);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			array.set(index, value);
+		}
+
+		/**
+		 * Returns the labelled partial transition system with the states,
+		 * transitions, labels and fields added so far.
+		 * 
+		 * @return the labelled partial transition system built by this builder
+		 */
+		public LabelledPartialTransitionSystem build() {
+			return new LabelledPartialTransitionSystem(this);
+		}
+	}
 }
@@ -0,0 +1,401 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ctl.And;
+import ctl.AtomicProposition;
+import ctl.Canonicalizer;
+import ctl.ExistsAlways;
+import ctl.ExistsNext;
+import ctl.ExistsUntil;
+import ctl.False;
+import ctl.ForAllUntil;
+import ctl.Formula;
+import ctl.Formulas;
+import ctl.Iff;
+import ctl.Implies;
+import ctl.Not;
+import ctl.Or;
+import ctl.True;
+
+/**
+ * Checks whether a single state satisfies a formula, exploring only the part of
+ * the labelled partial transition system that is needed to decide it, in the
+ * style of local model checking: whereas a Model computes the states that
+ * satisfy each subformula for all states, this checker evaluates a subformula
+ * for a state only when the verdict depends on it, and stops as soon as the
+ * verdict is known.
+ *
+ * Formulas are translated into the existential normal form, with EX, EU and EG
+ * as only temporal operators. Both E[p U q] and EG p are decided by a depth
+ * first search from the state: for E[p U q] through the states that satisfy p
+ * until a state that satisfies q is found, and for EG p through the states
+ * that satisfy p until a cycle or a state without successors is found. When
+ * the search succeeds, the states on its stack satisfy the formula; when it
+ * does not, all states it visited do not. These results are kept, so that
+ * later searches, also for other formulas and states, do not repeat them. The
+ * results are the same as those of a Model.
+ *
+ * The boolean connectives are evaluated with an explicit stack, so that
+ * formulas of any depth can be checked. Each level of temporal operators does
+ * take a few calls, hence formulas with more than MAX_TEMPORAL_DEPTH nested
+ * temporal operators, as well as formulas whose existential normal form would
+ * be too large, are checked by a Model instead.
+ *
+ * A local model checker is not thread safe.
+ */
+public class LocalModelChecker {
+	private final LabelledPartialTransitionSystem pts;
+	private final Canonicalizer canonicalizer;
+
+	// subformula -> the (indices of the) states for which it has been decided and those that satisfy it
+	private final Map<Formula, BitSet[]> decided;
+
+	// the stack of the depth first search: the states and their next and last transition
+	private int[] stack;
+	private int[] next;
+	private int[] end;
+	private int size;
+
+	// the model that checks formulas with many nested temporal operators, built when needed
+	private Model model;
+
+	private static final int KNOWN = 0;
+	private static final int VALUE = 1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// the number of nested temporal operators, and the size of the existential normal form, from which formulas are checked by a model
+	private static final int MAX_TEMPORAL_DEPTH = 256;
+	private static final long MAX_NORMAL_FORM_SIZE = 1 << 20;
+
+	// the number of subformulas the translation of A[p U q] adds, besides those of p and q
+	private static final int ALL_UNTIL_SIZE = 8;
+
+	/**
+	 * Initializes this checker for the given system.
+	 *
+	 * @param pts a labelled partial transition system
+	 */
+	public LocalModelChecker(LabelledPartialTransitionSystem pts) {
+		this.pts = pts;
+		this.canonicalizer = new Canonicalizer(true);
+		this.decided = new HashMap<Formula, BitSet[]>();
+		this.stack = new int[INITIAL_CAPACITY];
+		this.next = new int[INITIAL_CAPACITY];
+		this.end = new int[INITIAL_CAPACITY];
+		this.model = null;
+	}
+
+	/**
+	 * Tests whether the given state satisfies the given formula.
+	 *
+	 * @param formula a formula
+	 * @param state   a state of the system
+	 * @return true if the given state satisfies the given formula, false otherwise
+	 */
+	public boolean check(Formula formula, int state) {
+		int index = this.pts.getIndex(state);
+		if (index < 0) {
+			return false;
+		}
+		if (!isLocal(formula)) {
+			// the model evaluates formulas of any depth without recursion
+			if (this.model == null) {
+				this.model = new Model(this.pts);
+			}
+			return this.model.check(formula).getSat().contains(state);
+		}
+		return this.holds(this.canonicalizer.canonicalize(formula), index);
+	}
+
+	/*
+	 * Tests whether the given formula has at most MAX_TEMPORAL_DEPTH nested
+	 * temporal operators and an existential normal form of at most
+	 * MAX_NORMAL_FORM_SIZE subformulas, counted as a tree. Since the translation
+	 * of A[p U q] contains q three times, the latter grows exponentially with the
+	 * nesting of such formulas.
+	 */
+	private static boolean isLocal(Formula formula) {
+		Map<Formula, Integer> depths = new IdentityHashMap<Formula, Integer>();
+		Map<Formula, Long> sizes = new IdentityHashMap<Formula, Long>();
+		for (Formula subformula : Formulas.postOrder(formula)) {
+			int depth = 0;
+			long size = 1;
+			for (Formula operand : Formulas.getSubformulas(subformula)) {
+				depth = Math.max(depth, depths.get(operand));
+				size += sizes.get(operand);
+			}
+			if (subformula instanceof ForAllUntil) {
+				size += 2 * sizes.get(((ForAllUntil) subformula).getRight()) + ALL_UNTIL_SIZE;
+			}
+			if (!Formulas.getSubformulas(subformula).isEmpty() && !isConnective(subformula)) {
+				depth++;
+			}
+			if (depth > MAX_TEMPORAL_DEPTH || size > MAX_NORMAL_FORM_SIZE) {
+				return false;
+			}
+			depths.put(subformula, depth);
+			sizes.put(subformula, size);
+		}
+		return true;
+	}
+
+	/*
+	 * Tests whether the given formula is a negation, conjunction, disjunction,
+	 * implication or equivalence.
+	 */
+	private static boolean isConnective(Formula formula) {
+		return formula instanceof Not || formula instanceof And || formula instanceof Or
+				|| formula instanceof Implies || formula instanceof Iff;
+	}
+
+	/*
+	 * Tests whether the state with the given index satisfies the given formula,
+	 * which is in existential normal form. The boolean connectives are evaluated
+	 * with an explicit stack, from left to right and only as far as needed, so
+	 * that their nesting is not limited by the call stack; only the temporal
+	 * operators are evaluated by (recursive) calls.
+	 */
+	private boolean holds(Formula formula, int state) {
+		Deque<Connective> stack = new ArrayDeque<Connective>();
+		// the value of the operand of the connective on top of the stack, or null if the connective has just been pushed
+		Boolean value = this.start(formula, state, stack);
+		while (value == null || !stack.isEmpty()) {
+			Connective connective = stack.peek();
+			if (value == null) {
+				value = this.start(connective.left, state, stack);
+			} else {
+				Boolean result = connective.combine(value);
+				if (result == null) {
+					value = this.start(connective.right, state, stack);
+				} else {
+					stack.pop();
+					if (!(connective.formula instanceof Not)) {
+						BitSet[] decided = this.decided(connective.formula);
+						decided[KNOWN].set(state);
+						decided[VALUE].set(state, result);
+					}
+					value = result;
+				}
+			}
+		}
+		return value;
+	}
+
+	/*
+	 * Returns whether the state with the given index satisfies the given formula
+	 * if it is not a boolean connective or it has been decided before; otherwise,
+	 * pushes the connective on the given stack and returns null.
+	 */
+	private Boolean start(Formula formula, int state, Deque<Connective> stack) {
+		if (formula instanceof True) {
+			return true;
+		} else if (formula instanceof False) {
+			return false;
+		} else if (formula instanceof AtomicProposition) {
+			Integer label = this.pts.getFields().get(formula.toString());
+			return label != null && this.pts.hasLabel(state, label);
+		} else if (formula instanceof Not) {
+			stack.push(new Connective(formula, ((Not) formula).getFormula(), null));
+			return null;
+		}
+
+		BitSet[] decided = this.decided(formula);
+		if (decided[KNOWN].get(state)) {
+			return decided[VALUE].get(state);
+		}
+		if (formula instanceof And) {
+			stack.push(new Connective(formula, ((And) formula).getLeft(), ((And) formula).getRight()));
+			return null;
+		} else if (formula instanceof Or) {
+			stack.push(new Connective(formula, ((Or) formula).getLeft(), ((Or) formula).getRight()));
+			return null;
+		} else if (formula instanceof Implies) {
+			stack.push(new Connective(formula, ((Implies) formula).getLeft(), ((Implies) formula).getRight()));
+			return null;
+		} else if (formula instanceof Iff) {
+			stack.push(new Connective(formula, ((Iff) formula).getLeft(), ((Iff) formula).getRight()));
+			return null;
+		} else if (formula instanceof ExistsNext) {
+			Formula operand = ((ExistsNext) formula).getFormula();
+			boolean value = false;
+			int last = this.first(state + 1);
+			for (int transition = this.first(state); !value && transition < last; transition++) {
+				value = this.holds(operand, this.pts.getTargetIndex(transition));
+			}
+			decided[KNOWN].set(state);
+			decided[VALUE].set(state, value);
+			return value;
+		} else if (formula instanceof ExistsUntil) {
+			ExistsUntil until = (ExistsUntil) formula;
+			return this.search(until.getLeft(), until.getRight(), state, decided);
+		} else if (formula instanceof ExistsAlways) {
+			return this.search(((ExistsAlways) formula).getFormula(), null, state, decided);
+		} else {
+			throw new IllegalArgumentException("Formula not in existential normal form: " + formula);
+		}
+	}
+
+	/*
+	 * Returns the states for which the given formula has been decided and those
+	 * that satisfy it.
+	 */
+	private BitSet[] decided(Formula formula) {
+		return this.decided.computeIfAbsent(formula, f -> new BitSet[] { new BitSet(), new BitSet() });
+	}
+
+	/*
+	 * A boolean connective being evaluated for a state, with its operands; the
+	 * right one is null for a negation.
+	 */
+	private static class Connective {
+		private final Formula formula;
+		private final Formula left;
+		private final Formula right;
+
+		// whether the left operand has been evaluated, and its value
+		private boolean evaluated;
+		private boolean leftValue;
+
+		Connective(Formula formula, Formula left, Formula right) {
+			this.formula = formula;
+			this.left = left;
+			this.right = right;
+			this.evaluated = false;
+		}
+
+		/*
+		 * Takes the value of the next operand and returns the value of this
+		 * connective, or null if it depends on the right operand.
+		 */
+		Boolean combine(boolean value) {
+			if (this.evaluated) {
+				return this.formula instanceof Iff ? this.leftValue == value : value;
+			}
+			this.evaluated = true;
+			this.leftValue = value;
+			if (this.formula instanceof Not) {
+				return !value;
+			} else if (this.formula instanceof And) {
+				return value ? null : false;
+			} else if (this.formula instanceof Or) {
+				return value ? true : null;
+			} else if (this.formula instanceof Implies) {
+				return value ? null : true;
+			} else {
+				return null;
+			}
+		}
+	}
+
+	/*
+	 * Decides E[left U right], if right is not null, or EG left, otherwise, for
+	 * the state with the given index by a depth first search through the states
+	 * that satisfy left, and records the result in the given sets.
+	 */
+	private boolean search(Formula left, Formula right, int state, BitSet[] decided) {
+		// this search may be interrupted by searches for subformulas, which use the stack above base
+		int base = this.size;
+		BitSet visited = new BitSet();
+		BitSet onStack = new BitSet();
+		boolean found = false;
+		int target = state;
+		while (!found) {
+			if (target >= 0) {
+				// visit target
+				visited.set(target);
+				if (decided[KNOWN].get(target)) {
+					found = decided[VALUE].get(target);
+				} else if (right != null && this.holds(right, target)) {
+					found = true;
+				} else if (!this.holds(left, target)) {
+					decided[KNOWN].set(target);
+				} else if (right == null && this.first(target) == this.first(target + 1)) {
+					// a state without successors satisfies EG left if it satisfies left
+					found = true;
+				} else {
+					this.push(target);
+					onStack.set(target);
+				}
+				if (found) {
+					this.push(target);
+				}
+				target = -1;
+			} else if (this.size == base) {
+				break;
+			} else if (this.next[this.size - 1] < this.end[this.size - 1]) {
+				int successor = this.pts.getTargetIndex(this.next[this.size - 1]++);
+				if (right == null && onStack.get(successor)) {
+					// a cycle through states that satisfy left
+					found = true;
+				} else if (!visited.get(successor)) {
+					target = successor;
+				}
+			} else {
+				onStack.clear(this.stack[--this.size]);
+			}
+		}
+
+		if (found) {
+			// each state on the stack reaches the witness through the states above it
+			for (int i = base; i < this.size; i++) {
+				decided[KNOWN].set(this.stack[i]);
+				decided[VALUE].set(this.stack[i]);
+			}
+			this.size = base;
+		} else {
+			// none of the visited states reaches a witness
+			decided[KNOWN].or(visited);
+		}
+		return found;
+	}
+
+	/*
+	 * Pushes the state with the given index on the stack of the depth first
+	 * search.
+	 */
+	private void push(int state) {
+		if (this.size == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, 2 * this.size);
+			this.next = Arrays.copyOf(this.next, 2 * this.size);
+			this.end = Arrays.copyOf(this.end, 2 * this.size);
+		}
+		this.stack[this.size] = state;
+		this.next[this.size] = this.first(state);
+		this.end[this.size] = this.first(state + 1);
+		this.size++;
+	}
+
+	/*
+	 * Returns the first transition whose source has an index of at least the
+	 * given one. The transitions are numbered by the index of their source.
+	 */
+	private int first(int state) {
+		Adjacency successors = this.pts.getSuccessors();
+		return state < successors.size() ? successors.start(state) : this.pts.getNumberOfTransitions();
+	}
+}
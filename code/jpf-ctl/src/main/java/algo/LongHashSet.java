@@ -0,0 +1,122 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+/**
+ * A set of longs, kept in a single array by open addressing with linear
+ * probing, so that no object is created per element. A transition, packed as
+ * source << 32 | target, takes 8 to 16 bytes, rather than the entry, the boxed
+ * integer and the share of the table of a hash set.
+ *
+ * Elements cannot be removed. A set is not thread safe.
+ */
+public class LongHashSet {
+	private static final int INITIAL_CAPACITY = 16;
+
+	// the table is grown when it is more than half full
+	private static final int MAX_LOAD_SHIFT = 1;
+
+	// 2^64 divided by the golden ratio, which spreads the elements over the table
+	private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	// 0 marks an empty slot, hence whether 0 is an element is kept apart
+	private long[] table;
+	private boolean zero;
+	private int size;
+
+	/**
+	 * Initializes this set as empty.
+	 */
+	public LongHashSet() {
+		this.table = new long[INITIAL_CAPACITY];
+		this.zero = false;
+		this.size = 0;
+	}
+
+	/**
+	 * Adds the given element to this set.
+	 *
+	 * @param element an element
+	 * @return true if the given element was not in this set, false otherwise
+	 */
+	public boolean add(long element) {
+		if (element == 0) {
+			if (this.zero) {
+				return false;
+			}
+			this.zero = true;
+			this.size++;
+			return true;
+		}
+		int slot = this.slot(element, this.table);
+		if (this.table[slot] == element) {
+			return false;
+		}
+		this.table[slot] = element;
+		this.size++;
+		if (this.size > this.table.length >> MAX_LOAD_SHIFT) {
+			this.grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether the given element is in this set.
+	 *
+	 * @param element an element
+	 * @return true if the given element is in this set, false otherwise
+	 */
+	public boolean contains(long element) {
+		return element == 0 ? this.zero : this.table[this.slot(element, this.table)] == element;
+	}
+
+	/**
+	 * Returns the number of elements of this set.
+	 *
+	 * @return the number of elements of this set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/*
+	 * Returns the slot of the given table that contains the given element, which
+	 * is not 0, or the empty slot where it would be added.
+	 */
+	private int slot(long element, long[] table) {
+		int mask = table.length - 1;
+		int slot = (int) ((element * MULTIPLIER) >>> 32) & mask;
+		while (table[slot] != 0 && table[slot] != element) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/*
+	 * Doubles the size of the table.
+	 */
+	private void grow() {
+		long[] table = new long[2 * this.table.length];
+		for (long element : this.table) {
+			if (element != 0) {
+				table[this.slot(element, table)] = element;
+			}
+		}
+		this.table = table;
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An array of ints that is kept in a memory-mapped temporary file rather than
+ * on the heap, so that it can be larger than the heap, and that is indexed by
+ * a long, so that it can have more than 2^31 elements. The operating system
+ * pages the parts of the file that are used in and out of memory.
+ *
+ * Since a single mapping is limited to 2 GB, the file is mapped in segments of
+ * 2^28 ints. The file is deleted once mapped, or when the virtual machine exits
+ * if the platform does not allow deleting a mapped file, and the mapping is
+ * released when this object is garbage collected. The ints are initially 0.
+ *
+ * Concurrent reads are supported; writes have to be published by the writer,
+ * for example by handing the array over once it has been filled.
+ */
+class MappedArray {
+	// the number of ints in a segment is 2^SEGMENT_SHIFT
+	private static final int SEGMENT_SHIFT = 28;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	// the number of bits of an int by which the ints are sorted per pass
+	private static final int DIGIT_BITS = 16;
+	private static final int DIGITS = 1 << DIGIT_BITS;
+
+	private final Path directory;
+	private IntBuffer[] segments;
+	private long length;
+
+	/**
+	 * Initializes this array with the given number of ints, all 0, in a file in
+	 * the given directory.
+	 *
+	 * @param directory the directory of the temporary file
+	 * @param length    the number of ints
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	MappedArray(Path directory, long length) throws IOException {
+		this.directory = directory;
+		this.segments = map(directory, length);
+		this.length = length;
+	}
+
+	/*
+	 * Returns the segments of a new temporary file in the given directory that
+	 * holds the given number of ints, all 0.
+	 */
+	private static IntBuffer[] map(Path directory, long length) throws IOException {
+		Path file = Files.createTempFile(directory, "jpf-ctl", ".bin");
+		IntBuffer[] segments = new IntBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			// the extended file is filled with zeroes
+			raf.setLength(length * Integer.BYTES);
+			FileChannel channel = raf.getChannel();
+			for (int segment = 0; segment < segments.length; segment++) {
+				long start = (long) segment << SEGMENT_SHIFT;
+				long ints = Math.min(SEGMENT_MASK + 1, length - start);
+				segments[segment] = channel
+						.map(FileChannel.MapMode.READ_WRITE, start * Integer.BYTES, ints * Integer.BYTES)
+						.order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+		}
+		try {
+			Files.delete(file);
+		} catch (IOException e) {
+			file.toFile().deleteOnExit();
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the number of ints of this array.
+	 *
+	 * @return the number of ints of this array
+	 */
+	long length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the int at the given index.
+	 *
+	 * @param index a number between 0 and length() - 1
+	 * @return the int at the given index
+	 */
+	int get(long index) {
+		return this.segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+	}
+
+	/**
+	 * Sets the int at the given index to the given value.
+	 *
+	 * @param index a number between 0 and length() - 1
+	 * @param value the new value
+	 */
+	void set(long index, int value) {
+		this.segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+	}
+
+	/**
+	 * Grows this array to the given number of ints. The ints are copied to a new
+	 * file; the added ones are 0.
+	 *
+	 * @param length the new number of ints, at least length()
+	 * @throws IOException if the new file cannot be created or mapped
+	 */
+	void grow(long length) throws IOException {
+		IntBuffer[] segments = map(this.directory, length);
+		for (int segment = 0; segment < this.segments.length; segment++) {
+			IntBuffer source = this.segments[segment].duplicate();
+			source.clear();
+			segments[segment].duplicate().put(source);
+		}
+		this.segments = segments;
+		this.length = length;
+	}
+
+	/**
+	 * Sorts the first given number of ints of this array in increasing order.
+	 * The ints are sorted by a radix sort, a digit of DIGIT_BITS bits at a time,
+	 * which reads and writes both this array and a temporary one sequentially,
+	 * but for the scattered writes of each pass.
+	 *
+	 * @param size the number of ints to sort
+	 * @throws IOException if the temporary file cannot be created or mapped
+	 */
+	void sort(long size) throws IOException {
+		MappedArray buffer = new MappedArray(this.directory, size);
+		this.distribute(buffer, size, 0);
+		buffer.distribute(this, size, DIGIT_BITS);
+	}
+
+	/*
+	 * Copies the first size ints of this array to the given one, ordered by the
+	 * digit that starts at the given bit, stably. The sign bit is flipped so that
+	 * negative ints come first.
+	 */
+	private void distribute(MappedArray target, long size, int shift) {
+		long[] positions = new long[DIGITS + 1];
+		for (long index = 0; index < size; index++) {
+			positions[digit(this.get(index), shift) + 1]++;
+		}
+		for (int digit = 0; digit < DIGITS; digit++) {
+			positions[digit + 1] += positions[digit];
+		}
+		for (long index = 0; index < size; index++) {
+			int value = this.get(index);
+			target.set(positions[digit(value, shift)]++, value);
+		}
+	}
+
+	/*
+	 * Returns the digit of the given int, with its sign bit flipped, that starts
+	 * at the given bit.
+	 */
+	private static int digit(int value, int shift) {
+		return ((value ^ Integer.MIN_VALUE) >>> shift) & (DIGITS - 1);
+	}
+
+	/**
+	 * Returns the index of the given int among the first given number of ints of
+	 * this array, which are sorted in increasing order, or a negative number if
+	 * it does not occur among them, as Arrays.binarySearch does.
+	 *
+	 * @param size  the number of sorted ints
+	 * @param value the int to search for
+	 * @return the index of the given int, or a negative number if it does not occur
+	 */
+	int binarySearch(int size, int value) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int element = this.get(middle);
+			if (element < value) {
+				low = middle + 1;
+			} else if (element > value) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+}
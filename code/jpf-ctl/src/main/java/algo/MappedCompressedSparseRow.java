@@ -0,0 +1,123 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A compressed sparse row representation of the transitions of a labelled
+ * partial transition system, or of their reverse, whose arrays are kept in a
+ * memory-mapped file rather than on the heap (see MappedArray). The operating
+ * system pages the parts of the file that are used in and out of memory.
+ *
+ * A labelled partial transition system that is built in memory-mapped files
+ * keeps its transitions in this form, and a Model of such a system keeps the
+ * reverse index in this form as well, so that neither adds to the heap per
+ * transition.
+ *
+ * The file contains the offsets of the nodes, size() + 1 ints, followed by the
+ * neighbours, one int per transition.
+ */
+public class MappedCompressedSparseRow implements Adjacency {
+	private final MappedArray array;
+	private final int size;
+
+	/**
+	 * Initializes this CSR with the given array, which contains the offsets of
+	 * the given number of nodes followed by the neighbours.
+	 *
+	 * @param array the offsets followed by the neighbours
+	 * @param size  the number of nodes
+	 */
+	MappedCompressedSparseRow(MappedArray array, int size) {
+		this.array = array;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the successors, or the predecessors if reverse, of the states of the
+	 * given system, identified by their index, in a memory-mapped file in the
+	 * given directory.
+	 *
+	 * @param pts       a labelled partial transition system
+	 * @param reverse   whether the predecessors, rather than the successors, are
+	 *                  the neighbours
+	 * @param directory the directory of the temporary file
+	 * @return the successors or predecessors of the states of the given system
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	public static MappedCompressedSparseRow of(LabelledPartialTransitionSystem pts, boolean reverse, Path directory)
+			throws IOException {
+		Adjacency successors = pts.getSuccessors();
+		int size = successors.size();
+		int edges = pts.getNumberOfTransitions();
+		MappedArray array = new MappedArray(directory, size + 1L + edges);
+
+		if (!reverse) {
+			for (int node = 0; node <= size; node++) {
+				array.set(node, node < size ? successors.start(node) : edges);
+			}
+			for (int position = 0; position < edges; position++) {
+				array.set(size + 1L + position, successors.get(position));
+			}
+			return new MappedCompressedSparseRow(array, size);
+		}
+
+		// count the predecessors of each node, and accumulate, so that offset n is the end of the predecessors of node n
+		for (int position = 0; position < edges; position++) {
+			int node = successors.get(position);
+			array.set(node, array.get(node) + 1);
+		}
+		for (int node = 1; node < size; node++) {
+			array.set(node, array.get(node) + array.get(node - 1));
+		}
+		array.set(size, edges);
+
+		// place the predecessors from the end of each node, so that offset n becomes the start of node n
+		for (int source = size - 1; source >= 0; source--) {
+			for (int position = successors.end(source) - 1; position >= successors.start(source); position--) {
+				int node = successors.get(position);
+				int offset = array.get(node) - 1;
+				array.set(node, offset);
+				array.set(size + 1L + offset, source);
+			}
+		}
+		return new MappedCompressedSparseRow(array, size);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int start(int node) {
+		return this.array.get(node);
+	}
+
+	@Override
+	public int end(int node) {
+		return this.array.get(node + 1L);
+	}
+
+	@Override
+	public int get(int position) {
+		return this.array.get(this.size + 1L + position);
+	}
+}
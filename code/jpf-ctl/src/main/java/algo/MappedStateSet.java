@@ -0,0 +1,139 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * A set of states backed by a bit set that is kept in a memory-mapped file
+ * rather than on the heap, a word of 32 states per int (see MappedArray). The
+ * states are added while the set is built, by the labelled partial transition
+ * system, after which the set is not modified.
+ */
+class MappedStateSet implements StateSet {
+	private final MappedArray words;
+	private final int size;
+	private int cardinality;
+
+	/**
+	 * Initializes this set without states, for the states with index between 0
+	 * and the given size - 1, in a file in the given directory.
+	 *
+	 * @param size      the number of states
+	 * @param directory the directory of the temporary file
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	MappedStateSet(int size, Path directory) throws IOException {
+		this.words = new MappedArray(directory, ((long) size + Integer.SIZE - 1) / Integer.SIZE);
+		this.size = size;
+		this.cardinality = 0;
+	}
+
+	/**
+	 * Adds the state with the given index to this set.
+	 *
+	 * @param index a number between 0 and size - 1
+	 */
+	void add(int index) {
+		int word = this.words.get(index / Integer.SIZE);
+		int bit = 1 << index;
+		if ((word & bit) == 0) {
+			this.words.set(index / Integer.SIZE, word | bit);
+			this.cardinality++;
+		}
+	}
+
+	@Override
+	public boolean contains(int index) {
+		return index >= 0 && index < this.size && (this.words.get(index / Integer.SIZE) & (1 << index)) != 0;
+	}
+
+	@Override
+	public int cardinality() {
+		return this.cardinality;
+	}
+
+	@Override
+	public int nextSetBit(int fromIndex) {
+		if (fromIndex < 0) {
+			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+		}
+		if (fromIndex >= this.size) {
+			return -1;
+		}
+		int word = fromIndex / Integer.SIZE;
+		int bits = this.words.get(word) & (-1 << fromIndex);
+		while (bits == 0) {
+			if (++word == this.words.length()) {
+				return -1;
+			}
+			bits = this.words.get(word);
+		}
+		return word * Integer.SIZE + Integer.numberOfTrailingZeros(bits);
+	}
+
+	@Override
+	public int nextClearBit(int fromIndex) {
+		if (fromIndex < 0) {
+			throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+		}
+		if (fromIndex >= this.size) {
+			return fromIndex;
+		}
+		int word = fromIndex / Integer.SIZE;
+		int bits = ~this.words.get(word) & (-1 << fromIndex);
+		while (bits == 0) {
+			if (++word == this.words.length()) {
+				return this.size;
+			}
+			bits = ~this.words.get(word);
+		}
+		return Math.min(word * Integer.SIZE + Integer.numberOfTrailingZeros(bits), this.size);
+	}
+
+	@Override
+	public BitSet toBitSet() {
+		long[] longs = new long[(int) ((this.words.length() + 1) / 2)];
+		for (int word = 0; word < this.words.length(); word++) {
+			longs[word / 2] |= (this.words.get(word) & 0xFFFFFFFFL) << (word % 2 * Integer.SIZE);
+		}
+		return BitSet.valueOf(longs);
+	}
+
+	@Override
+	public void retainIn(BitSet bits) {
+		bits.and(this.toBitSet());
+	}
+
+	@Override
+	public void addTo(BitSet bits) {
+		bits.or(this.toBitSet());
+	}
+
+	@Override
+	public void removeFrom(BitSet bits) {
+		bits.andNot(this.toBitSet());
+	}
+
+	@Override
+	public String toString() {
+		return this.toBitSet().toString();
+	}
+}
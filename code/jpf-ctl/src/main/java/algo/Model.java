@@ -24,13 +24,24 @@ import ctl.False;
 import ctl.Formula;
 import ctl.Or;
 import ctl.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * 
@@ -43,70 +54,337 @@ import java.util.Map;
  * 
  */
 
-public class Model {
+public class Model implements AutoCloseable {
 
-	// Post and Pre hashtables
-	private final Map<Integer, Set<Integer>> post;
-	private final Map<Integer, Set<Integer>> pre;
-	private final Map<Formula,StateSets> unSatAndSatForEachFormula; 
+	// successors and predecessors of each state, by index
+	private final Adjacency post;
+	private final Adjacency pre;
+
+	// backward reachability over pre, shared by EF, EU, AG and AU
+	private final BackwardReachability backward;
+
+	// the threads that evaluate subformulas and run the parallel kernel, or null if there is only one thread
+	private ForkJoinPool pool;
+
+	// backward reachability by several threads, or null if it is not used
+	private ParallelBackwardReachability parallel;
+
+	// number of states from which on the parallel kernel is used
+	private int parallelThreshold;
+
+	// the algorithm used for EG by EG, AF and AU
+	private final Map<Class<? extends Formula>, ExistsAlwaysEngine> engines;
 	private final Map<Integer,String> labellingFormulaForEachState;
 
-	// Subset tables
-	private final Map<Formula, StateSets> subset;
+	// translates the formulas into the canonical form by which the subset tables are keyed
+	private Canonicalizer canonicalizer;
+
+	// Subset tables: the result of each canonical formula, computed once, even if several threads need it
+	private final ConcurrentMap<Formula, CompletableFuture<StateSets>> subset;
 
 	// Target Transition System
 	private final LabelledPartialTransitionSystem pts;
 
-	private List<String> formulaStack;
+	// number of states of the target transition system
+	private final int n;
+
+	// the formulas that have been evaluated with their results, printed by printSubResult
+	private List<Map.Entry<Formula, StateSets>> formulaStack;
+
+	// default number of states from which on the parallel kernel is used
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+	// the number of levels of a formula that are evaluated recursively
+	private static final int MAX_EVALUATION_DEPTH = 256;
 
 	// Constructor
 	public Model(LabelledPartialTransitionSystem pts) {
-		this.post = new HashMap<Integer, Set<Integer>>();
-		this.pre = new HashMap<Integer, Set<Integer>>();
-		this.unSatAndSatForEachFormula = new HashMap<>();
+		this(pts, reverse(pts));
+	}
+
+	/**
+	 * Initializes this model for the given system, keeping the reverse index of
+	 * its transitions in a memory-mapped file in the given directory rather than
+	 * on the heap. The forward index is that of the given system, which is kept in
+	 * memory-mapped files as well if it was built by a builder with a directory,
+	 * so that the model of such a system does not add to the heap per transition.
+	 *
+	 * @param pts       a labelled partial transition system
+	 * @param directory the directory of the temporary file
+	 * @throws IOException if the file cannot be created or mapped
+	 */
+	public Model(LabelledPartialTransitionSystem pts, Path directory) throws IOException {
+		this(pts, MappedCompressedSparseRow.of(pts, true, directory));
+	}
+
+	/*
+	 * Builds the reverse index of the transitions of the given system on the
+	 * heap.
+	 */
+	private static Adjacency reverse(LabelledPartialTransitionSystem pts) {
+		Adjacency successors = pts.getSuccessors();
+		int n = pts.getNumberOfStates();
+		int edges = pts.getNumberOfTransitions();
+		int[] sources = new int[edges];
+		int[] targets = new int[edges];
+		for (int source = 0; source < n; source++) {
+			for (int edge = successors.start(source); edge < successors.end(source); edge++) {
+				sources[edge] = source;
+				targets[edge] = successors.get(edge);
+			}
+		}
+		return new CompressedSparseRow(n, targets, sources, edges);
+	}
+
+	/*
+	 * Initializes this model for the given system with the given reverse index of
+	 * its transitions; the forward index is that of the system.
+	 */
+	private Model(LabelledPartialTransitionSystem pts, Adjacency pre) {
+		this.n = pts.getNumberOfStates();
+
+		this.post = pts.getSuccessors();
+		this.pre = pre;
+		this.backward = new BackwardReachability(this.pre);
+		this.engines = new HashMap<Class<? extends Formula>, ExistsAlwaysEngine>();
+		this.pool = null;
+		this.parallel = null;
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
 		this.labellingFormulaForEachState = new HashMap<>();
 
-		this.subset = new HashMap<Formula, StateSets>();
+		this.canonicalizer = new Canonicalizer(false);
+		this.subset = new ConcurrentHashMap<Formula, CompletableFuture<StateSets>>();
 
 		this.pts = pts;
 
-		this.formulaStack = new ArrayList<String>();
+		this.formulaStack = Collections.synchronizedList(new ArrayList<Map.Entry<Formula, StateSets>>());
 	}
 
 	/*
-	 * Returns the set of states that are successors to `state` and if not computed
-	 * before, adds the entry to a hashtable, post
+	 * Returns the states that are the neighbours of `state` in the given index
+	 */
+	private Set<Integer> neighbours(Adjacency csr, Integer state) {
+		Set<Integer> neighbours = new HashSet<Integer>();
+		int index = this.pts.getIndex(state);
+		if (index >= 0) {
+			for (int position = csr.start(index); position < csr.end(index); position++) {
+				neighbours.add(this.pts.getState(csr.get(position)));
+			}
+		}
+		return neighbours;
+	}
+
+	/*
+	 * Returns the set of states that are successors to `state`
 	 */
 	private Set<Integer> Post(Integer state) {
-		post.computeIfAbsent(state, k -> pts.getTransitions().stream()
-				.filter(t -> t.source == state)
-				.map(t -> t.target)
-				.collect(Collectors.toSet()));
-		return post.get(state);
+		return this.neighbours(this.post, state);
 	}
 
 	/*
-	 * Returns the set of states that are predecessors to `state` and if not
-	 * computed before, adds the entry to a hashtable, pre
+	 * Returns the set of states that are predecessors to `state`
 	 */
 	private Set<Integer> Pre(Integer state) {
-		pre.computeIfAbsent(state, k -> pts.getTransitions().stream()
-				.filter(t -> t.target == state)
-				.map(t -> t.source)
-				.collect(Collectors.toSet()));
-		return pre.get(state);
+		return this.neighbours(this.pre, state);
+	}
+
+	/**
+	 * Sets the algorithm used to compute EG for the given operator. The operators
+	 * that rely on EG are ExistsAlways, ForAllEventually (as !EG!p) and
+	 * ForAllUntil. By default, ExistsAlwaysEngine.COUNTING is used.
+	 * 
+	 * @param operator ExistsAlways.class, ForAllEventually.class or ForAllUntil.class
+	 * @param engine   the algorithm to be used for that operator
+	 */
+	public void setExistsAlwaysEngine(Class<? extends Formula> operator, ExistsAlwaysEngine engine) {
+		this.engines.put(operator, engine);
+	}
+
+	/**
+	 * Sets whether the temporal operators are translated into EX, EU and EG before
+	 * the formulas are checked. By default, they are not.
+	 * 
+	 * @param existentialNormalForm whether formulas are checked in existential normal form
+	 * @see Canonicalizer
+	 */
+	public void setExistentialNormalForm(boolean existentialNormalForm) {
+		this.canonicalizer = new Canonicalizer(existentialNormalForm);
+	}
+
+	/**
+	 * Sets the number of threads used to evaluate the operands of binary
+	 * operators concurrently and to compute the predecessors and backward
+	 * reachability for EX, AX, EF, EU, AG and AU. If it is 1, which is the
+	 * default, everything is computed by the calling thread. Otherwise, this
+	 * model owns a pool of threads, which is shut down by close.
+	 * 
+	 * @param parallelism the number of threads, at least 1
+	 * @throws IllegalArgumentException if parallelism is smaller than 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism should be at least 1: " + parallelism);
+		}
+		this.close();
+		if (parallelism > 1) {
+			this.pool = new ForkJoinPool(parallelism);
+			this.parallel = new ParallelBackwardReachability(this.pre, this.pool);
+		}
+	}
+
+	/**
+	 * Shuts down the threads of this model, if any, after which formulas are
+	 * checked by the calling thread, as if the parallelism were 1.
+	 */
+	@Override
+	public void close() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+			this.parallel = null;
+		}
+	}
+
+	/**
+	 * Sets the number of states below which the predecessors and backward
+	 * reachability are computed by the calling thread, even if the parallelism
+	 * is greater than 1, as for small systems the threads cost more than they
+	 * save.
+	 * 
+	 * @param threshold the smallest number of states for which several threads are used
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = threshold;
+	}
+
+	/*
+	 * Tests whether several threads are to be used. Only then subformulas are
+	 * evaluated concurrently, so the sequential kernels, which reuse their buffers,
+	 * are never run by several threads at the same time.
+	 */
+	private boolean isParallel() {
+		return this.parallel != null && this.n >= this.parallelThreshold;
+	}
+
+	/*
+	 * Adds to reached the (indices of) states that can reach it through allowed states
+	 */
+	private void reach(BitSet reached, BitSet allowed) {
+		if (isParallel()) {
+			this.parallel.reach(reached, allowed);
+		} else {
+			this.backward.reach(reached, allowed);
+		}
+	}
+
+	/*
+	 * Returns the (indices of the) states that have a successor in targets
+	 */
+	private BitSet preImage(StateSet targets) {
+		if (isParallel()) {
+			return this.parallel.preImage(targets);
+		}
+		BitSet predecessors = new BitSet(this.n);
+		for (int t = targets.nextSetBit(0); t >= 0; t = targets.nextSetBit(t + 1)) {
+			for (int position = this.pre.start(t); position < this.pre.end(t); position++) {
+				predecessors.set(this.pre.get(position));
+			}
+		}
+		return predecessors;
+	}
+
+	/*
+	 * Restricts the given (indices of) states to those that satisfy EG of them,
+	 * using the algorithm chosen for the given operator
+	 */
+	private void existsAlways(Class<? extends Formula> operator, BitSet states) {
+		this.engines.getOrDefault(operator, ExistsAlwaysEngine.COUNTING).restrict(states, this.post, this.pre);
+	}
+
+	/*
+	 * Returns the set of all (indices of) states
+	 */
+	private BitSet all() {
+		BitSet all = new BitSet(this.n);
+		all.set(0, this.n);
+		return all;
+	}
+
+	/*
+	 * Returns the (indices of the) states that are not in the given set
+	 */
+	private BitSet complement(BitSet states) {
+		BitSet complement = (BitSet) states.clone();
+		complement.flip(0, this.n);
+		return complement;
 	}
 
-	private StateSets buildResult(Formula formula, Set<Integer> Sat, Set<Integer> unSat) {
-		String msg = "Formula: " + formula + "\n\tResult: " + Sat.toString();
-		formulaStack.add(msg);
-		StateSets result = new StateSets(Sat, unSat);
-		this.subset.computeIfAbsent(formula, k -> result);
+	private StateSets buildResult(Formula formula, BitSet Sat) {
+		return buildResult(formula, StateSet.of(Sat));
+	}
+
+	private StateSets buildResult(Formula formula, StateSet Sat) {
+		StateSets result = new StateSets(Sat, this.pts);
+		formulaStack.add(new AbstractMap.SimpleImmutableEntry<Formula, StateSets>(formula, result));
 		return result;
 	}
 
+	/*
+	 * Returns the result for a formula that is satisfied by the states not in the
+	 * given set
+	 */
+	private StateSets buildResultFromUnSat(Formula formula, BitSet unSat) {
+		return buildResult(formula, ComplementStateSet.of(StateSet.of(unSat), this.n));
+	}
+
 	public void printSubResult() {
-		formulaStack.stream().forEach(System.out::println);
+		synchronized (formulaStack) {
+			for (Map.Entry<Formula, StateSets> entry : formulaStack) {
+				System.out.println("Formula: " + entry.getKey() + "\n\tResult: " + entry.getValue().getSat());
+			}
+		}
+	}
+
+	/*
+	 * Returns the result of the given formula. Since the results are kept for the
+	 * canonical forms, a subformula of a checked formula may not have been checked
+	 * itself, in which case it is checked now.
+	 */
+	private StateSets result(Formula formula) {
+		return check(formula);
+	}
+
+	/*
+	 * Waits for the given result and rethrows the exception thrown while
+	 * computing it, if any
+	 */
+	private static StateSets join(CompletableFuture<StateSets> result) {
+		try {
+			return result.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			} else {
+				throw e;
+			}
+		}
+	}
+
+	/*
+	 * Checks the given canonical formulas, the second one by another thread if
+	 * several threads are used
+	 */
+	private StateSets[] checkCanonical(Formula left, Formula right) {
+		if (isParallel()) {
+			ForkJoinTask<StateSets> task = ForkJoinTask.adapt(() -> checkCanonical(right)).fork();
+			StateSets L = checkCanonical(left);
+			return new StateSets[] { L, task.join() };
+		} else {
+			return new StateSets[] { checkCanonical(left), checkCanonical(right) };
+		}
 	}
 
 	/**
@@ -118,30 +396,208 @@ public class Model {
 	 * 
 	 */
 	public StateSets check(Formula formula) {
+		if (isParallel() && ForkJoinTask.getPool() != this.pool) {
+			// subformulas are forked, hence they are evaluated within the pool
+			return this.pool.invoke(ForkJoinTask.adapt(() -> check(formula)));
+		}
+		Formula canonical = this.canonicalizer.canonicalize(formula);
+		if (isParallel() && !this.subset.containsKey(canonical)) {
+			// bound the depth of the recursive evaluation by evaluating some levels first
+			Map<Formula, Integer> heights = Formulas.getHeights(canonical);
+			for (Formula subformula : Formulas.postOrder(canonical)) {
+				int height = heights.get(subformula);
+				if (height > 0 && height % MAX_EVALUATION_DEPTH == 0) {
+					checkCanonical(subformula);
+				}
+			}
+		}
+		return checkCanonical(canonical);
+	}
+
+	/*
+	 * Returns the result of the given formula, which is in canonical form, so
+	 * that its subformulas are in canonical form as well
+	 */
+	private StateSets checkCanonical(Formula formula) {
 		/*
 		 * Base Case - Lookup Table
 		 */
-		if (this.subset.containsKey(formula)) {
-			return this.subset.get(formula);
+		CompletableFuture<StateSets> result = this.subset.get(formula);
+		if (result == null) {
+			CompletableFuture<StateSets> computed = new CompletableFuture<StateSets>();
+			result = this.subset.putIfAbsent(formula, computed);
+			if (result == null) {
+				try {
+					computed.complete(isParallel() ? evaluate(formula) : execute(formula));
+				} catch (RuntimeException | Error e) {
+					this.subset.remove(formula, computed);
+					computed.completeExceptionally(e);
+					throw e;
+				}
+				result = computed;
+			}
+		}
+		return join(result);
+	}
+
+	/*
+	 * Computes the result of the given formula by compiling it into a plan and
+	 * executing its instructions. The results of its subformulas that are
+	 * computed by an instruction are added to the subset tables.
+	 */
+	private StateSets execute(Formula formula) {
+		Plan plan = Plan.compile(formula, this.subset::containsKey, this.pts.getFields());
+		BitSet[] registers = new BitSet[plan.size()];
+		StateSets result = null;
+		for (int instruction = 0; instruction < plan.size(); instruction++) {
+			Formula f = plan.getFormula(instruction);
+			int left = plan.getLeft(instruction);
+			int right = plan.getRight(instruction);
+			BitSet T;
+			switch (plan.getOpcode(instruction)) {
+			case Plan.LOAD:
+				result = checkCanonical(f);
+				registers[instruction] = result.getSatStates().toBitSet();
+				continue;
+			case Plan.BOOLEAN:
+				T = evaluate(plan.getExpression(instruction), registers);
+				result = buildResult(f, T);
+				break;
+			case Plan.EXISTS_NEXT:
+				T = existsNext(plan.getExpression(instruction), registers);
+				result = buildResult(f, T);
+				break;
+			case Plan.FOR_ALL_NEXT:
+				T = existsNext(plan.getExpression(instruction).negate(), registers);
+				result = buildResultFromUnSat(f, T);
+				T = complement(T);
+				break;
+			case Plan.EXISTS_ALWAYS:
+				T = (BitSet) registers[left].clone();
+				existsAlways(ExistsAlways.class, T);
+				result = buildResult(f, T);
+				break;
+			case Plan.EXISTS_EVENTUALLY:
+				T = (BitSet) registers[left].clone();
+				reach(T, null);
+				result = buildResult(f, T);
+				break;
+			case Plan.EXISTS_UNTIL:
+				T = (BitSet) registers[right].clone();
+				reach(T, registers[left]);
+				result = buildResult(f, T);
+				break;
+			case Plan.FOR_ALL_ALWAYS:
+				T = complement(registers[left]);
+				reach(T, null);
+				result = buildResultFromUnSat(f, T);
+				T = complement(T);
+				break;
+			case Plan.FOR_ALL_EVENTUALLY:
+				T = complement(registers[left]);
+				existsAlways(ForAllEventually.class, T);
+				result = buildResultFromUnSat(f, T);
+				T = complement(T);
+				break;
+			case Plan.FOR_ALL_UNTIL:
+				// !(!p2 EU (!p1 && !p2)) && !EG!p2
+				BitSet unSat = complement(registers[right]);
+				T = complement(registers[left]);
+				T.and(unSat);
+				reach(T, unSat);
+				existsAlways(ForAllUntil.class, unSat);
+				T.or(unSat);
+				result = buildResultFromUnSat(f, T);
+				T = complement(T);
+				break;
+			default:
+				throw new IllegalStateException("Unknown instruction: " + plan.getOpcode(instruction));
+			}
+			registers[instruction] = T;
+			if (instruction < plan.size() - 1) {
+				// the last instruction computes the given formula, which is added by the caller
+				this.subset.putIfAbsent(f, CompletableFuture.completedFuture(result));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the words of the operands of the given expression
+	 */
+	private long[][] operands(Plan.Expression expression, BitSet[] registers) {
+		long[][] operands = new long[expression.getNumberOfOperands()][];
+		for (int operand = 0; operand < operands.length; operand++) {
+			int register = expression.getRegister(operand);
+			if (register >= 0) {
+				operands[operand] = registers[register].toLongArray();
+			} else {
+				operands[operand] = this.pts.getStatesWithLabel(expression.getLabel(operand)).toBitSet().toLongArray();
+			}
+		}
+		return operands;
+	}
+
+	/*
+	 * Returns the (indices of the) states that satisfy the given expression, in a
+	 * single pass over the words of its operands
+	 */
+	private BitSet evaluate(Plan.Expression expression, BitSet[] registers) {
+		long[][] operands = operands(expression, registers);
+		long[] stack = expression.stack();
+		long[] words = new long[(this.n + Long.SIZE - 1) / Long.SIZE];
+		for (int word = 0; word < words.length; word++) {
+			words[word] = expression.evaluate(operands, word, stack);
+		}
+		BitSet states = BitSet.valueOf(words);
+		states.clear(this.n, words.length * Long.SIZE);
+		return states;
+	}
+
+	/*
+	 * Returns the (indices of the) states that have a successor that satisfies the
+	 * given expression, which is evaluated for the successors only
+	 */
+	private BitSet existsNext(Plan.Expression expression, BitSet[] registers) {
+		long[][] operands = operands(expression, registers);
+		long[] stack = expression.stack();
+		BitSet states = new BitSet(this.n);
+		// the last word for which the expression has been evaluated
+		int last = -1;
+		long value = 0L;
+		for (int state = 0; state < this.n; state++) {
+			for (int position = this.post.start(state); position < this.post.end(state); position++) {
+				int successor = this.post.get(position);
+				int word = successor >>> 6;
+				if (word != last) {
+					value = expression.evaluate(operands, word, stack);
+					last = word;
+				}
+				if ((value & (1L << successor)) != 0) {
+					states.set(state);
+					break;
+				}
+			}
 		}
+		return states;
+	}
 
+	/*
+	 * Computes the result of the given formula, evaluating its operands
+	 * concurrently
+	 */
+	private StateSets evaluate(Formula formula) {
 		/*
 		 * Base Case
 		 */
-		else if (formula instanceof True) {
-			Set<Integer> Sat = pts.getStates();
-			Set<Integer> unSat = new HashSet<Integer>();
-			unSatAndSatForEachFormula.put(formula,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+		if (formula instanceof True) {
+			return buildResult(formula, all());
 		}
 		/*
 		 * Base Case
 		 */
 		else if (formula instanceof False) {
-			Set<Integer> Sat = new HashSet<Integer>();
-			Set<Integer> unSat = pts.getStates();
-			unSatAndSatForEachFormula.put(formula,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			return buildResult(formula, new BitSet());
 		}
 		/*
 		 * Base Case
@@ -153,92 +609,56 @@ public class Model {
 			Integer index = pts.getFields().get(aP.toString());
 
 			// Get states which have 'index' in their labeling set
-			Set<Integer> Sat = pts.getLabelling().entrySet().stream()
-					.filter(e -> e.getValue().contains(index))
-					.map(e -> e.getKey())
-					.collect(Collectors.toSet());
-
-			// build unsat
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(formula,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			if (index == null) {
+				return buildResult(formula, new BitSet());
+			} else {
+				return buildResult(formula, pts.getStatesWithLabel(index));
+			}
 		} else if (formula instanceof And) {
 			And f = (And) formula;
-			StateSets L = check(f.getLeft());
-			StateSets R = check(f.getRight());
-			Set<Integer> Sat = new HashSet<Integer>(L.getSat());
-			Sat.retainAll(R.getSat());
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(f,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			StateSets[] LR = checkCanonical(f.getLeft(), f.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
+			BitSet Sat = L.getSatStates().toBitSet();
+			R.getSatStates().retainIn(Sat);
+			return buildResult(formula, Sat);
 		} else if (formula instanceof Or) {
 			Or f = (Or) formula;
-			StateSets L = check(f.getLeft());
-			StateSets R = check(f.getRight());
-			Set<Integer> Sat = new HashSet<Integer>(L.getSat());
-			Sat.addAll(R.getSat());
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(f,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			StateSets[] LR = checkCanonical(f.getLeft(), f.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
+			BitSet Sat = L.getSatStates().toBitSet();
+			R.getSatStates().addTo(Sat);
+			return buildResult(formula, Sat);
 		} else if (formula instanceof Implies) {
 			// !a or b
 			Implies f = (Implies) formula;
-			StateSets L = check(f.getLeft());
-			StateSets R = check(f.getRight());
-			Set<Integer> Sat = new HashSet<Integer>(L.getUnSat());
-			Sat.addAll(R.getSat());
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(f,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			StateSets[] LR = checkCanonical(f.getLeft(), f.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
+			BitSet Sat = L.getUnSatStates().toBitSet();
+			R.getSatStates().addTo(Sat);
+			return buildResult(formula, Sat);
 		} else if (formula instanceof Iff) {
 			// (a && b) || (!a && !b)
 			Iff f = (Iff) formula;
-			StateSets L = check(f.getLeft());
-			StateSets R = check(f.getRight());
+			StateSets[] LR = checkCanonical(f.getLeft(), f.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
 			// (a && b)
-			Set<Integer> LSat = new HashSet<Integer>(L.getSat());
-			LSat.retainAll(R.getSat());
+			BitSet Sat = L.getSatStates().toBitSet();
+			R.getSatStates().retainIn(Sat);
 			// (!a && !b)
-			Set<Integer> RSat = new HashSet<Integer>(L.getUnSat());
-			RSat.retainAll(R.getUnSat());
+			BitSet RSat = L.getUnSatStates().toBitSet();
+			R.getUnSatStates().retainIn(RSat);
 			// (a && b) || (!a && !b)
-			Set<Integer> Sat = new HashSet<Integer>(LSat);
-			Sat.addAll(RSat);
-			// !( (a && b) || (!a && !b) )
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(f,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			Sat.or(RSat);
+			return buildResult(formula, Sat);
 		} else if (formula instanceof ExistsAlways) {
 			ExistsAlways f = (ExistsAlways) formula;
-			Set<Integer> Sat = check(f.getFormula()).getSat();
-			List<Integer> E = pts.getStates().stream()
-					.filter(s -> !Sat.contains(s))
-					.collect(Collectors.toList());
-			Set<Integer> T = Sat;
-
-			Map<Integer, Integer> count = new HashMap<Integer, Integer>();
-			T.stream().forEach(s -> count.computeIfAbsent(s, k -> Post(s).size()));
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				for (Integer s : Pre(sP)) {
-					if (T.contains(s)) {
-						count.compute(s, (k, v) -> v - 1);
-						if (count.get(s).equals(0)) {
-							T.remove(s);
-							E.add(s);
-						}
-					}
-				}
-			}
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(T);
-			unSatAndSatForEachFormula.put(f,new StateSets(Sat,unSat));
-			return buildResult(formula, T, unSat);
+			BitSet T = checkCanonical(f.getFormula()).getSatStates().toBitSet();
+			existsAlways(ExistsAlways.class, T);
+			return buildResult(formula, T);
 		}
 		/*
 		 * This case is (EF p1) case. On page 333 of the textbook there is an alternate
@@ -246,55 +666,25 @@ public class Model {
 		 */
 		else if (formula instanceof ExistsEventually) {
 			ExistsEventually eE = (ExistsEventually) formula;
-			StateSets S = check(eE.getFormula());
-
-			List<Integer> E = S.getSat().stream().collect(Collectors.toList());
-			Set<Integer> T = new HashSet<Integer>(E);
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				Pre(sP).stream()
-				.filter(s -> !T.contains(s))
-				.forEach(s -> {
-					E.add(s);
-					T.add(s);
-				});
-			}
+			StateSets S = checkCanonical(eE.getFormula());
 
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(T);
-			unSatAndSatForEachFormula.put(eE,new StateSets(T,unSat));
-			return buildResult(formula, T, unSat);
+			BitSet T = S.getSatStates().toBitSet();
+			reach(T, null);
+			return buildResult(formula, T);
 		} else if (formula instanceof ExistsNext) {
 			ExistsNext eN = (ExistsNext) formula;
-			StateSets S = check(eN.getFormula()); // recursive part
-			Set<Integer> Sat = pts.getTransitions().stream()
-					.filter(t -> S.getSat().contains(t.target))
-					.map(t -> t.source)
-					.collect(Collectors.toSet());
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(Sat);
-			unSatAndSatForEachFormula.put(eN,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			StateSets S = checkCanonical(eN.getFormula()); // recursive part
+			BitSet Sat = preImage(S.getSatStates());
+			return buildResult(formula, Sat);
 		} else if (formula instanceof ExistsUntil) {
 			ExistsUntil eU = (ExistsUntil) formula;
-			StateSets R = check(eU.getRight());
-			StateSets L = check(eU.getLeft());
-
-			List<Integer> E = R.getSat().stream().collect(Collectors.toList());
-			Set<Integer> T = new HashSet<Integer>(E);
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				Pre(sP).stream().filter(L.getSat()::contains)
-				.filter(s -> !T.contains(s))
-				.forEach(s -> {
-					E.add(s);
-					T.add(s);
-				});
-			}
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(T);
-			unSatAndSatForEachFormula.put(eU,new StateSets(T,unSat));
-			return buildResult(formula, T, unSat);
+			StateSets[] LR = checkCanonical(eU.getLeft(), eU.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
+
+			BitSet T = R.getSatStates().toBitSet();
+			reach(T, L.getSatStates().toBitSet());
+			return buildResult(formula, T);
 		}
 		/*
 		 * This case is (AG p1) case. On page 333 of the textbook there is an alternate
@@ -302,21 +692,11 @@ public class Model {
 		 */
 		else if (formula instanceof ForAllAlways) {
 			ForAllAlways fA = (ForAllAlways) formula;
-			StateSets S = check(fA.getFormula()); // p1
-
-			List<Integer> E = S.getUnSat().stream().collect(Collectors.toList());
-			Set<Integer> T = new HashSet<Integer>(E);
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				Pre(sP).stream().filter(s -> !T.contains(s)).forEach(s -> {
-					E.add(s);
-					T.add(s);
-				});
-			}
-			Set<Integer> Sat = new HashSet<Integer>(pts.getStates());
-			Sat.removeAll(T);
-			unSatAndSatForEachFormula.put(fA,new StateSets(Sat,T));
-			return buildResult(formula, Sat, T);
+			StateSets S = checkCanonical(fA.getFormula()); // p1
+
+			BitSet T = S.getUnSatStates().toBitSet();
+			reach(T, null);
+			return buildResultFromUnSat(formula, T);
 		}
 		/*
 		 * This case is (AF p1) case. On page 333 of the textbook there is an alternate
@@ -325,48 +705,19 @@ public class Model {
 		else if (formula instanceof ForAllEventually) {
 			ForAllEventually fAF = (ForAllEventually) formula;
 			// In this case we want the !p1 or the unsat states
-			Set<Integer> S = check(fAF.getFormula()).getUnSat();
-			List<Integer> E = pts.getStates().stream()
-					.filter(s -> !S.contains(s))
-					.collect(Collectors.toList());
-			Set<Integer> T = S;
-
-			Map<Integer, Integer> count = new HashMap<Integer, Integer>();
-			T.stream().forEach(s -> count.computeIfAbsent(s, k -> Post(s).size()));
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				Set<Integer> preS = Pre(sP);
-				for (Integer s : preS) {
-					if (T.contains(s)) {
-						count.compute(s, (k, v) -> v - 1);
-						if (count.get(s) == 0) {
-							T.remove(s);
-							E.add(s);
-						}
-					}
-				}
-			}
-			Set<Integer> Sat = new HashSet<Integer>(pts.getStates());
-			Sat.removeAll(T);
-			unSatAndSatForEachFormula.put(fAF,new StateSets(Sat,T));
-			return buildResult(formula, Sat, T);
+			BitSet T = checkCanonical(fAF.getFormula()).getUnSatStates().toBitSet();
+			existsAlways(ForAllEventually.class, T);
+			return buildResultFromUnSat(formula, T);
 		}
 		/*
 		 * this case is the (AX p1) case
 		 */
 		else if (formula instanceof ForAllNext) {
 			ForAllNext fN = (ForAllNext) formula;
-			StateSets S = check(fN.getFormula()); // recursive part
-
-			Set<Integer> unSat = pts.getTransitions().stream()
-					.filter(t -> !S.getSat().contains(t.target))
-					.map(t -> t.source)
-					.collect(Collectors.toSet());
-
-			Set<Integer> Sat = new HashSet<Integer>(pts.getStates());
-			Sat.removeAll(unSat);
-			unSatAndSatForEachFormula.put(fN,new StateSets(Sat,unSat));
-			return buildResult(formula, Sat, unSat);
+			StateSets S = checkCanonical(fN.getFormula()); // recursive part
+			// the states with a successor that does not satisfy p1
+			BitSet unSat = preImage(S.getUnSatStates());
+			return buildResultFromUnSat(formula, unSat);
 		}
 		/*
 		 * This case is the (p1 AU p2) case. On page 333 of the textbook there is an
@@ -377,65 +728,31 @@ public class Model {
 		 */
 		else if (formula instanceof ForAllUntil) {
 			ForAllUntil fAU = (ForAllUntil) formula;
-			StateSets L = check(fAU.getLeft());
-			StateSets R = check(fAU.getRight());
+			StateSets[] LR = checkCanonical(fAU.getLeft(), fAU.getRight());
+			StateSets L = LR[0];
+			StateSets R = LR[1];
 			
 			// Piece1: (!p1 && !p2)
-			Set<Integer> AND = new HashSet<Integer>(L.getUnSat());
-			AND.retainAll(R.getUnSat());
+			BitSet T = L.getUnSatStates().toBitSet();
+			R.getUnSatStates().retainIn(T);
 
 			// Piece2: !(!p2 EU Piece1)
-			List<Integer> E = AND.stream().collect(Collectors.toList());
-			Set<Integer> T = new HashSet<Integer>(E);
-			while (!E.isEmpty()) {
-				Integer sP = E.remove(0);
-				Pre(sP).stream()
-				.filter(L.getUnSat()::contains)
-				.filter(s -> !T.contains(s))
-				.forEach(s -> {
-					E.add(s);
-					T.add(s);
-				});
-			}
-			Set<Integer> EU = new HashSet<Integer>(pts.getStates());
-			EU.removeAll(T);
+			reach(T, R.getUnSatStates().toBitSet());
+			BitSet EU = complement(T);
 
 			// Piece3: !EG!p2
-			List<Integer> F = pts.getStates().stream()
-					.filter(s -> !R.getUnSat().contains(s))
-					.collect(Collectors.toList());
-			Set<Integer> G = R.getUnSat();
-
-			Map<Integer, Integer> count = new HashMap<Integer, Integer>();
-			G.stream().forEach(s -> count.computeIfAbsent(s, k -> Post(s).size()));
-			while (!F.isEmpty()) {
-				Integer sP = F.remove(0);
-				for (Integer s : Pre(sP)) {
-					if (G.contains(s)) {
-						count.compute(s, (k, v) -> v - 1);
-						if (count.get(s) == 0) {
-							G.remove(s);
-							F.add(s);
-						}
-					}
-				}
-			}
-			Set<Integer> notG = new HashSet<Integer>(pts.getStates());
-			notG.removeAll(G);
+			BitSet G = R.getUnSatStates().toBitSet();
+			existsAlways(ForAllUntil.class, G);
 
 			// Piece4: Piece2 && Piece3
-			EU.retainAll(notG);
+			EU.andNot(G);
 
 			// Final cleanup
-			Set<Integer> unSat = new HashSet<Integer>(pts.getStates());
-			unSat.removeAll(EU);
-			unSatAndSatForEachFormula.put(fAU,new StateSets(EU,unSat));
-			return buildResult(formula, EU, unSat);
+			return buildResult(formula, EU);
 		} else if (formula instanceof Not) {
 			Not n = (Not) formula;
-			StateSets S = check(n.getFormula());
-			unSatAndSatForEachFormula.put(n,new StateSets(S.getUnSat(),S.getSat()));
-			return buildResult(formula, S.getUnSat(), S.getSat());
+			StateSets S = checkCanonical(n.getFormula());
+			return buildResult(formula, S.getUnSatStates());
 		}
 		//This should be unreachable
 		System.err.println("This formula type is unknown");
@@ -508,7 +825,7 @@ public class Model {
 		 */
 		else if (formula instanceof False) {	
 			//The whole system
-			Set<Integer> formulaUnsat = unSatAndSatForEachFormula.get(formula).getUnSat();
+			Set<Integer> formulaUnsat = result(formula).getUnSat();
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			msg.append("\nThe counter example for the formula (False) is the whole system");
 			list.addAll(formulaUnsat);
@@ -518,7 +835,7 @@ public class Model {
 		 */
 		else if (formula instanceof AtomicProposition) {
 			//current state if it does not satisfy the atomic proposition     
-			Set<Integer> formulaUnsat = unSatAndSatForEachFormula.get(formula).getUnSat();
+			Set<Integer> formulaUnsat = result(formula).getUnSat();
 			if(formulaUnsat.contains(state))
 			{
 				//add to the list and break;
@@ -534,8 +851,8 @@ public class Model {
 			Formula left = ((And) formula).getLeft();
 			Formula right = ((And) formula).getRight();
 			
-			Set<Integer> subLeftFormulaUnsat = unSatAndSatForEachFormula.get(left).getUnSat();
-			Set<Integer> subRightFormulaUnsat = unSatAndSatForEachFormula.get(right).getUnSat();
+			Set<Integer> subLeftFormulaUnsat = result(left).getUnSat();
+			Set<Integer> subRightFormulaUnsat = result(right).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -561,8 +878,8 @@ public class Model {
 			Formula left = ((Or) formula).getLeft();
 			Formula right = ((Or) formula).getRight();
         
-			Set<Integer> subLeftFormulaUnsat = unSatAndSatForEachFormula.get(left).getUnSat();
-			Set<Integer> subRightFormulaUnsat = unSatAndSatForEachFormula.get(right).getUnSat();
+			Set<Integer> subLeftFormulaUnsat = result(left).getUnSat();
+			Set<Integer> subRightFormulaUnsat = result(right).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -601,10 +918,10 @@ public class Model {
 			Formula left = ((Iff) formula).getLeft();
 			Formula right = ((Iff) formula).getRight();
 			
-			Set<Integer> subLeftFormulaUnsat = unSatAndSatForEachFormula.get(left).getUnSat();
-			Set<Integer> subRightFormulaUnsat = unSatAndSatForEachFormula.get(right).getUnSat();
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
-			Set<Integer> subRightFormulaSat = unSatAndSatForEachFormula.get(right).getSat();
+			Set<Integer> subLeftFormulaUnsat = result(left).getUnSat();
+			Set<Integer> subRightFormulaUnsat = result(right).getUnSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
+			Set<Integer> subRightFormulaSat = result(right).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -640,7 +957,7 @@ public class Model {
 		} else if (formula instanceof ExistsAlways) {
 			//get the sub-formula with the corresponding unSat state set
 			Formula subFormula = ((ExistsAlways) formula).getFormula();
-			Set<Integer> subformulaUnsat = unSatAndSatForEachFormula.get(subFormula).getUnSat();
+			Set<Integer> subformulaUnsat = result(subFormula).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -683,7 +1000,7 @@ public class Model {
 		else if (formula instanceof ForAllAlways) {
 			//get the sub-formula with the corresponding unSat state set
 			Formula subFormula = ((ForAllAlways) formula).getFormula();
-			Set<Integer> subformulaUnsat = unSatAndSatForEachFormula.get(subFormula).getUnSat();
+			Set<Integer> subformulaUnsat = result(subFormula).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -729,7 +1046,7 @@ public class Model {
 		else if (formula instanceof ExistsEventually) {
 			//get the sub-formula with the corresponding unSat state set
 			Formula subFormula = ((ExistsEventually)formula).getFormula();
-			Set<Integer> subformulaUnsat = unSatAndSatForEachFormula.get(subFormula).getUnSat();
+			Set<Integer> subformulaUnsat = result(subFormula).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -764,7 +1081,7 @@ public class Model {
 		else if (formula instanceof ForAllEventually) {
 			//get the sub-formula with the corresponding unSat state set
 			Formula subFormula = ((ForAllEventually) formula).getFormula();
-			Set<Integer> subformulaUnsat = unSatAndSatForEachFormula.get(subFormula).getUnSat();
+			Set<Integer> subformulaUnsat = result(subFormula).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -795,7 +1112,7 @@ public class Model {
 		{
 			//get the sub-formula with the corresponding unSat state set
 			Formula f = ((ExistsNext) formula).getFormula();
-		    Set<Integer> formulaUnsat = unSatAndSatForEachFormula.get(f).getUnSat();
+		    Set<Integer> formulaUnsat = result(f).getUnSat();
 		    
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 
@@ -827,7 +1144,7 @@ public class Model {
 		else if (formula instanceof ForAllNext) {
 			//get the sub-formula with the corresponding unSat state set
 			Formula f = ((ForAllNext) formula).getFormula();			
-			Set<Integer> formulaUnsat = unSatAndSatForEachFormula.get(f).getUnSat();	
+			Set<Integer> formulaUnsat = result(f).getUnSat();	
 			 
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());	  
 			
@@ -856,7 +1173,7 @@ public class Model {
 			//get the sub-formula with the corresponding unSat state set
 			Formula left = ((ForAllUntil)formula).getLeft();
 			Formula right = ((ForAllUntil)formula).getRight();			
-			Set<Integer> subLeftFormulaUnsat = unSatAndSatForEachFormula.get(left).getUnSat();
+			Set<Integer> subLeftFormulaUnsat = result(left).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 
@@ -873,8 +1190,8 @@ public class Model {
 				//find a path where the contiguous states satisfy a and the last state does not b
 				
 				Set<Integer> path = new HashSet<>();
-				Set<Integer> sat_a = unSatAndSatForEachFormula.get(left).getSat();
-				Set<Integer> sat_b = unSatAndSatForEachFormula.get(right).getSat();
+				Set<Integer> sat_a = result(left).getSat();
+				Set<Integer> sat_b = result(right).getSat();
 				Integer unSatBState = getOnePathWithStatesInANotB(state,sat_a,sat_b,path);
 				path.add(state);
 			
@@ -901,7 +1218,7 @@ public class Model {
 			//get the sub-formula with the corresponding unSat state set
 			Formula left = ((ExistsUntil)formula).getLeft();
 			Formula right = ((ExistsUntil)formula).getRight();			
-			Set<Integer> subLeftFormulaUnsat = unSatAndSatForEachFormula.get(left).getUnSat();
+			Set<Integer> subLeftFormulaUnsat = result(left).getUnSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " does not satisfy : " + formula.toString());
 			
@@ -917,8 +1234,8 @@ public class Model {
 			{
 				//find all paths where the contiguous states satisfy a and the last state does not b
 				Set<Integer> path = new HashSet<>();
-				Set<Integer> sat_a = unSatAndSatForEachFormula.get(left).getSat();
-				Set<Integer> sat_b = unSatAndSatForEachFormula.get(right).getSat();
+				Set<Integer> sat_a = result(left).getSat();
+				Set<Integer> sat_b = result(right).getSat();
 				getAllPathsWithStatesInANotB(state,sat_a,sat_b,path);
 				path.add(state);
 			
@@ -977,7 +1294,7 @@ public class Model {
 		 */
 		if (formula instanceof True) {
 			//the witness is the entire system
-			Set<Integer> formulaSat = unSatAndSatForEachFormula.get(formula).getSat();
+			Set<Integer> formulaSat = result(formula).getSat();
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			msg.append("\nThe witness for the formula (True) is the whole system");
 			list.addAll(formulaSat);
@@ -996,7 +1313,7 @@ public class Model {
 		 */
 		else if (formula instanceof AtomicProposition) {
 			//if the current state satisfies the atomic proposition then it is a witness
-			Set<Integer> formulaSat = unSatAndSatForEachFormula.get(formula).getSat();
+			Set<Integer> formulaSat = result(formula).getSat();
 			if(formulaSat.contains(state))
 			{
 				//add to the list and break;
@@ -1011,8 +1328,8 @@ public class Model {
 			//get the left and right sub-formulas with there corresponding sat state sets
 			Formula left = ((And) formula).getLeft();
 			Formula right = ((And) formula).getRight();			
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
-			Set<Integer> subRightFormulaSat = unSatAndSatForEachFormula.get(right).getSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
+			Set<Integer> subRightFormulaSat = result(right).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1032,8 +1349,8 @@ public class Model {
 			//get the left and right sub-formulas with there corresponding sat state sets
 			Formula left = ((Or) formula).getLeft();
 			Formula right = ((Or) formula).getRight();        
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
-			Set<Integer> subRightFormulaSat = unSatAndSatForEachFormula.get(right).getSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
+			Set<Integer> subRightFormulaSat = result(right).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1077,8 +1394,8 @@ public class Model {
 			//get the left and right sub-formulas with there corresponding sat state sets
 			Formula left = ((Iff) formula).getLeft();
 			Formula right = ((Iff) formula).getRight();			
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
-			Set<Integer> subRightFormulaSat = unSatAndSatForEachFormula.get(right).getSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
+			Set<Integer> subRightFormulaSat = result(right).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1097,7 +1414,7 @@ public class Model {
 		} else if (formula instanceof ForAllAlways) {			
 			//get the sub-formula with the corresponding sat state set
 			Formula subFormula = ((ForAllAlways) formula).getFormula();
-			Set<Integer> subformulaSat = unSatAndSatForEachFormula.get(subFormula).getSat();
+			Set<Integer> subformulaSat = result(subFormula).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1127,7 +1444,7 @@ public class Model {
 		else if (formula instanceof  ExistsAlways) {
 			//get the sub-formula with the corresponding sat state set
 			Formula subFormula = ((ExistsAlways) formula).getFormula();
-			Set<Integer> subformulaSat = unSatAndSatForEachFormula.get(subFormula).getSat();
+			Set<Integer> subformulaSat = result(subFormula).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1161,7 +1478,7 @@ public class Model {
 		else if (formula instanceof ForAllEventually) {
 			//get the sub-formula with the corresponding sat state set
 			Formula subFormula = ((ForAllEventually)formula).getFormula();
-			Set<Integer> subformulaSat = unSatAndSatForEachFormula.get(subFormula).getSat();
+			Set<Integer> subformulaSat = result(subFormula).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1208,7 +1525,7 @@ public class Model {
 		else if (formula instanceof  ExistsEventually) {
 			//get the sub-formula with the corresponding sat state set
 			Formula subFormula = ((ExistsEventually) formula).getFormula();
-			Set<Integer> subformulaSat = unSatAndSatForEachFormula.get(subFormula).getSat();
+			Set<Integer> subformulaSat = result(subFormula).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1255,7 +1572,7 @@ public class Model {
 		{
 			//get the sub-formula with the corresponding sat state set
 			Formula f = ((ForAllNext) formula).getFormula();
-			Set<Integer> formulaSat = unSatAndSatForEachFormula.get(f).getSat();
+			Set<Integer> formulaSat = result(f).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1287,7 +1604,7 @@ public class Model {
 		else if (formula instanceof ExistsNext) {
 			//get the sub-formula with the corresponding sat state set
 			Formula f = ((ExistsNext) formula).getFormula();	
-			Set<Integer> formulaSat = unSatAndSatForEachFormula.get(f).getSat();	
+			Set<Integer> formulaSat = result(f).getSat();	
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1316,7 +1633,7 @@ public class Model {
 			//get the left and right sub-formulas with there corresponding sat state sets
 			Formula left = ((ExistsUntil)formula).getLeft();
 			Formula right = ((ExistsUntil)formula).getRight();			
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1333,8 +1650,8 @@ public class Model {
 				//find a path where the contiguous states satisfy a and the last state does satisfy b
 				
 				Set<Integer> path = new HashSet<>();
-				Set<Integer> sat_a = unSatAndSatForEachFormula.get(left).getSat();
-				Set<Integer> sat_b = unSatAndSatForEachFormula.get(right).getSat();
+				Set<Integer> sat_a = result(left).getSat();
+				Set<Integer> sat_b = result(right).getSat();
 				Integer satBState = getOnePathWithStatesInANotB(state,sat_a,sat_b,path);
 				path.add(state);
 			
@@ -1359,7 +1676,7 @@ public class Model {
 			//get the left and right sub-formulas with there corresponding sat state sets
 			Formula left = ((ForAllUntil)formula).getLeft();
 			Formula right = ((ForAllUntil)formula).getRight();			
-			Set<Integer> subLeftFormulaSat = unSatAndSatForEachFormula.get(left).getSat();
+			Set<Integer> subLeftFormulaSat = result(left).getSat();
 			
 			insetToLabellingFormulaForEachStateMap(state, " satisfies : " + formula.toString());
 			
@@ -1376,8 +1693,8 @@ public class Model {
 				//find all paths where the contiguous states satisfy a and the last state does satisfy b
 				
 				Set<Integer> path = new HashSet<>();
-				Set<Integer> sat_a = unSatAndSatForEachFormula.get(left).getSat();
-				Set<Integer> sat_b = unSatAndSatForEachFormula.get(right).getSat();
+				Set<Integer> sat_a = result(left).getSat();
+				Set<Integer> sat_b = result(right).getSat();
 				getAllPathsWithStatesInANotB(state,sat_a,sat_b,path);
 				path.add(state);
 			
@@ -1608,14 +1925,15 @@ public class Model {
 	private Set<Transition> getRelatedTransitions( Set<Integer> counterExStates)
 	{
 		Set<Transition> result = new HashSet<Transition>();
-		for (Iterator<Transition> it = this.pts.getTransitions().iterator(); it.hasNext(); ) 
+		for (Integer source : counterExStates) 
 		{
-			Transition t = it.next();
-			if(counterExStates.contains(t.getSource()) && counterExStates.contains(t.getTarget()))
+			for (Integer target : Post(source))
 			{
-				result.add(t);
+				if(counterExStates.contains(target))
+				{
+					result.add(new Transition(source, target));
+				}
 			}
-			
 		}
 		
 		return result;
@@ -1775,7 +2093,7 @@ public class Model {
 	{
 		Set<Integer> sat = new HashSet<>();
 		Set<Integer> unSat = new HashSet<>();
-		Set<Integer> subformulaUnsat = unSatAndSatForEachFormula.get(formula).getUnSat();
+		Set<Integer> subformulaUnsat = result(formula).getUnSat();
 		
 		for (Iterator<Integer> it = allReachableStates.iterator(); it.hasNext(); ) 
 		{
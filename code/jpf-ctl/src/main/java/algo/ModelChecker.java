@@ -9,16 +9,29 @@ package algo;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.stream.Collectors;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.IterativeParseTreeWalker;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.ctl.CTLLexer;
 import org.ctl.CTLParser;
 
+import ctl.Canonicalizer;
 import ctl.Formula;
 import ctl.Generator;
 import error.AtomicPropositionDoesNotExistException;
@@ -29,15 +42,101 @@ import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.JPFConfigException;
 import gov.nasa.jpf.JPFException;
+import listeners.PartialTransitionSystemListener;
+import listeners.StateProperty;
 
 public class ModelChecker {
 
 	private static final int INITIAL_STATE = 0;
 	private static final String LAB_EXTENSION = ".lab";
 	private static final String TRA_EXTENSION = ".tra";
+	private static final String LPTS_EXTENSION = ".lpts";
+
+	// the output of the PartialTransitionSystemListener: a .tra file, a .lpts file or the system in memory
+	private static final String FORMAT = "partialtransitionsystemlistener.format";
+	private static final String TEXT_FORMAT = "text";
+	private static final String BINARY_FORMAT = "binary";
+	private static final String MEMORY_FORMAT = "memory";
+
+	/*
+	 * Enable the cache of explored systems, reused as long as the class files of
+	 * the target system and the settings of JPF that affect the exploration do
+	 * not change, and the cache of verdicts, by explored system and canonical
+	 * formula; both are disabled by default. The property followed by
+	 * DIRECTORY and MAX_SIZE sets the directory and the maximum size, in bytes,
+	 * of the cache.
+	 */
+	private static final String SYSTEM_CACHE = "jpf-ctl.system_cache";
+	private static final String VERDICT_CACHE = "jpf-ctl.verdict_cache";
+	private static final String DIRECTORY = ".directory";
+	private static final String MAX_SIZE = ".max_size";
+
+	// the prefixes of the settings of JPF that affect the explored system
+	private static final String[] EXPLORATION_SETTINGS = { "target", "search.", "vm.", "cg.", "listener", "label.",
+			"partialtransitionsystemlistener." };
+
+	// the classes that explore and build the system, whose versions affect the explored system
+	private static final List<Class<?>> TOOLS = Arrays.asList(JPF.class, PartialTransitionSystemListener.class,
+			LabelledPartialTransitionSystem.class, BinaryTransitionSystemFile.class);
+
+	// the caches, by directory and maximum size, kept so that each lists its directory only once
+	private static final Map<List<Object>, TransitionSystemCache> SYSTEM_CACHES =
+			new HashMap<List<Object>, TransitionSystemCache>();
+	private static final Map<List<Object>, VerdictCache> VERDICT_CACHES = new HashMap<List<Object>, VerdictCache>();
+
+	// the cache of verdicts used by the last check, or null if it did not cache verdicts
+	private static VerdictCache lastVerdictCache = null;
+
+	/*
+	 * Keep the explored system in memory-mapped files rather than on the heap,
+	 * so that systems larger than the heap can be checked; disabled by default.
+	 * The property followed by DIRECTORY sets the directory of the files, by
+	 * default the temporary directory. The listener builds the system in that
+	 * directory if its LISTENER_DIRECTORY option is not set.
+	 */
+	private static final String MAPPED_SYSTEM = "jpf-ctl.mapped_system";
+	private static final String LISTENER_DIRECTORY = "partialtransitionsystemlistener.directory";
+
+	// the height of the formulas that are passed to the listener to be checked during the search
+	private static final int MAX_LISTENER_FORMULA_HEIGHT = 256;
+
+	// the number of transitions from which the model keeps their reverse in a memory-mapped file rather than on the heap
+	private static final int MAPPED_TRANSITIONS = 1 << 26;
+
+	// the canonical forms of the formulas, which are the keys of the verdicts
+	private static final Canonicalizer CANONICALIZER = new Canonicalizer(false);
+
+	/**
+	 * Returns the cache of verdicts used by the last check, which counts its hits
+	 * and misses, or null if that check did not cache verdicts.
+	 * 
+	 * @return the cache of verdicts used by the last check, or null
+	 */
+	public static synchronized VerdictCache getVerdictCache() {
+		return lastVerdictCache;
+	}
 
 	public static String validate(String Formula, String path, String EnumerateRandom, boolean pack, String args)
 			throws ModelCheckingException {
+		return validate(Collections.singletonList(Formula), path, EnumerateRandom, pack, args).get(Formula);
+	}
+
+	/**
+	 * Checks each of the given formulas against the given target system. The
+	 * target system is explored by JPF once, labelled with the atomic
+	 * propositions of all formulas, and the formulas are checked against a single
+	 * model, so that the subformulas they share are evaluated once.
+	 * 
+	 * @param Formulas        the formulas to check
+	 * @param path            the path of the class file of the target system
+	 * @param EnumerateRandom whether JPF enumerates the values of random choices
+	 * @param pack            whether the target system is in a package
+	 * @param args            the arguments of the target system
+	 * @return the verdict for each of the given formulas, in the given order
+	 * @throws ModelCheckingException if JPF or the model cannot be set up
+	 */
+	public static Map<String, String> validate(List<String> Formulas, String path, String EnumerateRandom,
+			boolean pack, String args) throws ModelCheckingException {
 
 		// Create classpath and target values from path
 		String classpath;
@@ -58,26 +157,31 @@ public class ModelChecker {
 		System.out.println("classpath: " + classpath);
 		System.out.println("target: " + target);
 
-		// Build and Check Formula before examining target system
-		CharStream input = CharStreams.fromString(Formula);
-		input = new CTLError().errorCheckAndRecover(input);
-
-		CTLParser parser = new CTLParser(new CommonTokenStream(new CTLLexer(input)));
-		ParseTree tree = parser.formula();
+		// Build and Check Formulas before examining target system
+		Map<String, Formula> formulas = new LinkedHashMap<String, Formula>();
+		for (String Formula : Formulas) {
+			formulas.put(Formula, parse(Formula, classpath));
+		}
 
-		/*
-		 * Perform Error Checking on input formula and gather APs for use with jpf-ctl
-		 */
-		ParseTreeWalker walker = new ParseTreeWalker();
-		try {
-			walker.walk(new FieldExists(classpath), tree); // TODO fix
-		} catch (AtomicPropositionDoesNotExistException e) {
-			// throw new ModelCheckingException(e.getMessage());
+		// the atomic propositions of the formulas of this call, in sorted order
+		Set<String> propositions = new TreeSet<String>();
+		for (Formula formula : formulas.values()) {
+			propositions.addAll(formula.getAtomicPropositions());
 		}
 
-		// At this point we know the formula is correct.
-		Formula formula = new Generator().visit(tree);
+		// simplify the formulas, so that fewer subformulas need to be evaluated
+		Map<String, Formula> simplified = new HashMap<String, Formula>();
+		for (Map.Entry<String, Formula> entry : formulas.entrySet()) {
+			simplified.put(entry.getKey(), entry.getValue().simplify());
+		}
 
+		Map<String, String> verdicts = new LinkedHashMap<String, String>();
+		Map<String, VerdictCache.Verdict> known = new HashMap<String, VerdictCache.Verdict>();
+		String key;
+		TransitionSystemCache systemCache;
+		VerdictCache verdictCache;
+		Path mapped;
+		LabelledPartialTransitionSystem pts;
 		try {
 			Config conf = JPF.createConfig(new String[] {});
 
@@ -95,31 +199,121 @@ public class ModelChecker {
 			// only needed if randomization is used
 			conf.setProperty("cg.enumerate_random", EnumerateRandom);
 
-			// extension jpf-label
-			conf.setProperty("@using", "jpf-label");
-
-			// set the listeners
-			conf.setProperty("listener", "label.StateLabelText,listeners.PartialTransitionSystemListener");
+			/*
+			 * The listener hands the explored system over in memory, unless it is
+			 * configured to write it to a file; only for the text format, the states are
+			 * labelled by the extension jpf-label
+			 */
+			if (conf.getProperty(FORMAT) == null) {
+				conf.setProperty(FORMAT, MEMORY_FORMAT);
+			}
+			String format = conf.getProperty(FORMAT);
+			if (format.equals(TEXT_FORMAT)) {
+				conf.setProperty("@using", "jpf-label");
+				conf.setProperty("listener", "label.StateLabelText,listeners.PartialTransitionSystemListener");
+			} else {
+				conf.setProperty("listener", "listeners.PartialTransitionSystemListener");
+			}
 
-			// build the label properties
-			String fields = FieldExists.APs.stream().collect(Collectors.joining("; "));
+			// build the label properties from the atomic propositions of all formulas
+			String fields = String.join("; ", propositions);
 			conf.setProperty("label.class", "label.BooleanStaticField");
 			conf.setProperty("label.BooleanStaticField.field", fields);
 
 			System.out.println("APs: " + fields);
 
-			// This instantiates JPF but also adds the jpf.properties and other arguments to
-			// the config
-			JPF jpf = new JPF(conf);
+			/*
+			 * A single invariant or reachability property is checked during the search,
+			 * which stops as soon as its verdict is known; the explored part of the state
+			 * space then suffices to decide it; the listener parses the formula again,
+			 * and the parser recurses on nested brackets, hence deep formulas are not
+			 * checked during the search
+			 */
+			if (simplified.size() == 1) {
+				Formula formula = simplified.values().iterator().next();
+				if (ctl.Formulas.getHeights(formula).get(formula) <= MAX_LISTENER_FORMULA_HEIGHT
+						&& StateProperty.of(formula) != null) {
+					conf.setProperty("partialtransitionsystemlistener.formula", formula.toString());
+				}
+			}
+
+			// reuse the system explored before with the same class files and settings, and its verdicts
+			systemCache = cache(conf, SYSTEM_CACHE, TransitionSystemCache.DEFAULT_DIRECTORY,
+					TransitionSystemCache.DEFAULT_MAXIMUM_SIZE, SYSTEM_CACHES, TransitionSystemCache::new);
+			verdictCache = verdictCache(conf);
+			if (systemCache == null && verdictCache == null) {
+				key = null;
+			} else {
+				key = TransitionSystemCache.getKey(Paths.get(classpath), settings(conf, target), TOOLS);
+			}
 
-			System.out.println("JPF Classpath: " + jpf.getConfig().getProperty("classpath"));
+			// return immediately if the verdicts of all formulas for this system are known
+			if (verdictCache != null) {
+				for (Map.Entry<String, Formula> entry : simplified.entrySet()) {
+					VerdictCache.Verdict verdict = verdictCache.get(key, canonical(entry.getValue()));
+					if (verdict != null) {
+						known.put(entry.getKey(), verdict);
+					}
+				}
+			}
+			if (known.size() == formulas.size()) {
+				for (Map.Entry<String, Formula> entry : formulas.entrySet()) {
+					verdicts.put(entry.getKey(),
+							message(known.get(entry.getKey()), entry.getKey(), entry.getValue(), path, target));
+				}
+				return verdicts;
+			}
 
-			jpf.run();
-			if (jpf.foundErrors()) {
-				return "Model Checking Finished\n For the selected class:\t" + path + "\n And the written formula:\t"
-						+ formula
-						+ "\nIt has been determined that the target system contains an error that needs to be resolved before model checking can commence"
-						+ "\nThe error can be seen below:\n" + jpf.getLastError();
+			// the directory in which the explored system is kept in memory-mapped files, or null
+			if (conf.getBoolean(MAPPED_SYSTEM, false)) {
+				mapped = Paths.get(conf.getString(MAPPED_SYSTEM + DIRECTORY, System.getProperty("java.io.tmpdir")));
+			} else {
+				mapped = null;
+			}
+
+			pts = systemCache == null ? null : systemCache.get(key, mapped);
+			if (pts != null) {
+				System.out.println("Reusing the explored system " + key);
+			} else {
+				// set after the key is computed, as where the system is kept does not affect it
+				if (mapped != null && conf.getProperty(LISTENER_DIRECTORY) == null) {
+					conf.setProperty(LISTENER_DIRECTORY, mapped.toString());
+				}
+
+				// This instantiates JPF but also adds the jpf.properties and other arguments to
+				// the config
+				JPF jpf = new JPF(conf);
+
+				System.out.println("JPF Classpath: " + jpf.getConfig().getProperty("classpath"));
+
+				jpf.run();
+				if (jpf.foundErrors()) {
+					for (Map.Entry<String, Formula> entry : formulas.entrySet()) {
+						verdicts.put(entry.getKey(), "Model Checking Finished\n For the selected class:\t" + path
+								+ "\n And the written formula:\t" + entry.getValue()
+								+ "\nIt has been determined that the target system contains an error that needs to be resolved before model checking can commence"
+								+ "\nThe error can be seen below:\n" + jpf.getLastError());
+					}
+					return verdicts;
+				}
+
+				if (format.equals(MEMORY_FORMAT)) {
+					PartialTransitionSystemListener listener = jpf
+							.getListenerOfType(PartialTransitionSystemListener.class);
+					pts = listener == null ? null : listener.getTransitionSystem();
+					if (pts == null) {
+						throw new ModelCheckingException("The explored system was not built by the listener");
+					}
+				} else {
+					pts = load(target, format.equals(BINARY_FORMAT), mapped);
+				}
+				if (systemCache != null) {
+					try {
+						systemCache.put(key, pts);
+					} catch (IOException e) {
+						System.err.println("The explored system could not be cached: " + e.getMessage());
+					}
+				}
 			}
 		} catch (JPFConfigException cx) {
 			throw new ModelCheckingException(
@@ -127,51 +321,210 @@ public class ModelChecker {
 		} catch (JPFException jx) {
 			throw new ModelCheckingException(
 					"JPF encountered an internal error and was forced to terminate." + jx.getMessage());
+		} catch (IOException e) {
+			throw new ModelCheckingException("There was an error reading the class files of the target system:\n"
+					+ e.getMessage());
+		} catch (UncheckedIOException e) {
+			throw new ModelCheckingException(
+					"The explored system could not be kept in memory-mapped files:\n" + e.getCause().getMessage());
+		}
+
+		/*
+		 * Decide the initial state of all formulas with the same local model checker,
+		 * which keeps the results of their subformulas, and only build the model if a
+		 * counter example is needed
+		 */
+		LocalModelChecker local = new LocalModelChecker(pts);
+		Model m = null;
+		for (Map.Entry<String, Formula> entry : formulas.entrySet()) {
+			VerdictCache.Verdict verdict = known.get(entry.getKey());
+			if (verdict == null) {
+				if (local.check(simplified.get(entry.getKey()), INITIAL_STATE)) {
+					verdict = new VerdictCache.Verdict(true, null);
+				} else {
+					if (m == null) {
+						m = model(pts, mapped);
+					}
+					verdict = counterExample(m, simplified.get(entry.getKey()));
+				}
+				if (verdictCache != null) {
+					try {
+						verdictCache.put(key, canonical(simplified.get(entry.getKey())), verdict);
+					} catch (IOException e) {
+						System.err.println("The verdict could not be cached: " + e.getMessage());
+					}
+				}
+			}
+			verdicts.put(entry.getKey(), message(verdict, entry.getKey(), entry.getValue(), path, target));
+		}
+		return verdicts;
+	}
+
+	/*
+	 * Returns the cache of verdicts configured by the given configuration, or
+	 * null if the configuration does not enable it.
+	 */
+	private static synchronized VerdictCache verdictCache(Config conf) {
+		lastVerdictCache = cache(conf, VERDICT_CACHE, VerdictCache.DEFAULT_DIRECTORY, VerdictCache.DEFAULT_MAXIMUM_SIZE,
+				VERDICT_CACHES, VerdictCache::new);
+		return lastVerdictCache;
+	}
+
+	/*
+	 * Returns the cache that the given property of the given configuration
+	 * enables, in the directory and with the maximum size that the configuration
+	 * sets, or the given defaults, or null if the property does not enable it.
+	 * The cache is taken from the given caches, or created with the given
+	 * constructor and added to them.
+	 */
+	private static synchronized <C> C cache(Config conf, String property, Path defaultDirectory,
+			long defaultMaximumSize, Map<List<Object>, C> caches, BiFunction<Path, Long, C> constructor) {
+		if (!conf.getBoolean(property, false)) {
+			return null;
+		}
+		Path directory = Paths.get(conf.getString(property + DIRECTORY, defaultDirectory.toString()));
+		long maximumSize = conf.getLong(property + MAX_SIZE, defaultMaximumSize);
+		return caches.computeIfAbsent(Arrays.asList(directory, maximumSize),
+				settings -> constructor.apply(directory, maximumSize));
+	}
+
+	/*
+	 * Returns a model of the given system, whose reverse index of the transitions
+	 * is kept in a memory-mapped temporary file in the given directory if the
+	 * system is kept in such files, that is, if the directory is not null, or in
+	 * the temporary directory if there are many transitions, so that the model
+	 * does not add to the heap per transition.
+	 */
+	private static Model model(LabelledPartialTransitionSystem pts, Path mapped) {
+		if (mapped != null || pts.getNumberOfTransitions() >= MAPPED_TRANSITIONS) {
+			try {
+				return new Model(pts, mapped != null ? mapped : Paths.get(System.getProperty("java.io.tmpdir")));
+			} catch (IOException e) {
+				System.err.println("The transitions could not be mapped to files: " + e.getMessage());
+			}
 		}
+		return new Model(pts);
+	}
 
+	/*
+	 * Returns the settings of the given configuration that affect the system
+	 * explored by JPF for the given target: those whose name starts with one of
+	 * the EXPLORATION_SETTINGS, which include the atomic propositions and the
+	 * options of the listener.
+	 */
+	private static Map<String, String> settings(Config conf, String target) {
+		Map<String, String> settings = new HashMap<String, String>();
+		for (String key : conf.stringPropertyNames()) {
+			for (String prefix : EXPLORATION_SETTINGS) {
+				if (key.startsWith(prefix)) {
+					settings.put(key, conf.getProperty(key));
+				}
+			}
+		}
+		settings.put("target", target);
+		return settings;
+	}
+
+	/*
+	 * Loads the system explored by JPF for the given target from the files
+	 * written by the listeners, or from the file in the binary format of the
+	 * PartialTransitionSystemListener, which contains the labels as well, if
+	 * binary, and deletes these files. The system is kept in memory-mapped files
+	 * in the given directory, unless it is null.
+	 */
+	private static LabelledPartialTransitionSystem load(String target, boolean binary, Path mapped)
+			throws ModelCheckingException {
 		// At this point we know the files exist so now we need to load them...
 		String jpfLabelFile = target + LAB_EXTENSION;
-		String listenerFile = target + TRA_EXTENSION;
+		String listenerFile = target + (binary ? LPTS_EXTENSION : TRA_EXTENSION);
 
 		// build pts
 		LabelledPartialTransitionSystem pts;
 		try {
-			pts = new LabelledPartialTransitionSystem(jpfLabelFile, listenerFile);
+			if (binary) {
+				pts = LabelledPartialTransitionSystem.fromBinaryFile(listenerFile, mapped);
+			} else {
+				pts = new LabelledPartialTransitionSystem(jpfLabelFile, listenerFile, mapped);
+			}
 		} catch (IOException e) {
 			throw new ModelCheckingException(
 					"There was an error building the LabelledPartialTransitionSystem object:\n" + e.getMessage());
 		}
 
 		// cleanup files
-		File labFile = new File(jpfLabelFile);
-		if (!labFile.delete()) {
-			System.err.println("File: " + labFile.getName() + " was not deleted");
+		if (!binary) {
+			File labFile = new File(jpfLabelFile);
+			if (!labFile.delete()) {
+				System.err.println("File: " + labFile.getName() + " was not deleted");
+			}
 		}
 		File traFile = new File(listenerFile);
 		if (!traFile.delete()) {
 			System.err.println("File: " + traFile.getName() + " was not deleted");
 		}
+		return pts;
+	}
 
-		// perform model check
-		Model m = new Model(pts);
+	/*
+	 * Parses the given formula and checks that its atomic propositions exist.
+	 */
+	private static Formula parse(String Formula, String classpath) {
+		CharStream input = CharStreams.fromString(Formula);
+		input = new CTLError().errorCheckAndRecover(input);
 
-		// success
-		if (m.check(formula).getSat().contains(INITIAL_STATE)) {
-			return "Model Checking Finished\n For the selected class:\t" + target + "\n And the written formula:\t"
-					+ Formula
-					+ "\nIt has been determined that the formula holds in the initial state and is considered valid for this system.";
+		CTLParser parser = new CTLParser(new CommonTokenStream(new CTLLexer(input)));
+		ParseTree tree = parser.formula();
+
+		/*
+		 * Perform Error Checking on input formula and gather APs for use with jpf-ctl
+		 */
+		ParseTreeWalker walker = new IterativeParseTreeWalker();
+		try {
+			walker.walk(new FieldExists(classpath), tree); // TODO fix
+		} catch (AtomicPropositionDoesNotExistException e) {
+			// throw new ModelCheckingException(e.getMessage());
 		}
 
-		// fail
+		// At this point we know the formula is correct.
+		return new Generator().visit(tree);
+	}
+
+	/*
+	 * Returns the canonical form of the given formula as text, which is the key
+	 * of its verdict.
+	 */
+	private static String canonical(Formula formula) {
+		return CANONICALIZER.canonicalize(formula).toString();
+	}
+
+	/*
+	 * Returns the verdict of the given formula, which does not hold in the initial
+	 * state of the given model, with a counter example.
+	 */
+	private static VerdictCache.Verdict counterExample(Model m, Formula simplified) throws ModelCheckingException {
 		try {
-			return "Model Checking Finished\n For the selected class:\t" + path + "\n And the written formula:\t"
-					+ formula
-					+ "\nIt has been determined that the formula does not hold in the initial state and is considered invalid for this system."
-					+ "\nA counter example can be seen below:\n" + m.getCounterExample(formula, INITIAL_STATE);
+			return new VerdictCache.Verdict(false, m.getCounterExample(simplified, INITIAL_STATE));
 		} catch (Exception e) {
 			throw new ModelCheckingException(
 					"Someting went wrong when building the counter example:\n" + e.getMessage());
 		}
 	}
 
+	/*
+	 * Returns the message that reports the given verdict of the given formula.
+	 */
+	private static String message(VerdictCache.Verdict verdict, String Formula, Formula formula, String path,
+			String target) {
+		if (verdict.holds()) {
+			return "Model Checking Finished\n For the selected class:\t" + target + "\n And the written formula:\t"
+					+ Formula
+					+ "\nIt has been determined that the formula holds in the initial state and is considered valid for this system.";
+		} else {
+			return "Model Checking Finished\n For the selected class:\t" + path + "\n And the written formula:\t"
+					+ formula
+					+ "\nIt has been determined that the formula does not hold in the initial state and is considered invalid for this system."
+					+ "\nA counter example can be seen below:\n" + verdict.getCounterExample();
+		}
+	}
+
 }
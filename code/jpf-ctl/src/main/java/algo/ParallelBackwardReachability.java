@@ -0,0 +1,234 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Backward reachability and predecessor computation performed by several
+ * threads. The search is level synchronous: the states of the current level
+ * are split among fork/join tasks, which claim their unvisited predecessors in
+ * a bit set that is updated atomically, so that each state is claimed by
+ * exactly one task. The claimed states form the next level.
+ *
+ * @see BackwardReachability
+ */
+public class ParallelBackwardReachability {
+	// number of states handled by a single task
+	private static final int GRAIN = 1024;
+
+	private final Adjacency pre;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Initializes this kernel for the graph with the given predecessors. The
+	 * tasks are run by the given pool.
+	 *
+	 * @param pre  the predecessors of each node of the graph
+	 * @param pool the pool that runs the tasks
+	 */
+	public ParallelBackwardReachability(Adjacency pre, ForkJoinPool pool) {
+		this.pre = pre;
+		this.pool = pool;
+	}
+
+	/**
+	 * Adds to the given set all states that can reach one of its states along a
+	 * path of which all states, except for the last, are in the given set of
+	 * allowed states.
+	 *
+	 * @param reached the states to start from, to which the reached states are added
+	 * @param allowed the states that may be passed through, or null if all states may be
+	 * @see BackwardReachability#reach(BitSet, BitSet)
+	 */
+	public void reach(BitSet reached, BitSet allowed) {
+		int n = this.pre.size();
+		AtomicLongArray visited = words(reached, n);
+		int[] level = new int[n];
+		int[] next = new int[n];
+		int size = 0;
+		for (int state = reached.nextSetBit(0); state >= 0; state = reached.nextSetBit(state + 1)) {
+			level[size++] = state;
+		}
+		AtomicInteger nextSize = new AtomicInteger();
+		while (size > 0) {
+			nextSize.set(0);
+			this.pool.invoke(new Expand(level, 0, size, next, nextSize, visited, allowed));
+			int[] swap = level;
+			level = next;
+			next = swap;
+			size = nextSize.get();
+		}
+		reached.or(bits(visited));
+	}
+
+	/**
+	 * Returns the states that have a successor in the given set.
+	 *
+	 * @param targets some states
+	 * @return the predecessors of the given states
+	 */
+	public BitSet preImage(StateSet targets) {
+		int n = this.pre.size();
+		AtomicLongArray predecessors = new AtomicLongArray((n + Long.SIZE - 1) / Long.SIZE);
+		this.pool.invoke(new PreImage(targets, 0, n, predecessors));
+		return bits(predecessors);
+	}
+
+	/*
+	 * Returns the given states as an array of words that can be updated atomically.
+	 */
+	private static AtomicLongArray words(BitSet states, int n) {
+		long[] words = states.toLongArray();
+		AtomicLongArray atomic = new AtomicLongArray((n + Long.SIZE - 1) / Long.SIZE);
+		for (int word = 0; word < words.length; word++) {
+			atomic.set(word, words[word]);
+		}
+		return atomic;
+	}
+
+	/*
+	 * Returns the given words as a bit set.
+	 */
+	private static BitSet bits(AtomicLongArray states) {
+		long[] words = new long[states.length()];
+		for (int word = 0; word < words.length; word++) {
+			words[word] = states.get(word);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/*
+	 * Adds the given state to the given set and returns true, unless the state was
+	 * already in the set.
+	 */
+	private static boolean claim(AtomicLongArray states, int state) {
+		int word = state >>> 6;
+		long bit = 1L << state;
+		long old;
+		do {
+			old = states.get(word);
+			if ((old & bit) != 0) {
+				return false;
+			}
+		} while (!states.compareAndSet(word, old, old | bit));
+		return true;
+	}
+
+	/*
+	 * Claims the unvisited allowed predecessors of the states level[from], ...,
+	 * level[to - 1] and appends them to next.
+	 */
+	private class Expand extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] level;
+		private final int from;
+		private final int to;
+		private final int[] next;
+		private final AtomicInteger nextSize;
+		private final AtomicLongArray visited;
+		private final BitSet allowed;
+
+		Expand(int[] level, int from, int to, int[] next, AtomicInteger nextSize, AtomicLongArray visited,
+				BitSet allowed) {
+			this.level = level;
+			this.from = from;
+			this.to = to;
+			this.next = next;
+			this.nextSize = nextSize;
+			this.visited = visited;
+			this.allowed = allowed;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > GRAIN) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Expand(this.level, this.from, middle, this.next, this.nextSize, this.visited, this.allowed),
+						new Expand(this.level, middle, this.to, this.next, this.nextSize, this.visited, this.allowed));
+			} else {
+				int[] claimed = new int[GRAIN];
+				int size = 0;
+				for (int i = this.from; i < this.to; i++) {
+					int target = this.level[i];
+					for (int position = pre.start(target); position < pre.end(target); position++) {
+						int source = pre.get(position);
+						if ((this.allowed == null || this.allowed.get(source)) && claim(this.visited, source)) {
+							if (size == claimed.length) {
+								this.append(claimed, size);
+								size = 0;
+							}
+							claimed[size++] = source;
+						}
+					}
+				}
+				this.append(claimed, size);
+			}
+		}
+
+		/*
+		 * Appends the given states to the next level.
+		 */
+		private void append(int[] claimed, int size) {
+			int start = this.nextSize.getAndAdd(size);
+			System.arraycopy(claimed, 0, this.next, start, size);
+		}
+	}
+
+	/*
+	 * Adds the predecessors of the targets between from and to - 1 to
+	 * predecessors.
+	 */
+	private class PreImage extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final StateSet targets;
+		private final int from;
+		private final int to;
+		private final AtomicLongArray predecessors;
+
+		PreImage(StateSet targets, int from, int to, AtomicLongArray predecessors) {
+			this.targets = targets;
+			this.from = from;
+			this.to = to;
+			this.predecessors = predecessors;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > GRAIN * Long.SIZE) {
+				// split at a word boundary
+				int middle = ((this.from + this.to) >>> 1) & ~(Long.SIZE - 1);
+				invokeAll(new PreImage(this.targets, this.from, middle, this.predecessors),
+						new PreImage(this.targets, middle, this.to, this.predecessors));
+			} else {
+				for (int target = this.targets.nextSetBit(this.from); target >= 0
+						&& target < this.to; target = this.targets.nextSetBit(target + 1)) {
+					for (int position = pre.start(target); position < pre.end(target); position++) {
+						claim(this.predecessors, pre.get(position));
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import ctl.And;
+import ctl.AtomicProposition;
+import ctl.ExistsAlways;
+import ctl.ExistsEventually;
+import ctl.ExistsNext;
+import ctl.ExistsUntil;
+import ctl.False;
+import ctl.ForAllAlways;
+import ctl.ForAllEventually;
+import ctl.ForAllNext;
+import ctl.ForAllUntil;
+import ctl.Formula;
+import ctl.Formulas;
+import ctl.Iff;
+import ctl.Implies;
+import ctl.Not;
+import ctl.Or;
+import ctl.True;
+
+/**
+ * A formula compiled into a list of instructions in post-order: each
+ * instruction comes after the instructions that compute its operands.
+ * Instruction i stores the states that satisfy its formula in register i. A
+ * subformula shared by several subformulas is computed by a single instruction.
+ *
+ * The maximal boolean combinations of atomic propositions, constants and
+ * registers are compiled into a single expression, which is evaluated for 64
+ * states at a time without computing the states that satisfy its subformulas.
+ * EX and AX of such an expression evaluate the expression for the successors
+ * directly.
+ */
+final class Plan {
+	// the operations of the instructions
+	static final int LOAD = 0;
+	static final int BOOLEAN = 1;
+	static final int EXISTS_NEXT = 2;
+	static final int FOR_ALL_NEXT = 3;
+	static final int EXISTS_ALWAYS = 4;
+	static final int EXISTS_EVENTUALLY = 5;
+	static final int EXISTS_UNTIL = 6;
+	static final int FOR_ALL_ALWAYS = 7;
+	static final int FOR_ALL_EVENTUALLY = 8;
+	static final int FOR_ALL_UNTIL = 9;
+
+	private final List<Formula> formulas;
+	private final List<Integer> opcodes;
+	private final List<Integer> lefts;
+	private final List<Integer> rights;
+	private final List<Expression> expressions;
+
+	// the register of each formula that has been compiled
+	private final Map<Formula, Integer> registers;
+
+	private final Formula root;
+	private final Predicate<Formula> cached;
+	private final Map<String, Integer> fields;
+
+	/*
+	 * Compiles the given formula.
+	 */
+	private Plan(Formula root, Predicate<Formula> cached, Map<String, Integer> fields) {
+		this.formulas = new ArrayList<Formula>();
+		this.opcodes = new ArrayList<Integer>();
+		this.lefts = new ArrayList<Integer>();
+		this.rights = new ArrayList<Integer>();
+		this.expressions = new ArrayList<Expression>();
+		this.registers = new HashMap<Formula, Integer>();
+		this.root = root;
+		this.cached = cached;
+		this.fields = fields;
+		this.compile(root);
+	}
+
+	/**
+	 * Compiles the given formula. Its subformulas for which the given predicate
+	 * holds are loaded rather than computed. The last instruction computes the
+	 * given formula.
+	 *
+	 * @param formula a formula
+	 * @param cached  tests whether the result of a subformula is available
+	 * @param fields  the label of each atomic proposition
+	 * @return the plan that computes the given formula
+	 */
+	static Plan compile(Formula formula, Predicate<Formula> cached, Map<String, Integer> fields) {
+		return new Plan(formula, cached, fields);
+	}
+
+	/**
+	 * Returns the number of instructions of this plan.
+	 *
+	 * @return the number of instructions of this plan
+	 */
+	int size() {
+		return this.opcodes.size();
+	}
+
+	/**
+	 * Returns the operation of the given instruction.
+	 *
+	 * @param instruction an instruction of this plan
+	 * @return the operation of the given instruction
+	 */
+	int getOpcode(int instruction) {
+		return this.opcodes.get(instruction);
+	}
+
+	/**
+	 * Returns the formula computed by the given instruction.
+	 *
+	 * @param instruction an instruction of this plan
+	 * @return the formula computed by the given instruction
+	 */
+	Formula getFormula(int instruction) {
+		return this.formulas.get(instruction);
+	}
+
+	/**
+	 * Returns the register of the (left) operand of the given instruction.
+	 *
+	 * @param instruction an instruction of this plan
+	 * @return the register of the (left) operand, or -1 if there is none
+	 */
+	int getLeft(int instruction) {
+		return this.lefts.get(instruction);
+	}
+
+	/**
+	 * Returns the register of the right operand of the given instruction.
+	 *
+	 * @param instruction an instruction of this plan
+	 * @return the register of the right operand, or -1 if there is none
+	 */
+	int getRight(int instruction) {
+		return this.rights.get(instruction);
+	}
+
+	/**
+	 * Returns the expression evaluated by the given BOOLEAN, EXISTS_NEXT or
+	 * FOR_ALL_NEXT instruction.
+	 *
+	 * @param instruction an instruction of this plan
+	 * @return the expression of the given instruction, or null if there is none
+	 */
+	Expression getExpression(int instruction) {
+		return this.expressions.get(instruction);
+	}
+
+	/*
+	 * Adds the instructions that compute the given formula, each after the
+	 * instructions that compute its operands, using an explicit stack.
+	 */
+	private void compile(Formula formula) {
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Formula top = stack.peek();
+			if (this.registers.containsKey(top)) {
+				stack.pop();
+			} else {
+				boolean ready = true;
+				for (Formula operand : this.operands(top)) {
+					if (!this.registers.containsKey(operand)) {
+						stack.push(operand);
+						ready = false;
+					}
+				}
+				if (ready) {
+					stack.pop();
+					this.registers.put(top, this.emit(top));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the subformulas whose registers are needed by the instruction of
+	 * the given formula.
+	 */
+	private List<Formula> operands(Formula formula) {
+		if (formula != this.root && this.cached.test(formula)) {
+			return Collections.emptyList();
+		} else if (isBoolean(formula)) {
+			return leaves(formula);
+		} else if (formula instanceof ExistsNext) {
+			return leaves(((ExistsNext) formula).getFormula());
+		} else if (formula instanceof ForAllNext) {
+			return leaves(((ForAllNext) formula).getFormula());
+		} else {
+			return Formulas.getSubformulas(formula);
+		}
+	}
+
+	/*
+	 * Returns the subformulas at the bottom of the boolean combination at the top
+	 * of the given formula that are not atomic propositions or constants.
+	 */
+	private static List<Formula> leaves(Formula formula) {
+		List<Formula> leaves = new ArrayList<Formula>();
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Formula top = stack.pop();
+			if (!isBoolean(top)) {
+				leaves.add(top);
+			} else {
+				stack.addAll(Formulas.getSubformulas(top));
+			}
+		}
+		return leaves;
+	}
+
+	/*
+	 * Adds the instruction that computes the given formula, whose operands have
+	 * been compiled, and returns its register.
+	 */
+	private int emit(Formula formula) {
+		if (formula != this.root && this.cached.test(formula)) {
+			return this.emit(LOAD, formula, -1, -1, null);
+		} else if (isBoolean(formula)) {
+			return this.emit(BOOLEAN, formula, -1, -1, this.expression(formula));
+		} else if (formula instanceof ExistsNext) {
+			Expression operand = this.expression(((ExistsNext) formula).getFormula());
+			return this.emit(EXISTS_NEXT, formula, -1, -1, operand);
+		} else if (formula instanceof ForAllNext) {
+			Expression operand = this.expression(((ForAllNext) formula).getFormula());
+			return this.emit(FOR_ALL_NEXT, formula, -1, -1, operand);
+		} else if (formula instanceof ExistsAlways) {
+			int operand = this.registers.get(((ExistsAlways) formula).getFormula());
+			return this.emit(EXISTS_ALWAYS, formula, operand, -1, null);
+		} else if (formula instanceof ExistsEventually) {
+			int operand = this.registers.get(((ExistsEventually) formula).getFormula());
+			return this.emit(EXISTS_EVENTUALLY, formula, operand, -1, null);
+		} else if (formula instanceof ExistsUntil) {
+			ExistsUntil until = (ExistsUntil) formula;
+			int left = this.registers.get(until.getLeft());
+			int right = this.registers.get(until.getRight());
+			return this.emit(EXISTS_UNTIL, formula, left, right, null);
+		} else if (formula instanceof ForAllAlways) {
+			int operand = this.registers.get(((ForAllAlways) formula).getFormula());
+			return this.emit(FOR_ALL_ALWAYS, formula, operand, -1, null);
+		} else if (formula instanceof ForAllEventually) {
+			int operand = this.registers.get(((ForAllEventually) formula).getFormula());
+			return this.emit(FOR_ALL_EVENTUALLY, formula, operand, -1, null);
+		} else if (formula instanceof ForAllUntil) {
+			ForAllUntil until = (ForAllUntil) formula;
+			int left = this.registers.get(until.getLeft());
+			int right = this.registers.get(until.getRight());
+			return this.emit(FOR_ALL_UNTIL, formula, left, right, null);
+		} else {
+			throw new IllegalArgumentException("Unknown formula: " + formula);
+		}
+	}
+
+	/*
+	 * Adds the given instruction and returns its register.
+	 */
+	private int emit(int opcode, Formula formula, int left, int right, Expression expression) {
+		this.opcodes.add(opcode);
+		this.formulas.add(formula);
+		this.lefts.add(left);
+		this.rights.add(right);
+		this.expressions.add(expression);
+		return this.opcodes.size() - 1;
+	}
+
+	/*
+	 * Tests whether the given formula is an atomic proposition, a constant or a
+	 * boolean connective.
+	 */
+	private static boolean isBoolean(Formula formula) {
+		return formula instanceof True || formula instanceof False || formula instanceof AtomicProposition
+				|| formula instanceof Not || formula instanceof And || formula instanceof Or
+				|| formula instanceof Implies || formula instanceof Iff;
+	}
+
+	/*
+	 * Compiles the boolean combination at the top of the given formula into an
+	 * expression, whose other subformulas have been compiled. The postfix
+	 * notation is produced with an explicit stack of formulas and operators.
+	 */
+	private Expression expression(Formula formula) {
+		Expression.Builder builder = new Expression.Builder();
+		Deque<Object> stack = new ArrayDeque<Object>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Object top = stack.pop();
+			if (top instanceof Integer) {
+				builder.add((Integer) top);
+			} else if (top instanceof True) {
+				builder.add(Expression.TRUE);
+			} else if (top instanceof False) {
+				builder.add(Expression.FALSE);
+			} else if (top instanceof AtomicProposition) {
+				Integer label = this.fields.get(top.toString());
+				if (label == null) {
+					builder.add(Expression.FALSE);
+				} else {
+					builder.addLabel(label);
+				}
+			} else if (isBoolean((Formula) top)) {
+				// the operator is added after its operands
+				stack.push(operator((Formula) top));
+				List<Formula> operands = Formulas.getSubformulas((Formula) top);
+				for (int i = operands.size() - 1; i >= 0; i--) {
+					stack.push(operands.get(i));
+				}
+			} else {
+				builder.addRegister(this.registers.get(top));
+			}
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Returns the operator of the expression of the given boolean connective.
+	 */
+	private static int operator(Formula formula) {
+		if (formula instanceof Not) {
+			return Expression.NOT;
+		} else if (formula instanceof And) {
+			return Expression.AND;
+		} else if (formula instanceof Or) {
+			return Expression.OR;
+		} else if (formula instanceof Implies) {
+			return Expression.IMPLIES;
+		} else {
+			return Expression.IFF;
+		}
+	}
+
+	/**
+	 * A boolean combination of labels and registers in postfix notation. Each
+	 * label and register is an operand, which is given to the expression as an
+	 * array of words of 64 states.
+	 */
+	static final class Expression {
+		// the operators; a nonnegative code pushes the operand with that index
+		static final int TRUE = -1;
+		static final int FALSE = -2;
+		static final int NOT = -3;
+		static final int AND = -4;
+		static final int OR = -5;
+		static final int IMPLIES = -6;
+		static final int IFF = -7;
+
+		private final int[] code;
+		// the register of each operand, or -1 if the operand is a label
+		private final int[] registers;
+		// the label of each operand, or -1 if the operand is a register
+		private final int[] labels;
+		// the largest number of values on the stack
+		private final int depth;
+
+		private Expression(int[] code, int[] registers, int[] labels, int depth) {
+			this.code = code;
+			this.registers = registers;
+			this.labels = labels;
+			this.depth = depth;
+		}
+
+		/**
+		 * Returns the number of operands of this expression.
+		 *
+		 * @return the number of operands of this expression
+		 */
+		int getNumberOfOperands() {
+			return this.registers.length;
+		}
+
+		/**
+		 * Returns the register of the given operand.
+		 *
+		 * @param operand an operand of this expression
+		 * @return the register of the given operand, or -1 if it is a label
+		 */
+		int getRegister(int operand) {
+			return this.registers[operand];
+		}
+
+		/**
+		 * Returns the label of the given operand.
+		 *
+		 * @param operand an operand of this expression
+		 * @return the label of the given operand, or -1 if it is a register
+		 */
+		int getLabel(int operand) {
+			return this.labels[operand];
+		}
+
+		/**
+		 * Returns the negation of this expression.
+		 *
+		 * @return the negation of this expression
+		 */
+		Expression negate() {
+			int[] code = Arrays.copyOf(this.code, this.code.length + 1);
+			code[this.code.length] = NOT;
+			return new Expression(code, this.registers, this.labels, this.depth);
+		}
+
+		/**
+		 * Returns a stack that is large enough to evaluate this expression.
+		 *
+		 * @return a stack for this expression
+		 */
+		long[] stack() {
+			return new long[this.depth];
+		}
+
+		/**
+		 * Evaluates this expression for the states of the given word. The bits of
+		 * the result beyond the last state are undefined.
+		 *
+		 * @param operands the words of each operand, which may be shorter than the
+		 *                 number of words of all states
+		 * @param word     the index of a word
+		 * @param stack    a stack for this expression
+		 * @return the states of the given word that satisfy this expression
+		 */
+		long evaluate(long[][] operands, int word, long[] stack) {
+			int top = 0;
+			for (int code : this.code) {
+				switch (code) {
+				case TRUE:
+					stack[top++] = -1L;
+					break;
+				case FALSE:
+					stack[top++] = 0L;
+					break;
+				case NOT:
+					stack[top - 1] = ~stack[top - 1];
+					break;
+				case AND:
+					top--;
+					stack[top - 1] &= stack[top];
+					break;
+				case OR:
+					top--;
+					stack[top - 1] |= stack[top];
+					break;
+				case IMPLIES:
+					top--;
+					stack[top - 1] = ~stack[top - 1] | stack[top];
+					break;
+				case IFF:
+					top--;
+					stack[top - 1] = ~(stack[top - 1] ^ stack[top]);
+					break;
+				default:
+					long[] operand = operands[code];
+					stack[top++] = word < operand.length ? operand[word] : 0L;
+				}
+			}
+			return stack[0];
+		}
+
+		/*
+		 * Builds an expression from its postfix notation.
+		 */
+		static final class Builder {
+			private final List<Integer> code = new ArrayList<Integer>();
+			private final List<Integer> registers = new ArrayList<Integer>();
+			private final List<Integer> labels = new ArrayList<Integer>();
+			private int size = 0;
+			private int depth = 0;
+
+			void add(int operator) {
+				this.code.add(operator);
+				if (operator == TRUE || operator == FALSE) {
+					this.push();
+				} else if (operator != NOT) {
+					this.size--;
+				}
+			}
+
+			void addLabel(int label) {
+				this.code.add(this.registers.size());
+				this.registers.add(-1);
+				this.labels.add(label);
+				this.push();
+			}
+
+			void addRegister(int register) {
+				this.code.add(this.registers.size());
+				this.registers.add(register);
+				this.labels.add(-1);
+				this.push();
+			}
+
+			private void push() {
+				this.size++;
+				this.depth = Math.max(this.depth, this.size);
+			}
+
+			Expression build() {
+				return new Expression(toArray(this.code), toArray(this.registers), toArray(this.labels), this.depth);
+			}
+
+			private static int[] toArray(List<Integer> list) {
+				int[] array = new int[list.size()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = list.get(i);
+				}
+				return array;
+			}
+		}
+	}
+}
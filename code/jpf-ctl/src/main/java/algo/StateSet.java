@@ -0,0 +1,108 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.util.BitSet;
+
+/**
+ * An immutable set of states. The states are represented by their index in
+ * the labelled partial transition system, that is, by a number between 0 and
+ * the number of states - 1.
+ *
+ * @see LabelledPartialTransitionSystem#getIndex(int)
+ */
+public interface StateSet {
+
+	/**
+	 * Returns a set of states with the given indices. A compressed set is chosen
+	 * if it takes less than half the memory of a bit set, that is, if the states
+	 * are sparse or form few ranges of consecutive indices.
+	 *
+	 * @param bits the indices of the states, not to be modified afterwards
+	 * @return a set of states with the given indices
+	 */
+	static StateSet of(BitSet bits) {
+		if (2 * CompressedStateSet.sizeInBytes(bits) < bits.size() / Byte.SIZE) {
+			return new CompressedStateSet(bits);
+		} else {
+			return new BitStateSet(bits);
+		}
+	}
+
+	/**
+	 * Tests whether the state with the given index is in this set.
+	 *
+	 * @param index the index of a state
+	 * @return true if the state with the given index is in this set, false otherwise
+	 */
+	boolean contains(int index);
+
+	/**
+	 * Returns the number of states in this set.
+	 *
+	 * @return the number of states in this set
+	 */
+	int cardinality();
+
+	/**
+	 * Returns the smallest index in this set that is greater than or equal to the
+	 * given index, or -1 if there is no such index.
+	 *
+	 * @param fromIndex the index to start from
+	 * @return the smallest index in this set that is at least fromIndex, or -1
+	 */
+	int nextSetBit(int fromIndex);
+
+	/**
+	 * Returns the smallest index that is not in this set and that is greater than
+	 * or equal to the given index.
+	 *
+	 * @param fromIndex the index to start from
+	 * @return the smallest index not in this set that is at least fromIndex
+	 */
+	int nextClearBit(int fromIndex);
+
+	/**
+	 * Returns a new bit set containing the indices of this set. The returned bit
+	 * set may be modified by the caller.
+	 *
+	 * @return a new bit set containing the indices of this set
+	 */
+	BitSet toBitSet();
+
+	/**
+	 * Removes from the given bit set all indices that are not in this set.
+	 *
+	 * @param bits a bit set
+	 */
+	void retainIn(BitSet bits);
+
+	/**
+	 * Adds to the given bit set all indices of this set.
+	 *
+	 * @param bits a bit set
+	 */
+	void addTo(BitSet bits);
+
+	/**
+	 * Removes from the given bit set all indices of this set.
+	 *
+	 * @param bits a bit set
+	 */
+	void removeFrom(BitSet bits);
+}
@@ -1,25 +1,43 @@
 package algo;
 
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 public class StateSets {
-	private Set<Integer> sat;
-	private Set<Integer> unsat;
+	private StateSet sat;
+	private StateSet unsat;
+	private LabelledPartialTransitionSystem pts;
 
 	/**
-	 * @param sat
-	 * @param unsat
+	 * The states that do not satisfy the formula are not stored but derived from
+	 * the ones that do when they are needed.
+	 * 
+	 * @param sat the indices of the states that satisfy the formula
+	 * @param pts the system the indices refer to
 	 */
-	public StateSets(Set<Integer> sat, Set<Integer> unsat) {
+	public StateSets(StateSet sat, LabelledPartialTransitionSystem pts) {
 		this.sat = sat;
-		this.unsat = unsat;
+		this.pts = pts;
 	}
 
 	public Set<Integer> getSat() {
-		return this.sat;
+		return new View(this.sat, this.pts);
 	}
 
 	public Set<Integer> getUnSat() {
+		return new View(this.getUnSatStates(), this.pts);
+	}
+
+	public StateSet getSatStates() {
+		return this.sat;
+	}
+
+	public StateSet getUnSatStates() {
+		if (this.unsat == null) {
+			this.unsat = ComplementStateSet.of(this.sat, this.pts.getNumberOfStates());
+		}
 		return this.unsat;
 	}
 
@@ -34,11 +52,62 @@ public class StateSets {
 
 		StateSets ss = (StateSets) o;
 
-		return this.sat.equals(ss.sat) && this.unsat.equals(ss.unsat);
+		return this.getSat().equals(ss.getSat()) && this.getUnSat().equals(ss.getUnSat());
 	}
 
 	@Override
 	public String toString() {
-		return "sat = " + sat + "\nunsat = " + unsat;
+		return "sat = " + getSat() + "\nunsat = " + getUnSat();
+	}
+
+	/*
+	 * A read-only view of a state set in terms of the states of the transition
+	 * system, rather than their indices.
+	 */
+	private static class View extends AbstractSet<Integer> {
+		private final StateSet states;
+		private final LabelledPartialTransitionSystem pts;
+
+		View(StateSet states, LabelledPartialTransitionSystem pts) {
+			this.states = states;
+			this.pts = pts;
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			if (object instanceof Integer) {
+				int index = this.pts.getIndex((Integer) object);
+				return index >= 0 && this.states.contains(index);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int size() {
+			return this.states.cardinality();
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return new Iterator<Integer>() {
+				private int next = states.nextSetBit(0);
+
+				@Override
+				public boolean hasNext() {
+					return this.next >= 0;
+				}
+
+				@Override
+				public Integer next() {
+					if (this.next < 0) {
+						throw new NoSuchElementException();
+					}
+					int state = pts.getState(this.next);
+					this.next = states.nextSetBit(this.next + 1);
+					return state;
+				}
+			};
+		}
 	}
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of labelled partial transition systems on disk. Exploring
+ * a target system with JPF is expensive, so the system that results from an
+ * exploration is stored under a key that identifies the exploration: a hash of
+ * the class files on the classpath, of the settings of JPF that affect the
+ * explored system, such as the target, its arguments, the search, the choice
+ * generators, the atomic propositions and the limits of the listener, and of
+ * the class files of the tools that explore it. As long as none of these
+ * changes, the stored system is reused instead of exploring the target system
+ * again.
+ *
+ * Each system is stored in its own file, named after its key, in the binary
+ * form of {@link LabelledPartialTransitionSystem#write(java.io.DataOutput)}.
+ * Files are written to a temporary file first and then moved, so that a reader
+ * never sees a partially written system. The cache is bounded by the total
+ * size of these files: when it grows beyond its maximum size, the least
+ * recently used systems are removed (see CachedFiles).
+ */
+public class TransitionSystemCache {
+	/**
+	 * The directory in which the systems are cached by default.
+	 */
+	public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".jpf-ctl", "cache");
+
+	/**
+	 * The maximum size, in bytes, of the systems cached by default.
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 1L << 30;
+
+	// the version of the key and of the files, changed whenever either changes
+	private static final int VERSION = 2;
+
+	private static final String EXTENSION = ".lpts";
+	private static final String CLASS_EXTENSION = ".class";
+	private static final String ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Path directory;
+	private final CachedFiles files;
+
+	/**
+	 * Initializes this cache with the given directory, which is created when the
+	 * first system is stored, and the given maximum size.
+	 *
+	 * @param directory   the directory in which the systems are cached
+	 * @param maximumSize the maximum total size, in bytes, of the cached systems
+	 */
+	public TransitionSystemCache(Path directory, long maximumSize) {
+		this.directory = directory;
+		this.files = new CachedFiles(directory, EXTENSION, maximumSize);
+	}
+
+	/**
+	 * Returns the key of the exploration of a target system with the given
+	 * classpath and settings by the given tools. The key is a hash of the version
+	 * of this cache, of the class file of every given class, in the given order,
+	 * of the path and content of every class file in the classpath, in order of
+	 * their path, and of the given settings, in order of their name.
+	 *
+	 * @param classpath the directory that contains the class files of the target system
+	 * @param settings  the settings that affect the explored system, by name; a value may be null
+	 * @param tools     the classes that explore the system and build it, such as the listener
+	 * @return the key of the exploration
+	 * @throws IOException if the class files cannot be read
+	 */
+	public static String getKey(Path classpath, Map<String, String> settings, List<Class<?>> tools)
+			throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		// a newer version of a tool may explore or build the system differently
+		update(digest, "" + VERSION);
+		for (Class<?> tool : tools) {
+			String name = tool.getName();
+			update(digest, name);
+			String file = name.substring(name.lastIndexOf('.') + 1) + CLASS_EXTENSION;
+			try (InputStream input = tool.getResourceAsStream(file)) {
+				if (input != null) {
+					for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+						digest.update(buffer, 0, read);
+					}
+				}
+			}
+			digest.update((byte) 0);
+		}
+
+		List<Path> classes;
+		try (Stream<Path> files = Files.walk(classpath)) {
+			classes = files.filter(file -> file.toString().endsWith(CLASS_EXTENSION) && Files.isRegularFile(file))
+					.sorted().collect(Collectors.toList());
+		}
+		for (Path file : classes) {
+			update(digest, classpath.relativize(file).toString().replace('\\', '/'));
+			try (InputStream input = Files.newInputStream(file)) {
+				for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+					digest.update(buffer, 0, read);
+				}
+			}
+			// separates the content of this file from the next path
+			digest.update((byte) 0);
+		}
+
+		for (Map.Entry<String, String> setting : new TreeMap<String, String>(settings).entrySet()) {
+			update(digest, setting.getKey());
+			update(digest, setting.getValue() == null ? "" : setting.getValue());
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	/*
+	 * Adds the given text to the given digest, preceded by its length, so that
+	 * different sequences of texts give different input.
+	 */
+	private static void update(MessageDigest digest, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			digest.update((byte) (bytes.length >>> shift));
+		}
+		digest.update(bytes);
+	}
+
+	/**
+	 * Returns the system stored under the given key, or null if there is no such
+	 * system or it cannot be read.
+	 *
+	 * @param key a key returned by getKey
+	 * @return the system stored under the given key, or null if there is none
+	 */
+	public LabelledPartialTransitionSystem get(String key) {
+		return this.get(key, null);
+	}
+
+	/**
+	 * Returns the system stored under the given key, kept in memory-mapped files
+	 * in the given directory, or null if there is no such system or it cannot be
+	 * read.
+	 *
+	 * @param key       a key returned by getKey
+	 * @param directory the directory of the memory-mapped files, or null to keep
+	 *                  the system on the heap
+	 * @return the system stored under the given key, or null if there is none
+	 */
+	public LabelledPartialTransitionSystem get(String key, Path directory) {
+		Path file = this.directory.resolve(key + EXTENSION);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			LabelledPartialTransitionSystem system = LabelledPartialTransitionSystem.read(input, directory);
+			this.files.used(file);
+			return system;
+		} catch (IOException e) {
+			System.err.println("File: " + file + " could not be read: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given system under the given key, replacing the system stored
+	 * under that key, if any, and removes the least recently used systems if the
+	 * cache has grown too large.
+	 *
+	 * @param key    a key returned by getKey
+	 * @param system a labelled partial transition system
+	 * @throws IOException if the system cannot be stored
+	 */
+	public void put(String key, LabelledPartialTransitionSystem system) throws IOException {
+		Files.createDirectories(this.directory);
+		Path temporary = Files.createTempFile(this.directory, key, null);
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				system.write(output);
+			}
+			Path file = this.directory.resolve(key + EXTENSION);
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			this.files.stored(file);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Reads the files written by the listeners of JPF into a builder of a labelled
+ * partial transition system. The files are scanned byte by byte from a file
+ * channel, in chunks, and numbers are parsed as they are scanned, without
+ * creating a string per line.
+ *
+ * A .tra file, written by the PartialTransitionSystemListener, contains a line
+ * per transition, of the form {@code source -> target}, and a line with the
+ * states that are not fully explored, separated by spaces. A .lab file,
+ * written by jpf-label, contains a line that maps the indices of the labels to
+ * their names, of the form {@code 0="true__algo_JavaFields_p1" 1="..."}, and a
+ * line per labelled state, of the form {@code state: label label}. The labels
+ * whose name starts with {@code true__} are the fields. Empty lines are
+ * allowed. Any other line is rejected with an exception that gives its line
+ * and column.
+ *
+ * As with the regular expressions that were used before, a transition whose
+ * target is negative, that is, to the sink state, is not added; the states that
+ * are not fully explored are added as such.
+ */
+final class TransitionSystemReader {
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int END = -1;
+
+	private static final String TRUE_PREFIX = "true__";
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final Path file;
+
+	// the position of the next byte
+	private int line;
+	private int column;
+
+	/*
+	 * Initializes this reader for the given file.
+	 */
+	private TransitionSystemReader(Path file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer.flip();
+		this.line = 1;
+		this.column = 1;
+	}
+
+	/**
+	 * Adds the transitions and the states that are not fully explored of the
+	 * given .tra file to the given builder.
+	 *
+	 * @param file    a .tra file
+	 * @param builder a builder
+	 * @throws IOException if the file cannot be read or is not well formed
+	 */
+	static void readTransitions(Path file, LabelledPartialTransitionSystem.Builder builder) throws IOException {
+		TransitionSystemReader reader = new TransitionSystemReader(file);
+		try {
+			while (reader.peek() != END) {
+				if (!reader.skipEndOfLine()) {
+					reader.readTransitionLine(builder);
+				}
+			}
+		} finally {
+			reader.channel.close();
+		}
+	}
+
+	/**
+	 * Adds the labels and the fields of the given .lab file to the given builder.
+	 *
+	 * @param file    a .lab file
+	 * @param builder a builder
+	 * @throws IOException if the file cannot be read or is not well formed
+	 */
+	static void readLabels(Path file, LabelledPartialTransitionSystem.Builder builder) throws IOException {
+		TransitionSystemReader reader = new TransitionSystemReader(file);
+		// the indices of the labels that are fields
+		BitSet fields = new BitSet();
+		try {
+			while (reader.peek() != END) {
+				if (!reader.skipEndOfLine()) {
+					reader.readLabelLine(builder, fields);
+				}
+			}
+		} finally {
+			reader.channel.close();
+		}
+	}
+
+	/*
+	 * Reads a transition, source -> target, or the states that are not fully
+	 * explored, separated by spaces, up to and including the end of the line.
+	 */
+	private void readTransitionLine(LabelledPartialTransitionSystem.Builder builder) throws IOException {
+		int first = this.readInteger(true);
+		boolean spaces = this.skipSpaces();
+		if (spaces && this.peek() == '-') {
+			this.expect('-');
+			this.expect('>');
+			this.expectSpaces();
+			boolean sink = this.peek() == '-';
+			int target = this.readInteger(true);
+			this.skipSpaces();
+			this.expectEndOfLine();
+			if (!sink) {
+				builder.addTransition(first, target);
+			}
+		} else {
+			if (first < 0) {
+				// only the source of a transition can be negative
+				throw this.error("'->'");
+			}
+			builder.addPartial(first);
+			while (spaces && this.isDigit(this.peek())) {
+				builder.addPartial(this.readInteger(false));
+				spaces = this.skipSpaces();
+			}
+			this.expectEndOfLine();
+		}
+	}
+
+	/*
+	 * Reads the names of the labels, index="name" separated by spaces, or the
+	 * labels of a state, state: label label, up to and including the end of the
+	 * line.
+	 */
+	private void readLabelLine(LabelledPartialTransitionSystem.Builder builder, BitSet fields) throws IOException {
+		int first = this.readInteger(false);
+		if (this.peek() == ':') {
+			this.expect(':');
+			boolean spaces = this.skipSpaces();
+			while (spaces && this.isDigit(this.peek())) {
+				int label = this.readInteger(false);
+				if (fields.get(label)) {
+					builder.addLabel(first, label);
+				}
+				spaces = this.skipSpaces();
+			}
+		} else {
+			int index = first;
+			while (true) {
+				this.expect('=');
+				String name = this.readName();
+				if (name.startsWith(TRUE_PREFIX)) {
+					builder.addField(name.substring(TRUE_PREFIX.length()).replace("_", "."), index);
+					fields.set(index);
+				}
+				if (!this.skipSpaces() || !this.isDigit(this.peek())) {
+					break;
+				}
+				index = this.readInteger(false);
+			}
+		}
+		this.expectEndOfLine();
+	}
+
+	/*
+	 * Reads a quoted name of a label.
+	 */
+	private String readName() throws IOException {
+		this.expect('"');
+		StringBuilder name = new StringBuilder();
+		int c = this.peek();
+		while (c != '"') {
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || this.isDigit(c) || c == '_' || c == '$'
+					|| c == '.')) {
+				throw this.error("a letter, digit, _, $ or . in the name of a label");
+			}
+			name.append((char) this.read());
+			c = this.peek();
+		}
+		if (name.length() == 0) {
+			throw this.error("the name of a label");
+		}
+		this.expect('"');
+		return name.toString();
+	}
+
+	/*
+	 * Reads a number, which may be negative if allowed.
+	 */
+	private int readInteger(boolean negative) throws IOException {
+		int start = this.column;
+		boolean minus = negative && this.peek() == '-';
+		if (minus) {
+			this.read();
+		}
+		if (!this.isDigit(this.peek())) {
+			throw this.error("a number");
+		}
+		long value = 0;
+		while (this.isDigit(this.peek())) {
+			value = 10 * value + (this.read() - '0');
+			if (value > Integer.MAX_VALUE + 1L) {
+				throw this.error(start, "expected a number that fits in an int");
+			}
+		}
+		if (minus) {
+			value = -value;
+		}
+		if (value > Integer.MAX_VALUE) {
+			throw this.error(start, "expected a number that fits in an int");
+		}
+		return (int) value;
+	}
+
+	/*
+	 * Skips spaces and tabs and returns whether there were any.
+	 */
+	private boolean skipSpaces() throws IOException {
+		boolean skipped = false;
+		while (this.peek() == ' ' || this.peek() == '\t') {
+			this.read();
+			skipped = true;
+		}
+		return skipped;
+	}
+
+	/*
+	 * Skips at least one space or tab.
+	 */
+	private void expectSpaces() throws IOException {
+		if (!this.skipSpaces()) {
+			throw this.error("a space");
+		}
+	}
+
+	/*
+	 * Skips the end of a line, if the next bytes are one, and returns whether they
+	 * were.
+	 */
+	private boolean skipEndOfLine() throws IOException {
+		int c = this.peek();
+		if (c == '\r') {
+			this.read();
+			if (this.peek() == '\n') {
+				this.read();
+			}
+		} else if (c == '\n') {
+			this.read();
+		} else {
+			return false;
+		}
+		this.line++;
+		this.column = 1;
+		return true;
+	}
+
+	/*
+	 * Skips the end of a line or checks that the end of the file is reached.
+	 */
+	private void expectEndOfLine() throws IOException {
+		if (this.peek() != END && !this.skipEndOfLine()) {
+			throw this.error("the end of the line");
+		}
+	}
+
+	/*
+	 * Skips the given byte.
+	 */
+	private void expect(char expected) throws IOException {
+		if (this.peek() != expected) {
+			throw this.error("'" + expected + "'");
+		}
+		this.read();
+	}
+
+	private boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/*
+	 * Returns an exception reporting that the given was expected at the current
+	 * position.
+	 */
+	private IOException error(String expected) throws IOException {
+		int c = this.peek();
+		String found = c == END ? "the end of the file"
+				: c == '\n' || c == '\r' ? "the end of the line" : "'" + (char) c + "'";
+		return this.error(this.column, "expected " + expected + " but found " + found);
+	}
+
+	/*
+	 * Returns an exception with the given message about the given column of the
+	 * current line.
+	 */
+	private IOException error(int column, String message) {
+		return new IOException(this.file + ":" + this.line + ":" + column + ": " + message);
+	}
+
+	/*
+	 * Returns the next byte without consuming it, or END at the end of the file.
+	 */
+	private int peek() throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.buffer.clear();
+			int read;
+			do {
+				read = this.channel.read(this.buffer);
+			} while (read == 0);
+			this.buffer.flip();
+			if (read < 0) {
+				return END;
+			}
+		}
+		return this.buffer.get(this.buffer.position()) & 0xFF;
+	}
+
+	/*
+	 * Consumes and returns the next byte, or END at the end of the file.
+	 */
+	private int read() throws IOException {
+		int c = this.peek();
+		if (c != END) {
+			this.buffer.position(this.buffer.position() + 1);
+			this.column++;
+		}
+		return c;
+	}
+}
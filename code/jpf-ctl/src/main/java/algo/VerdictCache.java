@@ -0,0 +1,250 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package algo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent cache of verdicts on disk. A verdict tells whether a formula
+ * holds in the initial state of a model and, if not, gives a counterexample.
+ * Verdicts are stored under the fingerprint of the model, such as the key
+ * computed by {@link TransitionSystemCache#getKey}, and the canonical form of
+ * the formula, so that the same property of an unchanged model is checked
+ * only once.
+ *
+ * Each verdict is stored in its own file, named after a hash of the
+ * fingerprint and the formula. The cache is bounded by the total size of
+ * these files: when it grows beyond its maximum size, the least recently used
+ * verdicts are removed, where the last modification time of a file records
+ * when its verdict was last used (see CachedFiles). The directory is listed
+ * once; storing a verdict does not list it again. The numbers of hits and
+ * misses are counted.
+ */
+public class VerdictCache {
+	/**
+	 * The directory in which the verdicts are cached by default.
+	 */
+	public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".jpf-ctl", "verdicts");
+
+	/**
+	 * The maximum size, in bytes, of the verdicts cached by default.
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024 * 1024;
+
+	private static final String EXTENSION = ".verdict";
+	private static final String ALGORITHM = "SHA-256";
+
+	private final Path directory;
+	private final CachedFiles files;
+
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	/**
+	 * Initializes this cache with the given directory, which is created when the
+	 * first verdict is stored, and the given maximum size.
+	 *
+	 * @param directory   the directory in which the verdicts are cached
+	 * @param maximumSize the maximum total size, in bytes, of the cached verdicts
+	 */
+	public VerdictCache(Path directory, long maximumSize) {
+		this.directory = directory;
+		this.files = new CachedFiles(directory, EXTENSION, maximumSize);
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Returns the verdict stored for the given model and formula, or null if
+	 * there is no such verdict or it cannot be read.
+	 *
+	 * @param fingerprint the fingerprint of a model
+	 * @param formula     the canonical form of a formula
+	 * @return the verdict stored for the given model and formula, or null if there is none
+	 */
+	public Verdict get(String fingerprint, String formula) {
+		Path file = this.file(fingerprint, formula);
+		Verdict verdict = null;
+		if (Files.isRegularFile(file)) {
+			try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				// the fingerprint and formula are stored to rule out a collision of their hash
+				if (readString(input).equals(fingerprint) && readString(input).equals(formula)) {
+					verdict = new Verdict(input.readBoolean(), input.readBoolean() ? readString(input) : null);
+				}
+			} catch (IOException e) {
+				System.err.println("File: " + file + " could not be read: " + e);
+			}
+		}
+		if (verdict == null) {
+			this.misses.incrementAndGet();
+		} else {
+			this.hits.incrementAndGet();
+			this.files.used(file);
+		}
+		return verdict;
+	}
+
+	/**
+	 * Stores the given verdict for the given model and formula, and removes the
+	 * least recently used verdicts if the cache has grown too large.
+	 *
+	 * @param fingerprint the fingerprint of a model
+	 * @param formula     the canonical form of a formula
+	 * @param verdict     the verdict of the formula for the model
+	 * @throws IOException if the verdict cannot be stored
+	 */
+	public void put(String fingerprint, String formula, Verdict verdict) throws IOException {
+		Files.createDirectories(this.directory);
+		Path file = this.file(fingerprint, formula);
+		Path temporary = Files.createTempFile(this.directory, null, null);
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				writeString(output, fingerprint);
+				writeString(output, formula);
+				output.writeBoolean(verdict.holds());
+				output.writeBoolean(verdict.getCounterExample() != null);
+				if (verdict.getCounterExample() != null) {
+					writeString(output, verdict.getCounterExample());
+				}
+			}
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		this.files.stored(file);
+	}
+
+	/**
+	 * Returns the number of times a verdict was found in this cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Returns the number of times a verdict was not found in this cache.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/*
+	 * Returns the file in which the verdict for the given model and formula is
+	 * stored.
+	 */
+	private Path file(String fingerprint, String formula) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(formula.getBytes(StandardCharsets.UTF_8));
+		StringBuilder name = new StringBuilder();
+		for (byte b : digest.digest()) {
+			name.append(String.format("%02x", b));
+		}
+		return this.directory.resolve(name + EXTENSION);
+	}
+
+	/*
+	 * Writes the given string, which may be longer than writeUTF allows.
+	 */
+	private static void writeString(DataOutput output, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/*
+	 * Reads a string written by writeString.
+	 */
+	private static String readString(DataInput input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			throw new IOException("Negative length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Whether a formula holds in the initial state of a model and, if not, a
+	 * counterexample.
+	 */
+	public static class Verdict {
+		private final boolean holds;
+		private final String counterExample;
+
+		/**
+		 * Initializes this verdict.
+		 *
+		 * @param holds          whether the formula holds in the initial state
+		 * @param counterExample a counterexample if the formula does not hold, null otherwise
+		 */
+		public Verdict(boolean holds, String counterExample) {
+			this.holds = holds;
+			this.counterExample = counterExample;
+		}
+
+		/**
+		 * Tests whether the formula holds in the initial state.
+		 *
+		 * @return true if the formula holds in the initial state, false otherwise
+		 */
+		public boolean holds() {
+			return this.holds;
+		}
+
+		/**
+		 * Returns a counterexample if the formula does not hold, null otherwise.
+		 *
+		 * @return a counterexample, or null if the formula holds
+		 */
+		public String getCounterExample() {
+			return this.counterExample;
+		}
+	}
+}
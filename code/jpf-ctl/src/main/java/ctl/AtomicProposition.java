@@ -30,7 +30,7 @@ import java.util.Set;
  * @author Franck van Breugel
  */
 public class AtomicProposition extends Formula {
-	private String name;
+	private final String name;
 
 	/**
 	 * Initializes this CTL formula as an atomic proposition with the given name.
@@ -48,7 +48,9 @@ public class AtomicProposition extends Formula {
 
 	@Override
 	public boolean equals(Object object) {
-		if (object != null && this.getClass() == object.getClass()) {
+		if (object == this) {
+			return true;
+		} else if (object != null && this.getClass() == object.getClass()) {
 			AtomicProposition other = (AtomicProposition) object;
 			return this.name.equals(other.name);
 		} else {
@@ -69,7 +71,7 @@ public class AtomicProposition extends Formula {
 	}
 	
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		return this;
 	}
 }
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ctl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Translates formulas into a canonical form, so that formulas that differ only
+ * in the order of the operands of commutative operators, in the nesting of
+ * conjunctions and disjunctions, or in double negations have the same
+ * canonical form. In the canonical form
+ * <ul>
+ * <li>chains of conjunctions and disjunctions are flattened, their operands are
+ * sorted by a structural key, duplicates are removed, and the chain is rebuilt
+ * nested to the left,</li>
+ * <li>the operands of an equivalence are sorted, and</li>
+ * <li>double negations are removed.</li>
+ * </ul>
+ * Optionally, the temporal operators are translated into the existential
+ * normal form, which only contains EX, EU and EG: AX p becomes !EX !p, EF p
+ * becomes E[true U p], AG p becomes !E[true U !p], AF p becomes !EG !p, and
+ * A[p U q] becomes !E[!q U (!p && !q)] && !EG !q.
+ *
+ * The subformulas of a canonical form are in canonical form as well. The
+ * canonical forms are built by the FormulaFactory.
+ *
+ * The structural key of a formula is a 64 bit hash of its operator and the
+ * keys of its operands, computed once for each formula, so that sorting takes
+ * time independent of the size of the operands. It depends on the structure of
+ * the formula only, hence the canonical form is the same in every run. Only
+ * formulas that differ but have the same key are ordered by their textual
+ * representation.
+ */
+public class Canonicalizer {
+	private final boolean existentialNormalForm;
+
+	// the canonical form of the formulas that have been canonicalized, as long as they are in use
+	private final Map<Formula, WeakReference<Formula>> cache;
+
+	// the structural key of the formulas that have been sorted, as long as they are in use
+	private final Map<Formula, Long> keys;
+
+	// the keys of true, false and the atomic propositions, and the seed of the keys of the operators
+	private static final long TRUE_KEY = 0x9E3779B97F4A7C15L;
+	private static final long FALSE_KEY = 0xC2B2AE3D27D4EB4FL;
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	/**
+	 * Initializes this canonicalizer.
+	 *
+	 * @param existentialNormalForm whether the temporal operators are to be translated into EX, EU and EG
+	 */
+	public Canonicalizer(boolean existentialNormalForm) {
+		this.existentialNormalForm = existentialNormalForm;
+		this.cache = Collections.synchronizedMap(new WeakHashMap<Formula, WeakReference<Formula>>());
+		this.keys = Collections.synchronizedMap(new WeakHashMap<Formula, Long>());
+	}
+
+	/**
+	 * Returns the canonical form of the given formula. The formula is traversed
+	 * with an explicit stack, so its depth is not limited by the call stack.
+	 *
+	 * @param formula a formula
+	 * @return the canonical form of the given formula
+	 */
+	public Formula canonicalize(Formula formula) {
+		// the canonical form of each visited subformula; canonical forms are their own
+		Map<Formula, Formula> canonical = new IdentityHashMap<Formula, Formula>();
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Formula top = stack.peek();
+			if (this.lookup(top, canonical)) {
+				stack.pop();
+			} else {
+				boolean ready = true;
+				for (Formula operand : operands(top)) {
+					if (!this.lookup(operand, canonical)) {
+						stack.push(operand);
+						ready = false;
+					}
+				}
+				if (ready) {
+					stack.pop();
+					Formula result = this.translate(top, canonical);
+					canonical.put(top, result);
+					canonical.put(result, result);
+					this.cache.put(top, new WeakReference<Formula>(result));
+				}
+			}
+		}
+		return canonical.get(formula);
+	}
+
+	/*
+	 * Tests whether the canonical form of the given formula is known, in which
+	 * case it is added to the given map if it is not in there yet.
+	 */
+	private boolean lookup(Formula formula, Map<Formula, Formula> canonical) {
+		if (canonical.containsKey(formula)) {
+			return true;
+		}
+		WeakReference<Formula> reference = this.cache.get(formula);
+		Formula result = reference == null ? null : reference.get();
+		if (result == null) {
+			return false;
+		} else {
+			canonical.put(formula, result);
+			return true;
+		}
+	}
+
+	/*
+	 * Returns the formulas of which the canonical forms are needed to translate
+	 * the given formula: the operands of a chain of conjunctions or disjunctions,
+	 * and the immediate subformulas otherwise.
+	 */
+	private static List<Formula> operands(Formula formula) {
+		if (formula instanceof And || formula instanceof Or) {
+			List<Formula> operands = new ArrayList<Formula>();
+			Deque<Formula> chain = new ArrayDeque<Formula>();
+			chain.push(formula);
+			while (!chain.isEmpty()) {
+				Formula link = chain.pop();
+				if (link.getClass() == formula.getClass()) {
+					chain.addAll(Formulas.getSubformulas(link));
+				} else {
+					operands.add(link);
+				}
+			}
+			return operands;
+		} else {
+			return Formulas.getSubformulas(formula);
+		}
+	}
+
+	/*
+	 * Returns the canonical form of the given formula, given the canonical forms
+	 * of its operands.
+	 */
+	private Formula translate(Formula formula, Map<Formula, Formula> canonical) {
+		if (formula instanceof True) {
+			return FormulaFactory.trueFormula();
+		} else if (formula instanceof False) {
+			return FormulaFactory.falseFormula();
+		} else if (formula instanceof AtomicProposition) {
+			return FormulaFactory.intern(formula);
+		} else if (formula instanceof Not) {
+			return negate(canonical.get(((Not) formula).getFormula()));
+		} else if (formula instanceof And || formula instanceof Or) {
+			List<Formula> operands = new ArrayList<Formula>();
+			for (Formula operand : operands(formula)) {
+				operands.add(canonical.get(operand));
+			}
+			return chain(formula.getClass(), operands);
+		} else if (formula instanceof Implies) {
+			Implies implies = (Implies) formula;
+			return FormulaFactory.implies(canonical.get(implies.getLeft()), canonical.get(implies.getRight()));
+		} else if (formula instanceof Iff) {
+			Iff iff = (Iff) formula;
+			Formula left = canonical.get(iff.getLeft());
+			Formula right = canonical.get(iff.getRight());
+			if (this.compare(left, right) <= 0) {
+				return FormulaFactory.iff(left, right);
+			} else {
+				return FormulaFactory.iff(right, left);
+			}
+		} else if (formula instanceof ExistsNext) {
+			return FormulaFactory.existsNext(canonical.get(((ExistsNext) formula).getFormula()));
+		} else if (formula instanceof ExistsAlways) {
+			return FormulaFactory.existsAlways(canonical.get(((ExistsAlways) formula).getFormula()));
+		} else if (formula instanceof ExistsUntil) {
+			ExistsUntil until = (ExistsUntil) formula;
+			return FormulaFactory.existsUntil(canonical.get(until.getLeft()), canonical.get(until.getRight()));
+		} else if (formula instanceof ExistsEventually) {
+			Formula operand = canonical.get(((ExistsEventually) formula).getFormula());
+			if (this.existentialNormalForm) {
+				return FormulaFactory.existsUntil(FormulaFactory.trueFormula(), operand);
+			} else {
+				return FormulaFactory.existsEventually(operand);
+			}
+		} else if (formula instanceof ForAllNext) {
+			Formula operand = canonical.get(((ForAllNext) formula).getFormula());
+			if (this.existentialNormalForm) {
+				return negate(FormulaFactory.existsNext(negate(operand)));
+			} else {
+				return FormulaFactory.forAllNext(operand);
+			}
+		} else if (formula instanceof ForAllAlways) {
+			Formula operand = canonical.get(((ForAllAlways) formula).getFormula());
+			if (this.existentialNormalForm) {
+				return negate(FormulaFactory.existsUntil(FormulaFactory.trueFormula(), negate(operand)));
+			} else {
+				return FormulaFactory.forAllAlways(operand);
+			}
+		} else if (formula instanceof ForAllEventually) {
+			Formula operand = canonical.get(((ForAllEventually) formula).getFormula());
+			if (this.existentialNormalForm) {
+				return negate(FormulaFactory.existsAlways(negate(operand)));
+			} else {
+				return FormulaFactory.forAllEventually(operand);
+			}
+		} else if (formula instanceof ForAllUntil) {
+			ForAllUntil until = (ForAllUntil) formula;
+			Formula left = canonical.get(until.getLeft());
+			Formula right = canonical.get(until.getRight());
+			if (this.existentialNormalForm) {
+				Formula neither = chain(And.class, Arrays.asList(negate(left), negate(right)));
+				Formula never = negate(FormulaFactory.existsUntil(negate(right), neither));
+				Formula always = negate(FormulaFactory.existsAlways(negate(right)));
+				return chain(And.class, Arrays.asList(never, always));
+			} else {
+				return FormulaFactory.forAllUntil(left, right);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown formula: " + formula);
+		}
+	}
+
+	/*
+	 * Returns the canonical conjunction or disjunction of the given canonical
+	 * formulas.
+	 */
+	private Formula chain(Class<? extends Formula> operator, List<Formula> operands) {
+		List<Formula> flattened = new ArrayList<Formula>();
+		for (Formula operand : operands) {
+			flatten(operator, operand, flattened);
+		}
+		Formula result = null;
+		for (Formula operand : this.sort(flattened)) {
+			if (result == null) {
+				result = operand;
+			} else if (operator == And.class) {
+				result = FormulaFactory.and(result, operand);
+			} else {
+				result = FormulaFactory.or(result, operand);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the negation of the given formula in canonical form, without
+	 * introducing a double negation.
+	 */
+	private static Formula negate(Formula formula) {
+		if (formula instanceof Not) {
+			return ((Not) formula).getFormula();
+		} else {
+			return FormulaFactory.not(formula);
+		}
+	}
+
+	/*
+	 * Adds the operands of the given formula, which is canonical, to the given
+	 * list, if it is a chain of the given operator, and the formula itself
+	 * otherwise.
+	 */
+	private static void flatten(Class<? extends Formula> operator, Formula formula, List<Formula> operands) {
+		while (formula.getClass() == operator) {
+			// a canonical chain is nested to the left
+			if (operator == And.class) {
+				operands.add(((And) formula).getRight());
+				formula = ((And) formula).getLeft();
+			} else {
+				operands.add(((Or) formula).getRight());
+				formula = ((Or) formula).getLeft();
+			}
+		}
+		operands.add(formula);
+	}
+
+	/*
+	 * Sorts the given formulas by their structural key and removes duplicates.
+	 */
+	private List<Formula> sort(List<Formula> formulas) {
+		formulas.sort(this::compare);
+		List<Formula> sorted = new ArrayList<Formula>();
+		for (Formula formula : formulas) {
+			if (sorted.isEmpty() || !sorted.get(sorted.size() - 1).equals(formula)) {
+				sorted.add(formula);
+			}
+		}
+		return sorted;
+	}
+
+	/*
+	 * Compares the given formulas by their structural key, and by their textual
+	 * representation if they differ but their keys are the same.
+	 */
+	private int compare(Formula left, Formula right) {
+		if (left == right) {
+			return 0;
+		}
+		int comparison = Long.compare(this.key(left), this.key(right));
+		if (comparison == 0 && !left.equals(right)) {
+			comparison = left.toString().compareTo(right.toString());
+		}
+		return comparison;
+	}
+
+	/*
+	 * Returns the structural key of the given formula. The keys of its
+	 * subformulas that are not known yet are computed with an explicit stack.
+	 */
+	private long key(Formula formula) {
+		Long known = this.keys.get(formula);
+		if (known != null) {
+			return known;
+		}
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Formula top = stack.peek();
+			if (this.keys.containsKey(top)) {
+				stack.pop();
+			} else {
+				boolean ready = true;
+				for (Formula operand : Formulas.getSubformulas(top)) {
+					if (!this.keys.containsKey(operand)) {
+						stack.push(operand);
+						ready = false;
+					}
+				}
+				if (ready) {
+					stack.pop();
+					this.keys.put(top, this.combine(top));
+				}
+			}
+		}
+		return this.keys.get(formula);
+	}
+
+	/*
+	 * Returns the structural key of the given formula, given the keys of its
+	 * operands.
+	 */
+	private long combine(Formula formula) {
+		if (formula instanceof True) {
+			return TRUE_KEY;
+		} else if (formula instanceof False) {
+			return FALSE_KEY;
+		} else if (formula instanceof AtomicProposition) {
+			return mix(fnv(formula.toString()));
+		} else {
+			long key = fnv(formula.getClass().getSimpleName());
+			for (Formula operand : Formulas.getSubformulas(formula)) {
+				key = mix(key * FNV_PRIME + this.keys.get(operand));
+			}
+			return key;
+		}
+	}
+
+	/*
+	 * Returns the 64 bit FNV-1a hash of the characters of the given text.
+	 */
+	private static long fnv(String text) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < text.length(); i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/*
+	 * Spreads the bits of the given value (the finalizer of SplitMix64).
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
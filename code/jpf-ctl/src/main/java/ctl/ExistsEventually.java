@@ -30,7 +30,8 @@ import java.util.Set;
  * @author Anto Nanah Ji
  */
 public class ExistsEventually extends Formula {
-	private Formula formula;
+	private final Formula formula;
+	private final int hashCode;
 
 	/**
 	 * Initializes this CTL formula as the exists eventually of the given formula.
@@ -39,21 +40,24 @@ public class ExistsEventually extends Formula {
 	 */
 	public ExistsEventually(Formula formula) {
 		this.formula = formula;
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + formula.hashCode();
+		this.hashCode = result;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + this.formula.hashCode();
-		return result;
+		return this.hashCode;
 	}
 
 	@Override
 	public boolean equals(Object object) {
-		if (object != null && this.getClass() == object.getClass()) {
+		if (object == this) {
+			return true;
+		} else if (object != null && this.getClass() == object.getClass()) {
 			ExistsEventually other = (ExistsEventually) object;
-			return this.formula.equals(other.formula);
+			return this.hashCode == other.hashCode && Formulas.equals(this, other);
 		} else {
 			return false;
 		}
@@ -61,7 +65,7 @@ public class ExistsEventually extends Formula {
 
 	@Override
 	public String toString() {
-		return "EF " + this.formula;
+		return Formulas.toString(this);
 	}
 
 	/**
@@ -75,18 +79,26 @@ public class ExistsEventually extends Formula {
 	
 	@Override
 	public Set<String> getAtomicPropositions() {
-		return this.formula.getAtomicPropositions();
+		return Formulas.getAtomicPropositions(this);
 	}
 	
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		Formula formula = this.formula.simplify();
 		if (formula instanceof True) {
-			return new True();
+			return FormulaFactory.trueFormula();
 		} else if (formula instanceof False) {
-			return new False();
+			return FormulaFactory.falseFormula();
+		} else if (formula instanceof ExistsEventually) { // EF EF p = EF p
+			return formula;
+		} else if (formula instanceof ForAllEventually) { // EF AF p = EF p
+			return FormulaFactory.existsEventually(((ForAllEventually) formula).getFormula()).simplify();
+		} else if (formula instanceof ExistsUntil) { // EF E[p U q] = EF q
+			return FormulaFactory.existsEventually(((ExistsUntil) formula).getRight()).simplify();
+		} else if (formula instanceof ForAllUntil) { // EF A[p U q] = EF q
+			return FormulaFactory.existsEventually(((ForAllUntil) formula).getRight()).simplify();
 		} else {
-			return new ExistsEventually(formula);
+			return FormulaFactory.existsEventually(formula);
 		}
 	}
 }
\ No newline at end of file
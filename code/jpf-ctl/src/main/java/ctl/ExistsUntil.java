@@ -17,7 +17,6 @@
 
 package ctl;
 
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -31,8 +30,9 @@ import java.util.Set;
  * @author Anto Nanah Ji
  */
 public class ExistsUntil extends Formula {
-	private Formula left;
-	private Formula right;
+	private final Formula left;
+	private final Formula right;
+	private final int hashCode;
 
 	/**
 	 * Initializes this CTL formula as the exists until of the given {@code left} and {@code right} subformulas.
@@ -43,22 +43,25 @@ public class ExistsUntil extends Formula {
 	public ExistsUntil(Formula left, Formula right) {
 		this.left = left;
 		this.right = right;
+		final int prime = 31;
+		int hashCode = 1;
+		hashCode = prime * hashCode + left.hashCode();
+		hashCode = prime * hashCode + right.hashCode();
+		this.hashCode = hashCode;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int hashCode = 1;
-		hashCode = prime * hashCode + this.left.hashCode();
-		hashCode = prime * hashCode + this.right.hashCode();
-		return hashCode;
+		return this.hashCode;
 	}
 
 	@Override
 	public boolean equals(Object object) {
-		if (object != null && this.getClass() == object.getClass()) {
+		if (object == this) {
+			return true;
+		} else if (object != null && this.getClass() == object.getClass()) {
 			ExistsUntil other = (ExistsUntil) object;
-			return this.left.equals(other.left) && this.right.equals(other.right);
+			return this.hashCode == other.hashCode && Formulas.equals(this, other);
 		} else {
 			return false;
 		}
@@ -66,7 +69,7 @@ public class ExistsUntil extends Formula {
 
 	@Override
 	public String toString() {
-		return "(" + this.left + " EU " + this.right + ")";
+		return Formulas.toString(this);
 	}
 
 	/**
@@ -89,22 +92,23 @@ public class ExistsUntil extends Formula {
 	
 	@Override
 	public Set<String> getAtomicPropositions() {
-		Set<String> set = new HashSet<String>();
-		set.addAll(this.left.getAtomicPropositions());
-		set.addAll(this.right.getAtomicPropositions());
-		return set;
+		return Formulas.getAtomicPropositions(this);
 	}
 	
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		Formula left = this.left.simplify();
 		Formula right = this.right.simplify();
 		if (right instanceof True) {
-			return new True();
+			return FormulaFactory.trueFormula();
 		} else if (right instanceof False) {
-			return new False();
+			return FormulaFactory.falseFormula();
+		} else if (left instanceof False || entails(left, right)) { // E[false U q] = q, E[p U q] = q if p implies q
+			return right;
+		} else if (left instanceof True) { // E[true U q] = EF q
+			return FormulaFactory.existsEventually(right).simplify();
 		} else {
-			return new ExistsUntil(left, right);
+			return FormulaFactory.existsUntil(left, right);
 		}
 	}
 }
@@ -57,7 +57,7 @@ public class False extends Formula {
 	}
 
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		return this;
 	}
 }
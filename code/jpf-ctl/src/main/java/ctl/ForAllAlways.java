@@ -30,7 +30,8 @@ import java.util.Set;
  * @author Anto Nanah Ji
  */
 public class ForAllAlways extends Formula {
-	private Formula formula;
+	private final Formula formula;
+	private final int hashCode;
 
 	/**
 	 * Initializes this CTL formula as the for all always of the given formula.
@@ -39,21 +40,24 @@ public class ForAllAlways extends Formula {
 	 */
 	public ForAllAlways(Formula formula) {
 		this.formula = formula;
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + formula.hashCode();
+		this.hashCode = result;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + this.formula.hashCode();
-		return result;
+		return this.hashCode;
 	}
 
 	@Override
 	public boolean equals(Object object) {
-		if (object != null && this.getClass() == object.getClass()) {
+		if (object == this) {
+			return true;
+		} else if (object != null && this.getClass() == object.getClass()) {
 			ForAllAlways other = (ForAllAlways) object;
-			return this.formula.equals(other.formula);
+			return this.hashCode == other.hashCode && Formulas.equals(this, other);
 		} else {
 			return false;
 		}
@@ -61,7 +65,7 @@ public class ForAllAlways extends Formula {
 
 	@Override
 	public String toString() {
-		return "AG " + this.formula;
+		return Formulas.toString(this);
 	}
 
 	/**
@@ -75,18 +79,20 @@ public class ForAllAlways extends Formula {
 	
 	@Override
 	public Set<String> getAtomicPropositions() {
-		return this.formula.getAtomicPropositions();
+		return Formulas.getAtomicPropositions(this);
 	}
 	
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		Formula formula = this.formula.simplify();
 		if (formula instanceof True) {
-			return new True();
+			return FormulaFactory.trueFormula();
 		} else if (formula instanceof False) {
-			return new False();
+			return FormulaFactory.falseFormula();
+		} else if (formula instanceof ForAllAlways) { // AG AG p = AG p
+			return formula;
 		} else {
-			return new ForAllAlways(formula);
+			return FormulaFactory.forAllAlways(formula);
 		}
 	}
 }
\ No newline at end of file
@@ -30,7 +30,8 @@ import java.util.Set;
  * @author Anto Nanah Ji
  */
 public class ForAllNext extends Formula {
-	private Formula formula;
+	private final Formula formula;
+	private final int hashCode;
 
 	/**
 	 * Initializes this CTL formula as the for all next of the given formula.
@@ -39,21 +40,24 @@ public class ForAllNext extends Formula {
 	 */
 	public ForAllNext(Formula formula) {
 		this.formula = formula;
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + formula.hashCode();
+		this.hashCode = result;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + this.formula.hashCode();
-		return result;
+		return this.hashCode;
 	}
 
 	@Override
 	public boolean equals(Object object) {
-		if (object != null && this.getClass() == object.getClass()) {
+		if (object == this) {
+			return true;
+		} else if (object != null && this.getClass() == object.getClass()) {
 			ForAllNext other = (ForAllNext) object;
-			return this.formula.equals(other.formula);
+			return this.hashCode == other.hashCode && Formulas.equals(this, other);
 		} else {
 			return false;
 		}
@@ -61,7 +65,7 @@ public class ForAllNext extends Formula {
 
 	@Override
 	public String toString() {
-		return "AX " + this.formula;
+		return Formulas.toString(this);
 	}
 
 	/**
@@ -75,16 +79,16 @@ public class ForAllNext extends Formula {
 	
 	@Override
 	public Set<String> getAtomicPropositions() {
-		return this.formula.getAtomicPropositions();
+		return Formulas.getAtomicPropositions(this);
 	}
 	
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		Formula formula = this.formula.simplify();
 		if (formula instanceof True) {
-			return new True();
+			return FormulaFactory.trueFormula();
 		} else {
-			return new ForAllNext(formula);
+			return FormulaFactory.forAllNext(formula);
 		}
 	}
 }
\ No newline at end of file
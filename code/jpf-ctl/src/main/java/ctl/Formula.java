@@ -17,6 +17,9 @@
 
 package ctl;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
 
@@ -31,6 +34,9 @@ import java.util.Set;
  */
 public abstract class Formula {
 	private static final Random RANDOM = new Random();
+
+	// the simplified form of this formula, or null if it has not been computed yet
+	private Formula simplified;
 	
 	/**
 	 * Returns a random formula of at most the given depth.
@@ -46,50 +52,50 @@ public abstract class Formula {
 		if (depth == 0) {
 			switch (RANDOM.nextInt(BASE_CASES)) {
 			case 0 :
-				return new True();
+				return FormulaFactory.trueFormula();
 			case 1 :
-				return new False();
+				return FormulaFactory.falseFormula();
 			case 2 :
 				String name = "algo.Fields.p" + RANDOM.nextInt(MAX_INDEX + 1);
-				return new AtomicProposition(name);
+				return FormulaFactory.atomicProposition(name);
 			default :
 				throw new IllegalArgumentException("Illegal argument for switch in base case");
 			}
 		} else {
 			switch (RANDOM.nextInt(BASE_CASES + INDUCTIVE_CASES)) {
 			case 0 :
-				return new True();
+				return FormulaFactory.trueFormula();
 			case 1 :
-				return new False();
+				return FormulaFactory.falseFormula();
 			case 2 :
 				String name = "C.f" + RANDOM.nextInt(MAX_INDEX + 1);
-				return new AtomicProposition(name);
+				return FormulaFactory.atomicProposition(name);
 			case 3 :
-				return new Not(Formula.random(depth - 1));
+				return FormulaFactory.not(Formula.random(depth - 1));
 			case 4: 
-				return new And(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.and(Formula.random(depth - 1), Formula.random(depth - 1));
 			case 5 :
-				return new Or(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.or(Formula.random(depth - 1), Formula.random(depth - 1));
 			case 6 :
-				return new Implies(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.implies(Formula.random(depth - 1), Formula.random(depth - 1));
 			case 7 :
-				return new Iff(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.iff(Formula.random(depth - 1), Formula.random(depth - 1));
 			case 8 :
-				return new ExistsAlways(Formula.random(depth - 1));
+				return FormulaFactory.existsAlways(Formula.random(depth - 1));
 			case 9 :
-				return new ForAllAlways(Formula.random(depth - 1));
+				return FormulaFactory.forAllAlways(Formula.random(depth - 1));
 			case 10 :
-				return new ExistsEventually(Formula.random(depth - 1));
+				return FormulaFactory.existsEventually(Formula.random(depth - 1));
 			case 11 :
-				return new ForAllEventually(Formula.random(depth - 1));
+				return FormulaFactory.forAllEventually(Formula.random(depth - 1));
 			case 12 :
-				return new ExistsNext(Formula.random(depth - 1));
+				return FormulaFactory.existsNext(Formula.random(depth - 1));
 			case 13 :
-				return new ForAllNext(Formula.random(depth - 1));
+				return FormulaFactory.forAllNext(Formula.random(depth - 1));
 			case 14 :
-				return new ExistsUntil(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.existsUntil(Formula.random(depth - 1), Formula.random(depth - 1));
 			case 15 :
-				return new ForAllUntil(Formula.random(depth - 1), Formula.random(depth - 1));
+				return FormulaFactory.forAllUntil(Formula.random(depth - 1), Formula.random(depth - 1));
 			default :
 				throw new IllegalArgumentException("Illegal argument for switch in inductive case");
 			}
@@ -137,9 +143,111 @@ public abstract class Formula {
 	public abstract Set<String> getAtomicPropositions();
 	
 	/**
-	 * Returns a simplified formula that is equivalent to this formula.
+	 * Returns a simplified formula that is equivalent to this formula. The
+	 * simplified formula is computed once and is built by the FormulaFactory, so
+	 * that the subformulas shared by formulas built by the factory are simplified
+	 * only once. The subformulas are simplified bottom up, without recursion.
 	 * 
 	 * @return a simplified formula that is equivalent to this formula
 	 */
-	public abstract Formula simplify();
+	public final Formula simplify() {
+		// simplify the subformulas first, so that the rewrite rules find them simplified
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			Formula formula = stack.peek();
+			if (formula.simplified != null) {
+				stack.pop();
+			} else {
+				boolean simplified = true;
+				for (Formula subformula : Formulas.getSubformulas(formula)) {
+					if (subformula.simplified == null) {
+						stack.push(subformula);
+						simplified = false;
+					}
+				}
+				if (simplified) {
+					stack.pop();
+					Formula result = FormulaFactory.intern(formula.rewrite());
+					// a simplified formula cannot be simplified any further
+					if (result.simplified == null) {
+						result.simplified = result;
+					}
+					formula.simplified = result;
+				}
+			}
+		}
+		return this.simplified;
+	}
+
+	/**
+	 * Returns a formula that is equivalent to this formula, obtained by
+	 * simplifying the subformulas of this formula and applying the rewrite
+	 * rules of its operator to the result.
+	 * 
+	 * @return a simplified formula that is equivalent to this formula
+	 */
+	protected abstract Formula rewrite();
+
+	// the largest number of subformulas of each side considered by entails
+	private static final int ENTAILMENT_LIMIT = 64;
+
+	/*
+	 * Tests whether the first formula implies the second one, that is, each state
+	 * that satisfies the first formula satisfies the second one. Only implications
+	 * that follow from the structure of the formulas are found, and only a
+	 * bounded number of subformulas is considered, so false may be returned even
+	 * if the first formula implies the second one.
+	 */
+	static boolean entails(Formula premise, Formula conclusion) {
+		// the formulas implied by the premise: its conjuncts, and p for AG p and EG p
+		Set<Formula> premises = new HashSet<Formula>();
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(premise);
+		while (!stack.isEmpty() && premises.size() < ENTAILMENT_LIMIT) {
+			Formula formula = stack.pop();
+			if (formula instanceof False) {
+				return true;
+			} else if (premises.add(formula)) {
+				if (formula instanceof And) {
+					stack.push(((And) formula).getRight());
+					stack.push(((And) formula).getLeft());
+				} else if (formula instanceof ForAllAlways) {
+					stack.push(((ForAllAlways) formula).getFormula());
+				} else if (formula instanceof ExistsAlways) {
+					stack.push(((ExistsAlways) formula).getFormula());
+				}
+			}
+		}
+
+		// the formulas that imply the conclusion: its disjuncts, and q for EF q, AF q, E[p U q] and A[p U q]
+		stack.clear();
+		stack.push(conclusion);
+		for (int visited = 0; !stack.isEmpty() && visited < ENTAILMENT_LIMIT; visited++) {
+			Formula formula = stack.pop();
+			if (formula instanceof True || premises.contains(formula)) {
+				return true;
+			} else if (formula instanceof Or) {
+				stack.push(((Or) formula).getRight());
+				stack.push(((Or) formula).getLeft());
+			} else if (formula instanceof ExistsEventually) {
+				stack.push(((ExistsEventually) formula).getFormula());
+			} else if (formula instanceof ForAllEventually) {
+				stack.push(((ForAllEventually) formula).getFormula());
+			} else if (formula instanceof ExistsUntil) {
+				stack.push(((ExistsUntil) formula).getRight());
+			} else if (formula instanceof ForAllUntil) {
+				stack.push(((ForAllUntil) formula).getRight());
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Tests whether one of the given formulas is the negation of the other.
+	 */
+	static boolean complementary(Formula left, Formula right) {
+		return (left instanceof Not && ((Not) left).getFormula().equals(right))
+				|| (right instanceof Not && ((Not) right).getFormula().equals(left));
+	}
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ctl;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Creates formulas that are hash-consed: as long as a formula created by this
+ * factory is in use, creating an equal formula returns the same object. Hence,
+ * formulas built by this factory share their common subformulas and equal
+ * subformulas can be compared by reference. Since formulas cache their hash
+ * code, interning a formula whose subformulas have been interned takes
+ * constant time. Formulas that are no longer in use are discarded.
+ */
+public class FormulaFactory {
+	// each formula in use, mapped to itself
+	private static final Map<Formula, WeakReference<Formula>> FORMULAS = new WeakHashMap<Formula, WeakReference<Formula>>();
+
+	private FormulaFactory() {}
+
+	/**
+	 * Returns the formula equal to the given one that has been created by this
+	 * factory, or the given formula if there is no such formula.
+	 *
+	 * @param formula a formula
+	 * @return the unique formula in use that is equal to the given formula
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <T extends Formula> T intern(T formula) {
+		WeakReference<Formula> reference = FORMULAS.get(formula);
+		Formula interned = reference == null ? null : reference.get();
+		if (interned == null) {
+			FORMULAS.put(formula, new WeakReference<Formula>(formula));
+			interned = formula;
+		}
+		return (T) interned;
+	}
+
+	/**
+	 * Returns the formula true.
+	 *
+	 * @return the formula true
+	 */
+	public static True trueFormula() {
+		return intern(new True());
+	}
+
+	/**
+	 * Returns the formula false.
+	 *
+	 * @return the formula false
+	 */
+	public static False falseFormula() {
+		return intern(new False());
+	}
+
+	/**
+	 * Returns the atomic proposition with the given name.
+	 *
+	 * @param name the name of the atomic proposition
+	 * @return the atomic proposition with the given name
+	 */
+	public static AtomicProposition atomicProposition(String name) {
+		return intern(new AtomicProposition(name));
+	}
+
+	/**
+	 * Returns the negation of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the negation of the given formula
+	 */
+	public static Not not(Formula formula) {
+		return intern(new Not(formula));
+	}
+
+	/**
+	 * Returns the conjunction of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the conjunction of the given formulas
+	 */
+	public static And and(Formula left, Formula right) {
+		return intern(new And(left, right));
+	}
+
+	/**
+	 * Returns the disjunction of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the disjunction of the given formulas
+	 */
+	public static Or or(Formula left, Formula right) {
+		return intern(new Or(left, right));
+	}
+
+	/**
+	 * Returns the implication of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the implication of the given formulas
+	 */
+	public static Implies implies(Formula left, Formula right) {
+		return intern(new Implies(left, right));
+	}
+
+	/**
+	 * Returns the equivalence of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the equivalence of the given formulas
+	 */
+	public static Iff iff(Formula left, Formula right) {
+		return intern(new Iff(left, right));
+	}
+
+	/**
+	 * Returns the exists always of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the exists always of the given formula
+	 */
+	public static ExistsAlways existsAlways(Formula formula) {
+		return intern(new ExistsAlways(formula));
+	}
+
+	/**
+	 * Returns the exists eventually of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the exists eventually of the given formula
+	 */
+	public static ExistsEventually existsEventually(Formula formula) {
+		return intern(new ExistsEventually(formula));
+	}
+
+	/**
+	 * Returns the exists next of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the exists next of the given formula
+	 */
+	public static ExistsNext existsNext(Formula formula) {
+		return intern(new ExistsNext(formula));
+	}
+
+	/**
+	 * Returns the exists until of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the exists until of the given formulas
+	 */
+	public static ExistsUntil existsUntil(Formula left, Formula right) {
+		return intern(new ExistsUntil(left, right));
+	}
+
+	/**
+	 * Returns the for all always of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the for all always of the given formula
+	 */
+	public static ForAllAlways forAllAlways(Formula formula) {
+		return intern(new ForAllAlways(formula));
+	}
+
+	/**
+	 * Returns the for all eventually of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the for all eventually of the given formula
+	 */
+	public static ForAllEventually forAllEventually(Formula formula) {
+		return intern(new ForAllEventually(formula));
+	}
+
+	/**
+	 * Returns the for all next of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the for all next of the given formula
+	 */
+	public static ForAllNext forAllNext(Formula formula) {
+		return intern(new ForAllNext(formula));
+	}
+
+	/**
+	 * Returns the for all until of the given formulas.
+	 *
+	 * @param left the left subformula
+	 * @param right the right subformula
+	 * @return the for all until of the given formulas
+	 */
+	public static ForAllUntil forAllUntil(Formula left, Formula right) {
+		return intern(new ForAllUntil(left, right));
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ctl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Traversals of formulas that use an explicit stack rather than recursion, so
+ * that the depth of a formula is not limited by the size of the call stack.
+ */
+public class Formulas {
+
+	private Formulas() {}
+
+	/**
+	 * Returns the immediate subformulas of the given formula, from left to right.
+	 *
+	 * @param formula a formula
+	 * @return the immediate subformulas of the given formula
+	 */
+	public static List<Formula> getSubformulas(Formula formula) {
+		if (formula instanceof Not) {
+			return Collections.singletonList(((Not) formula).getFormula());
+		} else if (formula instanceof And) {
+			return pair(((And) formula).getLeft(), ((And) formula).getRight());
+		} else if (formula instanceof Or) {
+			return pair(((Or) formula).getLeft(), ((Or) formula).getRight());
+		} else if (formula instanceof Implies) {
+			return pair(((Implies) formula).getLeft(), ((Implies) formula).getRight());
+		} else if (formula instanceof Iff) {
+			return pair(((Iff) formula).getLeft(), ((Iff) formula).getRight());
+		} else if (formula instanceof ExistsAlways) {
+			return Collections.singletonList(((ExistsAlways) formula).getFormula());
+		} else if (formula instanceof ExistsEventually) {
+			return Collections.singletonList(((ExistsEventually) formula).getFormula());
+		} else if (formula instanceof ExistsNext) {
+			return Collections.singletonList(((ExistsNext) formula).getFormula());
+		} else if (formula instanceof ExistsUntil) {
+			return pair(((ExistsUntil) formula).getLeft(), ((ExistsUntil) formula).getRight());
+		} else if (formula instanceof ForAllAlways) {
+			return Collections.singletonList(((ForAllAlways) formula).getFormula());
+		} else if (formula instanceof ForAllEventually) {
+			return Collections.singletonList(((ForAllEventually) formula).getFormula());
+		} else if (formula instanceof ForAllNext) {
+			return Collections.singletonList(((ForAllNext) formula).getFormula());
+		} else if (formula instanceof ForAllUntil) {
+			return pair(((ForAllUntil) formula).getLeft(), ((ForAllUntil) formula).getRight());
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
+	private static List<Formula> pair(Formula left, Formula right) {
+		List<Formula> pair = new ArrayList<Formula>(2);
+		pair.add(left);
+		pair.add(right);
+		return pair;
+	}
+
+	/**
+	 * Returns the subformulas of the given formula, including the formula
+	 * itself, each subformula after its own subformulas. A subformula that occurs
+	 * several times, as the same object, is returned once.
+	 *
+	 * @param formula a formula
+	 * @return the subformulas of the given formula in post-order
+	 */
+	public static List<Formula> postOrder(Formula formula) {
+		List<Formula> order = new ArrayList<Formula>();
+		Set<Formula> visited = Collections.newSetFromMap(new IdentityHashMap<Formula, Boolean>());
+		// each formula on the stack is followed by whether its subformulas have been pushed
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		Deque<Boolean> expanded = new ArrayDeque<Boolean>();
+		stack.push(formula);
+		expanded.push(false);
+		while (!stack.isEmpty()) {
+			Formula top = stack.pop();
+			if (expanded.pop()) {
+				order.add(top);
+			} else if (visited.add(top)) {
+				stack.push(top);
+				expanded.push(true);
+				List<Formula> subformulas = getSubformulas(top);
+				for (int i = subformulas.size() - 1; i >= 0; i--) {
+					stack.push(subformulas.get(i));
+					expanded.push(false);
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the height of each subformula of the given formula: atomic
+	 * propositions and constants have height 0 and any other formula is one
+	 * higher than its highest immediate subformula.
+	 *
+	 * @param formula a formula
+	 * @return the height of each subformula, by identity
+	 */
+	public static Map<Formula, Integer> getHeights(Formula formula) {
+		Map<Formula, Integer> heights = new IdentityHashMap<Formula, Integer>();
+		for (Formula subformula : postOrder(formula)) {
+			int height = 0;
+			for (Formula operand : getSubformulas(subformula)) {
+				height = Math.max(height, heights.get(operand) + 1);
+			}
+			heights.put(subformula, height);
+		}
+		return heights;
+	}
+
+	/**
+	 * Returns the names of the atomic propositions of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the set of names of the atomic propositions of the given formula
+	 */
+	public static Set<String> getAtomicPropositions(Formula formula) {
+		Set<String> names = new HashSet<String>();
+		for (Formula subformula : postOrder(formula)) {
+			if (subformula instanceof AtomicProposition) {
+				names.add(subformula.toString());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Tests whether the given formulas are structurally equal.
+	 *
+	 * @param formula a formula
+	 * @param other   another formula
+	 * @return true if the given formulas are equal, false otherwise
+	 */
+	public static boolean equals(Formula formula, Formula other) {
+		Deque<Formula> left = new ArrayDeque<Formula>();
+		Deque<Formula> right = new ArrayDeque<Formula>();
+		left.push(formula);
+		right.push(other);
+		while (!left.isEmpty()) {
+			Formula first = left.pop();
+			Formula second = right.pop();
+			if (first != second) {
+				if (first.getClass() != second.getClass() || first.hashCode() != second.hashCode()) {
+					return false;
+				} else if (first instanceof AtomicProposition && !first.toString().equals(second.toString())) {
+					return false;
+				}
+				left.addAll(getSubformulas(first));
+				right.addAll(getSubformulas(second));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the string representation of the given formula.
+	 *
+	 * @param formula a formula
+	 * @return the string representation of the given formula
+	 */
+	public static String toString(Formula formula) {
+		StringBuilder builder = new StringBuilder();
+		// a formula or a piece of text
+		Deque<Object> stack = new ArrayDeque<Object>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Object top = stack.pop();
+			if (top instanceof String) {
+				builder.append((String) top);
+			} else {
+				Formula subformula = (Formula) top;
+				String operator = operator(subformula);
+				List<Formula> subformulas = getSubformulas(subformula);
+				if (subformulas.isEmpty()) {
+					builder.append(subformula.toString());
+				} else if (subformulas.size() == 1) {
+					stack.push(subformulas.get(0));
+					stack.push(operator + " ");
+				} else {
+					stack.push(")");
+					stack.push(subformulas.get(1));
+					stack.push(" " + operator + " ");
+					stack.push(subformulas.get(0));
+					stack.push("(");
+				}
+			}
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * Returns the operator of the given formula as it is written, or null if it
+	 * has none.
+	 */
+	private static String operator(Formula formula) {
+		if (formula instanceof Not) {
+			return "!";
+		} else if (formula instanceof And) {
+			return "&&";
+		} else if (formula instanceof Or) {
+			return "||";
+		} else if (formula instanceof Implies) {
+			return "->";
+		} else if (formula instanceof Iff) {
+			return "<->";
+		} else if (formula instanceof ExistsAlways) {
+			return "EG";
+		} else if (formula instanceof ExistsEventually) {
+			return "EF";
+		} else if (formula instanceof ExistsNext) {
+			return "EX";
+		} else if (formula instanceof ExistsUntil) {
+			return "EU";
+		} else if (formula instanceof ForAllAlways) {
+			return "AG";
+		} else if (formula instanceof ForAllEventually) {
+			return "AF";
+		} else if (formula instanceof ForAllNext) {
+			return "AX";
+		} else if (formula instanceof ForAllUntil) {
+			return "AU";
+		} else {
+			return null;
+		}
+	}
+}
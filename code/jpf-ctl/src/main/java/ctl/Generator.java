@@ -17,6 +17,13 @@
 
 package ctl;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.ctl.CTLBaseVisitor;
 import org.ctl.CTLParser.AndContext;
 import org.ctl.CTLParser.AtomicPropositionContext;
@@ -26,6 +33,7 @@ import org.ctl.CTLParser.ExistsEventuallyContext;
 import org.ctl.CTLParser.ExistsNextContext;
 import org.ctl.CTLParser.ExistsUntilContext;
 import org.ctl.CTLParser.FalseContext;
+import org.ctl.CTLParser.FormulaContext;
 import org.ctl.CTLParser.ForAllAlwaysContext;
 import org.ctl.CTLParser.ForAllEventuallyContext;
 import org.ctl.CTLParser.ForAllNextContext;
@@ -48,6 +56,51 @@ import org.ctl.CTLParser.TrueContext;
  * @author Hongru Wang
  */
 public class Generator extends CTLBaseVisitor<Formula> {
+
+	// the abstract syntax trees of the nodes of the parse tree that have been visited
+	private final Map<ParseTree, Formula> formulas = new IdentityHashMap<ParseTree, Formula>();
+
+	/**
+	 * Visits the given node in the parse tree and returns the abstract syntax tree
+	 * corresponding to the subtree of the parse tree rooted at that node. The
+	 * subtree is visited bottom up with an explicit stack, so that when a node is
+	 * visited the abstract syntax trees of its children are available, and the
+	 * depth of the parse tree is not limited by the size of the call stack.
+	 * 
+	 * @param tree a node in the parse tree
+	 * @return the abstract syntax tree corresponding to the subtree of the parse tree rooted at the given node
+	 */
+	@Override
+	public Formula visit(ParseTree tree) {
+		Formula formula = this.formulas.get(tree);
+		if (formula != null) {
+			return formula;
+		} else if (!(tree instanceof ParserRuleContext)) {
+			return tree.accept(this);
+		}
+		Deque<ParserRuleContext> stack = new ArrayDeque<ParserRuleContext>();
+		stack.push((ParserRuleContext) tree);
+		try {
+			while (!stack.isEmpty()) {
+				ParserRuleContext context = stack.peek();
+				boolean visited = true;
+				for (FormulaContext child : context.getRuleContexts(FormulaContext.class)) {
+					if (!this.formulas.containsKey(child)) {
+						stack.push(child);
+						visited = false;
+					}
+				}
+				if (visited) {
+					stack.pop();
+					// the children have been visited, so this does not recurse
+					this.formulas.put(context, context.accept(this));
+				}
+			}
+			return this.formulas.get(tree);
+		} finally {
+			this.formulas.clear();
+		}
+	}
 	
 	/**
 	 * Visits the given Bracket node in the parse tree and returns the abstract syntax
@@ -73,7 +126,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitForAllAlways(ForAllAlwaysContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ForAllAlways(formula);
+		return FormulaFactory.forAllAlways(formula);
 	}
 
 	/**
@@ -88,7 +141,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	public Formula visitOr(OrContext context) {
 		Formula left = (Formula) visit(context.formula(0));
 		Formula right = (Formula) visit(context.formula(1));
-		return new Or(left, right);
+		return FormulaFactory.or(left, right);
 	}
 
 	/**
@@ -104,7 +157,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	public Formula visitIff(IffContext context) {
 		Formula left = (Formula) visit(context.formula(0));
 		Formula right = (Formula) visit(context.formula(1));	
-		return new Iff(left, right);
+		return FormulaFactory.iff(left, right);
 	}
 
 	/**
@@ -115,7 +168,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	 */
 	@Override
 	public Formula visitTrue(TrueContext context) {
-		return new True();
+		return FormulaFactory.trueFormula();
 	}
 
 	/**
@@ -126,7 +179,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	 */	
 	@Override
 	public Formula visitFalse(FalseContext context) {
-		return new False();
+		return FormulaFactory.falseFormula();
 	}
 
 	/**
@@ -140,7 +193,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitExistsEventually(ExistsEventuallyContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ExistsEventually(formula);
+		return FormulaFactory.existsEventually(formula);
 	}
 
 	/**
@@ -151,7 +204,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	 */	
 	@Override
 	public Formula visitAtomicProposition(AtomicPropositionContext context) {
-		return new AtomicProposition(context.ATOMIC_PROPOSITION().toString());
+		return FormulaFactory.atomicProposition(context.ATOMIC_PROPOSITION().toString());
 	}
 
 	/**
@@ -165,7 +218,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitForAllEventually(ForAllEventuallyContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ForAllEventually(formula);
+		return FormulaFactory.forAllEventually(formula);
 	}
 
 	/**
@@ -179,7 +232,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitNot(NotContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new Not(formula);
+		return FormulaFactory.not(formula);
 	}
 
 	/**
@@ -195,7 +248,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 		// AU is right associative so we visit the right sub tree first	
 		Formula right = (Formula) visit(context.formula(1));
 		Formula left = (Formula) visit(context.formula(0));
-		return new ForAllUntil(left, right);
+		return FormulaFactory.forAllUntil(left, right);
 	}
 
 	/**
@@ -211,7 +264,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 		// -> is right associative so we visit the right sub tree first
 		Formula right = (Formula) visit(context.formula(1));
 		Formula left = (Formula) visit(context.formula(0));
-		return new Implies(left, right);
+		return FormulaFactory.implies(left, right);
 	}
 
 	/**
@@ -225,7 +278,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitForAllNext(ForAllNextContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ForAllNext(formula);
+		return FormulaFactory.forAllNext(formula);
 	}
 
 	/**
@@ -240,7 +293,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	public Formula visitAnd(AndContext context) {
 		Formula left = (Formula) visit(context.formula(0));
 		Formula right = (Formula) visit(context.formula(1));
-		return new And(left, right);
+		return FormulaFactory.and(left, right);
 	}
 
 	/**
@@ -254,7 +307,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitExistsAlways(ExistsAlwaysContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ExistsAlways(formula);		
+		return FormulaFactory.existsAlways(formula);		
 	}
 
 	/**
@@ -270,7 +323,7 @@ public class Generator extends CTLBaseVisitor<Formula> {
 		// EU is right associative so we visit the right sub tree first
 		Formula right = (Formula) visit(context.formula(1));
 		Formula left = (Formula) visit(context.formula(0));
-		return new ExistsUntil(left, right);
+		return FormulaFactory.existsUntil(left, right);
 	}
 
 	/** 
@@ -284,6 +337,6 @@ public class Generator extends CTLBaseVisitor<Formula> {
 	@Override
 	public Formula visitExistsNext(ExistsNextContext context) {
 		Formula formula = (Formula) visit(context.formula());
-		return new ExistsNext(formula);
+		return FormulaFactory.existsNext(formula);
 	}
 }
\ No newline at end of file
@@ -57,7 +57,7 @@ public class True extends Formula {
 	}
 
 	@Override
-	public Formula simplify() {
+	protected Formula rewrite() {
 		return this;
 	}
 }
\ No newline at end of file
@@ -2,21 +2,43 @@ package listeners;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.JPFConfigException;
 import gov.nasa.jpf.annotation.JPFOption;
 import gov.nasa.jpf.annotation.JPFOptions;
 import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.search.SearchListenerAdapter;
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.ClassLoaderInfo;
+import gov.nasa.jpf.vm.ElementInfo;
 import gov.nasa.jpf.vm.VM;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.TreeSet;
 
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.ctl.CTLLexer;
+import org.ctl.CTLParser;
+
+import algo.BinaryTransitionSystemFile;
+import algo.LabelledPartialTransitionSystem;
+import algo.LongHashSet;
+import ctl.Formula;
+import ctl.Generator;
+
 /**
  * Add a partial state space observer to JPF and build a graph of the state
  * space that is explored by JPF, as well as any unexplored states. The graph
@@ -43,6 +65,48 @@ import java.util.TreeSet;
  * <td>{@code 0}</td>
  * <td>The maximum amount of allowed states for this listener</td>
  * </tr>
+ * <tr>
+ * <td>{@code formula}</td>
+ * <td>{@code String}</td>
+ * <td>none</td>
+ * <td>A formula of the form AG p or EF p, or the negation of either, where p is
+ * a state formula whose atomic propositions are static boolean fields. The
+ * formula is checked while the state space is explored and the search is
+ * terminated as soon as its verdict for the initial state is known, for
+ * example when a state that violates an invariant is found.</td>
+ * </tr>
+ * <tr>
+ * <td>{@code format}</td>
+ * <td>{@code String}</td>
+ * <td>{@code text}</td>
+ * <td>The format of the output: {@code text}, a .tra file with a line per
+ * transition, {@code binary}, a compact .lpts file, which also contains the
+ * labels of the static boolean fields given by the
+ * {@code label.BooleanStaticField.field} option (see
+ * algo.BinaryTransitionSystemFile), or {@code memory}, no file at all: the
+ * labelled partial transition system, with the same labels, is built while the
+ * state space is explored and can be obtained from the listener by
+ * {@link #getTransitionSystem()} once JPF has run. The text format is easier to
+ * inspect when debugging.</td>
+ * </tr>
+ * <tr>
+ * <td>{@code streaming}</td>
+ * <td>{@code Boolean}</td>
+ * <td>{@code false}</td>
+ * <td>Whether the transitions of the text output are written as they are
+ * discovered, through a buffered writer, rather than kept in memory until the
+ * search has finished. Only the transitions written so far, packed in a
+ * primitive hash set, are kept, so that each is written once, and the
+ * unexplored states, which are written at the end.</td>
+ * </tr>
+ * <tr>
+ * <td>{@code directory}</td>
+ * <td>{@code String}</td>
+ * <td>none</td>
+ * <td>The directory in which the memory output is built in memory-mapped files
+ * rather than on the heap, so that the state space can be larger than the
+ * heap. By default, the memory output is built on the heap.</td>
+ * </tr>
  * </table>
  *
  * @see gov.nasa.jpf.JPFListener
@@ -51,20 +115,55 @@ import java.util.TreeSet;
  * @author Matt Walker [Implementation, Testing, Documentation]
  */
 @JPFOptions({
-		@JPFOption(type = "Int", key = "partialtransitionsystemlistener.max_new_states", defaultValue = "0", comment = "maximum states for listener") })
+		@JPFOption(type = "Int", key = "partialtransitionsystemlistener.max_new_states", defaultValue = "0", comment = "maximum states for listener"),
+		@JPFOption(type = "String", key = "partialtransitionsystemlistener.formula", defaultValue = "", comment = "AG or EF property checked during the search"),
+		@JPFOption(type = "String", key = "partialtransitionsystemlistener.format", defaultValue = "text", comment = "text, binary or memory output"),
+		@JPFOption(type = "Boolean", key = "partialtransitionsystemlistener.streaming", defaultValue = "false", comment = "write the text output during the search"),
+		@JPFOption(type = "String", key = "partialtransitionsystemlistener.directory", defaultValue = "", comment = "directory of the memory-mapped memory output") })
 public class PartialTransitionSystemListener extends SearchListenerAdapter {
 	private final static String CONFIG_PREFIX = "partialtransitionsystemlistener";
+	private final static String FIELDS_KEY = "label.BooleanStaticField.field";
+
+	private final static String TEXT_FORMAT = "text";
+	private final static String BINARY_FORMAT = "binary";
+	private final static String MEMORY_FORMAT = "memory";
+	private final static String TEXT_EXTENSION = ".tra";
+	private final static String BINARY_EXTENSION = ".lpts";
+
+	private final static int BUFFER_SIZE = 1 << 16;
 
 	private final Map<Integer, Set<Integer>> transitions;
 	private final Set<Integer> unexploredStates;
 	private final VM vm;
 	private final int maxNewStates;
+	private final StateProperty property;
+
+	// the format of the output
+	private final String format;
+
+	// the transitions written so far, each packed as source << 32 | target, if the text output is streamed
+	private final LongHashSet written;
+
+	// the static boolean fields that label the states in the binary and memory output, and the fields that hold in each state
+	private final List<String> fields;
+	private final Map<Integer, BitSet> labels;
+
+	// the system built in memory, without transitions to the sink state as in the files
+	private final LabelledPartialTransitionSystem.Builder builder;
+	private LabelledPartialTransitionSystem system;
+
+	// the verdict of the property for the initial state, null if it is not known (yet)
+	private Boolean verdict;
 
 	private PrintWriter writer;
+	private String name;
 
 	private int source;
 	private int target;
 	private int newStates;
+
+	// whether a search constraint, such as a depth limit, left reachable states unexplored
+	private boolean constraintHit;
 	
 	private static final int SINK_STATE = -2;
 
@@ -79,12 +178,65 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 		this.unexploredStates = new TreeSet<>();
 
 		this.newStates = 0;
+		this.constraintHit = false;
 
 		this.source = -1;
 		this.target = -1;
 
 		this.maxNewStates = config.getInt(CONFIG_PREFIX + ".max_new_states", 0);
 
+		String formula = config.getString(CONFIG_PREFIX + ".formula", "");
+		if (formula.isEmpty()) {
+			this.property = null;
+		} else {
+			this.property = StateProperty.of(parse(formula));
+			if (this.property == null) {
+				throw new JPFConfigException("The formula " + formula
+						+ " is not of the form AG p or EF p, where p has no temporal operators");
+			}
+		}
+		this.verdict = null;
+
+		this.format = config.getString(CONFIG_PREFIX + ".format", TEXT_FORMAT);
+		if (!this.format.equals(TEXT_FORMAT) && !this.format.equals(BINARY_FORMAT)
+				&& !this.format.equals(MEMORY_FORMAT)) {
+			throw new JPFConfigException("The format " + this.format + " is not " + TEXT_FORMAT + ", "
+					+ BINARY_FORMAT + " or " + MEMORY_FORMAT);
+		}
+		if (config.getBoolean(CONFIG_PREFIX + ".streaming", false)) {
+			if (!this.format.equals(TEXT_FORMAT)) {
+				throw new JPFConfigException("Only the " + TEXT_FORMAT + " format can be streamed");
+			}
+			this.written = new LongHashSet();
+		} else {
+			this.written = null;
+		}
+		this.fields = new ArrayList<>();
+		if (!this.format.equals(TEXT_FORMAT)) {
+			for (String field : config.getString(FIELDS_KEY, "").split(";")) {
+				if (!field.trim().isEmpty()) {
+					this.fields.add(field.trim());
+				}
+			}
+		}
+		this.labels = new HashMap<>();
+		if (this.format.equals(MEMORY_FORMAT)) {
+			String directory = config.getString(CONFIG_PREFIX + ".directory", "");
+			try {
+				this.builder = new LabelledPartialTransitionSystem.Builder(
+						directory.isEmpty() ? null : Paths.get(directory));
+			} catch (IOException e) {
+				throw new JPFConfigException("The memory output cannot be mapped to files in " + directory + ": "
+						+ e.getMessage());
+			}
+			for (int field = 0; field < this.fields.size(); field++) {
+				this.builder.addField(this.fields.get(field), field);
+			}
+		} else {
+			this.builder = null;
+		}
+		this.system = null;
+
 		this.vm = jpf.getVM();
 	}
 
@@ -93,16 +245,29 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 	 *
 	 * @implNote Creates and instantiates a {@code PrintWriter} to be used for
 	 *           output. The path of the outputted file is the SUT name of the VM
-	 *           concatenated with {@code .tra}.
+	 *           concatenated with {@code .tra}. The binary output, whose path ends
+	 *           with {@code .lpts} instead, is written at once when the search has
+	 *           finished. The memory output needs no file.
 	 *
 	 * @param search the Search instance
 	 */
 	public void searchStarted(Search search) {
-		String name = search.getVM().getSUTName() + ".tra"; //TODO revert this
+		if (this.format.equals(MEMORY_FORMAT)) {
+			return;
+		}
+		if (this.format.equals(BINARY_FORMAT)) {
+			this.name = search.getVM().getSUTName() + BINARY_EXTENSION;
+			return;
+		}
+		this.name = search.getVM().getSUTName() + TEXT_EXTENSION; //TODO revert this
 		try {
-			this.writer = new PrintWriter(name);
-		} catch (FileNotFoundException e) {
-			System.out.println("Listener could not write to file " + name);
+			if (this.written != null) {
+				this.writer = new PrintWriter(new BufferedWriter(new FileWriter(this.name), BUFFER_SIZE));
+			} else {
+				this.writer = new PrintWriter(this.name);
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to file " + this.name);
 			search.terminate();
 		}
 	}
@@ -113,7 +278,9 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 	 * @implNote The output is not processed in this method. Instead, the method
 	 *           adds the source and the target to a private MultiMap field (a map
 	 *           whose keys are the source states and whose values are a list of all
-	 *           the targets reached from the source).
+	 *           the targets reached from the source), or, for the memory output,
+	 *           to the builder of the system. If the text output is streamed, a
+	 *           transition is written when it is discovered instead.
 	 *
 	 *           <p>
 	 *           </p>
@@ -130,7 +297,16 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 		this.source = this.target;
 		this.target = search.getStateId();
 
-		this.transitions.computeIfAbsent(this.source, k -> new LinkedHashSet<>()).add(this.target);
+		if (this.builder != null) {
+			// duplicate transitions are removed when the system is built
+			this.builder.addTransition(this.source, this.target);
+		} else if (this.written != null) {
+			if (this.writer != null && this.written.add((long) this.source << 32 | (this.target & 0xFFFFFFFFL))) {
+				this.writeTransition(this.source, this.target);
+			}
+		} else {
+			this.transitions.computeIfAbsent(this.source, k -> new LinkedHashSet<>()).add(this.target);
+		}
 
 		if (search.isNewState()) {
 			unexploredStates.add(this.target);
@@ -148,6 +324,28 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 			this.newStates++;
 		}
 
+		if (this.builder != null) {
+			for (int field = 0; field < this.fields.size(); field++) {
+				if (getStaticBooleanField(this.fields.get(field))) {
+					this.builder.addLabel(this.target, field);
+				}
+			}
+		} else if (this.format.equals(BINARY_FORMAT) && !this.fields.isEmpty()) {
+			BitSet holds = new BitSet(this.fields.size());
+			for (int field = 0; field < this.fields.size(); field++) {
+				holds.set(field, getStaticBooleanField(this.fields.get(field)));
+			}
+			this.labels.put(this.target, holds);
+		}
+
+		if (this.property != null && this.verdict == null) {
+			this.verdict = this.property.visit(PartialTransitionSystemListener::getStaticBooleanField);
+			if (this.verdict != null) {
+				search.terminate();
+				return;
+			}
+		}
+
 		if (this.newStatesExceeded()) {
 			search.notifySearchConstraintHit("New States Exceeded at: " + this.maxNewStates);
 			search.terminate();
@@ -159,28 +357,137 @@ public class PartialTransitionSystemListener extends SearchListenerAdapter {
 	 *
 	 * @implNote This method prints a formatted version of the transitions recorded
 	 *           in the stateAdvanced method as well as the set of unexplored
-	 *           states.
+	 *           states, or writes them, and the labels, in the binary format, or
+	 *           builds the system in memory.
 	 *
 	 * @param search - the Search instance
 	 */
 	public void searchFinished(Search search) {
+		if (this.builder != null) {
+			for (int state : this.unexploredStates) {
+				this.builder.addPartial(state);
+			}
+			this.builder.addState(SINK_STATE);
+			this.system = this.builder.build();
+		} else if (this.format.equals(BINARY_FORMAT)) {
+			try {
+				BinaryTransitionSystemFile.write(Paths.get(this.name), this.transitions, this.unexploredStates,
+						this.fields, this.labels);
+			} catch (IOException e) {
+				System.out.println("Listener could not write to file " + this.name);
+			}
+		} else {
+			this.writeText();
+		}
+
+		if (this.property != null) {
+			// only if all reachable states have been visited, none of them decided the verdict
+			if (this.verdict == null && !this.constraintHit && !this.newStatesExceeded()) {
+				this.verdict = this.property.finish();
+			}
+			System.out.println("Property " + this.property + ": "
+					+ (this.verdict == null ? "not decided" : this.verdict ? "holds" : "does not hold"));
+		}
+	}
+
+	/*
+	 * Prints the transitions, including those of the unexplored states to the
+	 * sink state, and the unexplored states. If the output is streamed, the other
+	 * transitions have been printed already.
+	 */
+	private void writeText() {
 		for (Map.Entry<Integer, Set<Integer>> entry : transitions.entrySet()) {
 			int source = entry.getKey();
 			Set<Integer> targets = entry.getValue();
 
 			for (int target : targets) {
-				writer.printf("%d -> %d%n", source, target);
+				this.writeTransition(source, target);
 			}
 		}
 
 		StringJoiner sj = new StringJoiner(" ");
 		for (int state : unexploredStates) {
-			writer.printf("%d -> %d%n", state, SINK_STATE);
+			this.writeTransition(state, SINK_STATE);
 			sj.add("" + state);
 		}
 
 		writer.printf(sj.toString());
 		this.writer.close();
+		if (this.writer.checkError()) {
+			System.out.println("Listener could not write to file " + this.name);
+		}
+	}
+
+	/*
+	 * Prints the transition from the given source to the given target, as
+	 * printf("%d -> %d%n") would, without formatting.
+	 */
+	private void writeTransition(int source, int target) {
+		this.writer.print(source);
+		this.writer.print(" -> ");
+		this.writer.print(target);
+		this.writer.println();
+	}
+
+	/**
+	 * Returns the labelled partial transition system built in memory if the
+	 * {@code format} option is {@code memory}, or null if it is not or the search
+	 * has not finished. It is the system that would be read from the files of the
+	 * other formats.
+	 *
+	 * @return the system explored by JPF, or null if it is not built in memory
+	 */
+	public LabelledPartialTransitionSystem getTransitionSystem() {
+		return this.system;
+	}
+
+	/**
+	 * Returns the verdict of the formula given by the {@code formula} option for
+	 * the initial state, or null if there is no such formula or its verdict is not
+	 * known, because the search has not finished or was stopped by a limit.
+	 *
+	 * @return the verdict of the formula for the initial state, or null if it is not known
+	 */
+	public Boolean getVerdict() {
+		return this.verdict;
+	}
+
+	/*
+	 * Returns the given formula as an abstract syntax tree.
+	 */
+	private static Formula parse(String formula) {
+		CTLParser parser = new CTLParser(new CommonTokenStream(new CTLLexer(CharStreams.fromString(formula))));
+		return new Generator().visit(parser.formula());
+	}
+
+	/*
+	 * Returns the value of the static boolean field with the given qualified
+	 * name in the current state, which is false if its class has not been
+	 * initialized yet.
+	 */
+	private static boolean getStaticBooleanField(String name) {
+		int dot = name.lastIndexOf('.');
+		ClassInfo ci = ClassLoaderInfo.getCurrentClassLoader().getAlreadyResolvedClassInfo(name.substring(0, dot));
+		if (ci == null || ci.getStaticField(name.substring(dot + 1)) == null) {
+			return false;
+		}
+		ElementInfo ei = ci.getStaticElementInfo();
+		return ei != null && ei.getBooleanField(name.substring(dot + 1));
+	}
+
+	/**
+	 * Invoked when a search constraint, such as the depth limit or the maximum
+	 * number of new states, is hit.
+	 *
+	 * @implNote Records that the search did not visit all reachable states, so
+	 *           that the verdict of the formula is not decided when the search
+	 *           finishes without a state that decides it.
+	 *
+	 * @param search - the Search instance
+	 */
+	@Override
+	public void searchConstraintHit(Search search) {
+		this.constraintHit = true;
 	}
 
 	@Override
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C)  2021
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package listeners;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import ctl.And;
+import ctl.AtomicProposition;
+import ctl.ExistsEventually;
+import ctl.False;
+import ctl.ForAllAlways;
+import ctl.Formula;
+import ctl.Formulas;
+import ctl.Iff;
+import ctl.Implies;
+import ctl.Not;
+import ctl.Or;
+import ctl.True;
+
+/**
+ * A formula whose verdict for the initial state can be decided while the state
+ * space is explored: an invariant AG p or a reachability property EF p, or the
+ * negation of either, where p is a state formula, that is, a formula without
+ * temporal operators. A single state that violates the invariant, or satisfies
+ * the reachability property, decides the verdict, so that the exploration can
+ * stop. Only if no such state exists, the whole state space has to be explored
+ * to decide the verdict.
+ */
+public class StateProperty {
+	// the state formula p
+	private final Formula formula;
+
+	// the subformulas of p, each after its operands, and the positions of their operands in this list
+	private final List<Formula> order;
+	private final int[][] operands;
+
+	// whether the property is AG p, rather than EF p
+	private final boolean invariant;
+
+	// whether the property is negated
+	private final boolean negated;
+
+	/*
+	 * Initializes this property.
+	 */
+	private StateProperty(Formula formula, boolean invariant, boolean negated) {
+		this.formula = formula;
+		this.invariant = invariant;
+		this.negated = negated;
+
+		this.order = Formulas.postOrder(formula);
+		Map<Formula, Integer> positions = new IdentityHashMap<Formula, Integer>();
+		this.operands = new int[this.order.size()][];
+		for (int position = 0; position < this.order.size(); position++) {
+			List<Formula> subformulas = Formulas.getSubformulas(this.order.get(position));
+			this.operands[position] = new int[subformulas.size()];
+			for (int i = 0; i < subformulas.size(); i++) {
+				this.operands[position][i] = positions.get(subformulas.get(i));
+			}
+			positions.put(this.order.get(position), position);
+		}
+	}
+
+	/**
+	 * Returns the given formula as a property that can be decided during
+	 * exploration, or null if it is not of the form AG p or EF p, or the
+	 * negation of either, where p is a state formula.
+	 *
+	 * @param formula a formula
+	 * @return the given formula as a property, or null if it is not supported
+	 */
+	public static StateProperty of(Formula formula) {
+		boolean negated = false;
+		while (formula instanceof Not) {
+			negated = !negated;
+			formula = ((Not) formula).getFormula();
+		}
+		if (formula instanceof ForAllAlways && isStateFormula(((ForAllAlways) formula).getFormula())) {
+			return new StateProperty(((ForAllAlways) formula).getFormula(), true, negated);
+		} else if (formula instanceof ExistsEventually && isStateFormula(((ExistsEventually) formula).getFormula())) {
+			return new StateProperty(((ExistsEventually) formula).getFormula(), false, negated);
+		} else {
+			return null;
+		}
+	}
+
+	/*
+	 * Tests whether the given formula has no temporal operators. The formula is
+	 * traversed with an explicit stack, so its depth is not limited by the call
+	 * stack.
+	 */
+	private static boolean isStateFormula(Formula formula) {
+		Deque<Formula> stack = new ArrayDeque<Formula>();
+		stack.push(formula);
+		while (!stack.isEmpty()) {
+			Formula top = stack.pop();
+			if (top instanceof Not || top instanceof And || top instanceof Or || top instanceof Implies
+					|| top instanceof Iff) {
+				for (Formula operand : Formulas.getSubformulas(top)) {
+					stack.push(operand);
+				}
+			} else if (!(top instanceof True || top instanceof False || top instanceof AtomicProposition)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the verdict for the initial state if it is decided by a reachable
+	 * state with the given atomic propositions, or null otherwise.
+	 *
+	 * @param labels tests whether the reachable state satisfies an atomic proposition, given its name
+	 * @return the verdict for the initial state, or null if it is not decided by the reachable state
+	 */
+	public Boolean visit(Predicate<String> labels) {
+		boolean holds = this.evaluate(labels);
+		if (this.invariant && !holds) {
+			return this.negated;
+		} else if (!this.invariant && holds) {
+			return !this.negated;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the verdict for the initial state if none of the reachable states
+	 * decided it.
+	 *
+	 * @return the verdict for the initial state once all states have been visited
+	 */
+	public boolean finish() {
+		return this.invariant != this.negated;
+	}
+
+	/*
+	 * Tests whether a state with the given atomic propositions satisfies the given
+	 * state formula. The subformulas are evaluated in post-order, each once, so
+	 * that the depth of the formula is not limited by the call stack.
+	 */
+	private boolean evaluate(Predicate<String> labels) {
+		boolean[] values = new boolean[this.order.size()];
+		for (int position = 0; position < values.length; position++) {
+			Formula formula = this.order.get(position);
+			int[] operands = this.operands[position];
+			if (formula instanceof True) {
+				values[position] = true;
+			} else if (formula instanceof False) {
+				values[position] = false;
+			} else if (formula instanceof AtomicProposition) {
+				values[position] = labels.test(formula.toString());
+			} else if (formula instanceof Not) {
+				values[position] = !values[operands[0]];
+			} else if (formula instanceof And) {
+				values[position] = values[operands[0]] && values[operands[1]];
+			} else if (formula instanceof Or) {
+				values[position] = values[operands[0]] || values[operands[1]];
+			} else if (formula instanceof Implies) {
+				values[position] = !values[operands[0]] || values[operands[1]];
+			} else {
+				values[position] = values[operands[0]] == values[operands[1]];
+			}
+		}
+		return values[values.length - 1];
+	}
+
+	@Override
+	public String toString() {
+		String property = (this.invariant ? "AG " : "EF ") + this.formula;
+		return this.negated ? "! " + property : property;
+	}
+}
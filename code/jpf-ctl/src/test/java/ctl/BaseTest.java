@@ -17,6 +17,12 @@
 
 package ctl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
@@ -24,6 +30,11 @@ import org.antlr.v4.runtime.tree.ParseTree;
 
 import org.ctl.CTLLexer;
 import org.ctl.CTLParser;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.Model;
 
 /**
  * Base for all the tests.
@@ -62,4 +73,155 @@ public abstract class BaseTest {
 		ParseTree tree = parser.formula();
 		return generator.visit(tree);
 	}
+
+	/**
+	 * Generates the random systems and formulas. It is seeded before the tests of
+	 * a class, for the systems that the tests share, and again before each test.
+	 * Both seeds appear in the messages of the assertions, so that a failure can
+	 * be reproduced.
+	 */
+	protected static final Random RANDOM = new Random();
+
+	private static long classSeed;
+	private static long testSeed;
+
+	/**
+	 * Maximum number of states of the random systems of the differential tests.
+	 */
+	private static final int DIFFERENTIAL_STATES = 20;
+
+	/**
+	 * Maximum depth of the random formulas of the differential tests.
+	 */
+	private static final int DIFFERENTIAL_DEPTH = 4;
+
+	@BeforeAll
+	static void seedClass() {
+		classSeed = System.nanoTime();
+		testSeed = classSeed;
+		RANDOM.setSeed(classSeed);
+	}
+
+	@BeforeEach
+	void seedTest() {
+		testSeed = System.nanoTime();
+		RANDOM.setSeed(testSeed);
+	}
+
+	/**
+	 * Returns the given message followed by the seeds of the current test.
+	 * 
+	 * @param message a message
+	 * @return the message with the seeds
+	 */
+	protected static String withSeeds(Object message) {
+		return message + " (class seed " + classSeed + ", test seed " + testSeed + ")";
+	}
+
+	/**
+	 * Atomic propositions of the random systems, labelled 0, 1 and 2.
+	 */
+	protected static final Formula[] ATOMS = { new AtomicProposition("algo.JavaFields.p1"),
+			new AtomicProposition("algo.JavaFields.p2"), new AtomicProposition("algo.JavaFields.p3") };
+
+	/**
+	 * Returns a random system with at most the given number of states, labelled
+	 * with the atomic propositions in ATOMS.
+	 * 
+	 * @param maxStates the maximum number of states
+	 * @return a random system
+	 */
+	protected static LabelledPartialTransitionSystem randomSystem(int maxStates) {
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		for (int label = 0; label < ATOMS.length; label++) {
+			builder.addField(ATOMS[label].toString(), label);
+		}
+		int states = 1 + RANDOM.nextInt(maxStates);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+			for (int i = RANDOM.nextInt(3); i > 0; i--) {
+				builder.addTransition(state, RANDOM.nextInt(states));
+			}
+			for (int label = 0; label < ATOMS.length; label++) {
+				if (RANDOM.nextBoolean()) {
+					builder.addLabel(state, label);
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns a random formula of at most the given depth over the atomic
+	 * propositions in ATOMS, true and false.
+	 * 
+	 * @param depth the maximum depth of the formula
+	 * @return a random formula
+	 */
+	protected static Formula randomFormula(int depth) {
+		if (depth == 0) {
+			switch (RANDOM.nextInt(ATOMS.length + 2)) {
+			case 0: return new True();
+			case 1: return new False();
+			default: return ATOMS[RANDOM.nextInt(ATOMS.length)];
+			}
+		}
+		Formula left = randomFormula(depth - 1);
+		Formula right = randomFormula(RANDOM.nextInt(depth));
+		switch (RANDOM.nextInt(14)) {
+		case 0: return randomFormula(0);
+		case 1: return new Not(left);
+		case 2: return new And(left, right);
+		case 3: return new Or(left, right);
+		case 4: return new Implies(left, right);
+		case 5: return new Iff(left, right);
+		case 6: return new ExistsNext(left);
+		case 7: return new ExistsAlways(left);
+		case 8: return new ExistsEventually(left);
+		case 9: return new ExistsUntil(left, right);
+		case 10: return new ForAllNext(left);
+		case 11: return new ForAllAlways(left);
+		case 12: return new ForAllEventually(left);
+		default: return new ForAllUntil(left, right);
+		}
+	}
+
+	/**
+	 * An algorithm that is checked against Model.
+	 */
+	@FunctionalInterface
+	protected interface Checker {
+
+		/**
+		 * Returns the states of the given system that satisfy the given formula.
+		 * 
+		 * @param pts     a system
+		 * @param formula a formula
+		 * @return the states of the system that satisfy the formula
+		 */
+		Set<Integer> check(LabelledPartialTransitionSystem pts, Formula formula);
+	}
+
+	/**
+	 * Checks that the given checker finds the same states as Model that satisfy a
+	 * random formula in a small random system.
+	 * 
+	 * @param checker the algorithm that is checked
+	 */
+	protected static void assertSameAsModel(Checker checker) {
+		assertSameAsModel(() -> randomFormula(DIFFERENTIAL_DEPTH), checker);
+	}
+
+	/**
+	 * Checks that the given checker finds the same states as Model that satisfy a
+	 * formula given by the given supplier in a small random system.
+	 * 
+	 * @param formulas supplies the formula
+	 * @param checker  the algorithm that is checked
+	 */
+	protected static void assertSameAsModel(Supplier<Formula> formulas, Checker checker) {
+		LabelledPartialTransitionSystem pts = randomSystem(DIFFERENTIAL_STATES);
+		Formula formula = formulas.get();
+		assertEquals(new Model(pts).check(formula).getSat(), checker.check(pts, formula), withSeeds(formula));
+	}
 }
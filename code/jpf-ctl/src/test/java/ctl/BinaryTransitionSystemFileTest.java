@@ -0,0 +1,210 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import algo.BinaryTransitionSystemFile;
+import algo.LabelledPartialTransitionSystem;
+
+/**
+ * Checks that a system written in the binary format is read as the same
+ * system written in the text format, that malformed binary files are
+ * rejected, and compares the sizes of both formats.
+ */
+public class BinaryTransitionSystemFileTest {
+	private static final Random RANDOM = new Random();
+	private static final int SINK_STATE = -2;
+	private static final int FIELDS = 3;
+
+	@TempDir
+	Path directory;
+
+	// a random system, as collected by the listener
+	private Map<Integer, Set<Integer>> transitions;
+	private Set<Integer> partial;
+	private List<String> fields;
+	private Map<Integer, BitSet> labels;
+
+	/*
+	 * Generates a random system with the given number of states, of which one in
+	 * the given rate is not fully explored.
+	 */
+	private void generate(int states, int partialRate) {
+		this.transitions = new LinkedHashMap<>();
+		this.transitions.computeIfAbsent(-1, k -> new LinkedHashSet<>()).add(0);
+		this.partial = new TreeSet<>();
+		for (int state = 0; state < states; state++) {
+			for (int i = RANDOM.nextInt(4); i > 0; i--) {
+				this.transitions.computeIfAbsent(state, k -> new LinkedHashSet<>()).add(RANDOM.nextInt(states));
+			}
+			if (RANDOM.nextInt(partialRate) == 0) {
+				this.partial.add(state);
+			}
+		}
+		this.fields = new ArrayList<>();
+		for (int field = 0; field < FIELDS; field++) {
+			this.fields.add("algo.JavaFields.p" + (field + 1));
+		}
+		this.labels = new HashMap<>();
+		for (int state = 0; state < states; state++) {
+			BitSet holds = new BitSet();
+			for (int field = 0; field < FIELDS; field++) {
+				holds.set(field, RANDOM.nextBoolean());
+			}
+			this.labels.put(state, holds);
+		}
+	}
+
+	/*
+	 * Writes the system in the text format of the listener and of jpf-label.
+	 */
+	private void writeText(Path tra, Path lab) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tra))) {
+			for (Map.Entry<Integer, Set<Integer>> entry : this.transitions.entrySet()) {
+				for (int target : entry.getValue()) {
+					writer.printf("%d -> %d%n", entry.getKey(), target);
+				}
+			}
+			StringJoiner joiner = new StringJoiner(" ");
+			for (int state : this.partial) {
+				writer.printf("%d -> %d%n", state, SINK_STATE);
+				joiner.add("" + state);
+			}
+			writer.print(joiner);
+		}
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(lab))) {
+			StringJoiner names = new StringJoiner(" ");
+			for (int field = 0; field < FIELDS; field++) {
+				String name = this.fields.get(field).replace(".", "_");
+				names.add(2 * field + "=\"true__" + name + "\"");
+				names.add((2 * field + 1) + "=\"false__" + name + "\"");
+			}
+			writer.println(names);
+			for (Map.Entry<Integer, BitSet> entry : this.labels.entrySet()) {
+				StringJoiner labels = new StringJoiner(" ");
+				for (int field = 0; field < FIELDS; field++) {
+					labels.add("" + (2 * field + (entry.getValue().get(field) ? 0 : 1)));
+				}
+				writer.println(entry.getKey() + ": " + labels);
+			}
+		}
+	}
+
+	/*
+	 * Checks that the given systems have the same states, transitions, partial
+	 * states and labelling, where the fields of both have the same names but may
+	 * have different indices.
+	 */
+	private static void assertSameSystem(LabelledPartialTransitionSystem expected,
+			LabelledPartialTransitionSystem actual) {
+		assertEquals(expected.getStates(), actual.getStates());
+		assertEquals(expected.getTransitions(), actual.getTransitions());
+		assertEquals(expected.getPartial(), actual.getPartial());
+		assertEquals(expected.getFields().keySet(), actual.getFields().keySet());
+		for (String field : expected.getFields().keySet()) {
+			int expectedIndex = expected.getFields().get(field);
+			int actualIndex = actual.getFields().get(field);
+			for (int state : expected.getStates()) {
+				Set<Integer> expectedLabels = expected.getLabelling().get(state);
+				Set<Integer> actualLabels = actual.getLabelling().get(state);
+				assertEquals(expectedLabels != null && expectedLabels.contains(expectedIndex),
+						actualLabels != null && actualLabels.contains(actualIndex));
+			}
+		}
+	}
+
+	@Test
+	void testRandom() throws IOException {
+		Path tra = this.directory.resolve("random.tra");
+		Path lab = this.directory.resolve("random.lab");
+		Path lpts = this.directory.resolve("random.lpts");
+		for (int i = 0; i < 100; i++) {
+			this.generate(1 + RANDOM.nextInt(100), 1 + RANDOM.nextInt(10));
+			this.writeText(tra, lab);
+			BinaryTransitionSystemFile.write(lpts, this.transitions, this.partial, this.fields, this.labels);
+			assertSameSystem(new LabelledPartialTransitionSystem(lab.toString(), tra.toString()),
+					LabelledPartialTransitionSystem.fromBinaryFile(lpts.toString()));
+		}
+	}
+
+	@Test
+	void testEmpty() throws IOException {
+		Path lpts = this.directory.resolve("empty.lpts");
+		BinaryTransitionSystemFile.write(lpts, new HashMap<>(), new TreeSet<>(), new ArrayList<>(),
+				new HashMap<>());
+		LabelledPartialTransitionSystem pts = LabelledPartialTransitionSystem.fromBinaryFile(lpts.toString());
+		assertEquals(new TreeSet<>(Arrays.asList(SINK_STATE)), pts.getStates());
+		assertTrue(pts.getTransitions().isEmpty());
+	}
+
+	/*
+	 * Reads the given content as a binary file and returns the message of the
+	 * exception.
+	 */
+	private String error(byte[] content) throws IOException {
+		Path lpts = this.directory.resolve("error.lpts");
+		Files.write(lpts, content);
+		return assertThrows(IOException.class,
+				() -> LabelledPartialTransitionSystem.fromBinaryFile(lpts.toString())).getMessage();
+	}
+
+	@Test
+	void testErrors() throws IOException {
+		this.generate(10, 2);
+		Path lpts = this.directory.resolve("valid.lpts");
+		BinaryTransitionSystemFile.write(lpts, this.transitions, this.partial, this.fields, this.labels);
+		byte[] valid = Files.readAllBytes(lpts);
+
+		assertTrue(error(new byte[0]).endsWith("unexpected end of the file"));
+		assertTrue(error("0 -> 1\n".getBytes()).endsWith("not a binary labelled partial transition system"));
+		byte[] version = valid.clone();
+		version[4] = 2;
+		assertTrue(error(version).endsWith("version 2 is not supported"));
+		assertTrue(error(Arrays.copyOf(valid, valid.length - 1)).endsWith("unexpected end of the file"));
+		assertTrue(error(Arrays.copyOf(valid, valid.length + 1)).endsWith("unexpected data after the labels"));
+		byte[] varint = Arrays.copyOf(valid, 11);
+		Arrays.fill(varint, 5, 11, (byte) 0xFF);
+		assertTrue(error(varint).endsWith("a number is longer than 5 bytes"));
+	}
+
+	@Test
+	void testSize() throws IOException {
+		Path tra = this.directory.resolve("large.tra");
+		Path lab = this.directory.resolve("large.lab");
+		Path lpts = this.directory.resolve("large.lpts");
+		this.generate(100000, 10);
+
+		long start = System.nanoTime();
+		this.writeText(tra, lab);
+		long text = System.nanoTime() - start;
+		start = System.nanoTime();
+		BinaryTransitionSystemFile.write(lpts, this.transitions, this.partial, this.fields, this.labels);
+		long binary = System.nanoTime() - start;
+
+		long textSize = Files.size(tra) + Files.size(lab);
+		System.out.printf("Writing: text %d bytes in %d ms, binary %d bytes in %d ms%n", textSize, text / 1000000,
+				Files.size(lpts), binary / 1000000);
+		assertTrue(Files.size(lpts) < textSize);
+	}
+}
@@ -0,0 +1,71 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import algo.Model;
+
+/**
+ * Checks that formulas that only differ in the order and nesting of the
+ * operands of commutative operators and in double negations have the same
+ * canonical form, and that the canonical form, also in existential normal
+ * form, is satisfied by the same states.
+ */
+public class CanonicalizerTest extends BaseTest {
+	private static final Canonicalizer CANONICALIZER = new Canonicalizer(false);
+	private static final Canonicalizer EXISTENTIAL = new Canonicalizer(true);
+
+	private static final Formula P1 = ATOMS[0];
+	private static final Formula P2 = ATOMS[1];
+	private static final Formula P3 = ATOMS[2];
+
+	@Test
+	void testCommutative() {
+		assertSame(CANONICALIZER.canonicalize(new And(P1, P2)), CANONICALIZER.canonicalize(new And(P2, P1)));
+		assertSame(CANONICALIZER.canonicalize(new Or(P1, P2)), CANONICALIZER.canonicalize(new Or(P2, P1)));
+		assertSame(CANONICALIZER.canonicalize(new Iff(P1, P2)), CANONICALIZER.canonicalize(new Iff(P2, P1)));
+	}
+
+	@Test
+	void testAssociative() {
+		Formula left = new And(new And(P1, P2), P3);
+		Formula right = new And(P3, new And(P2, P1));
+		assertSame(CANONICALIZER.canonicalize(left), CANONICALIZER.canonicalize(right));
+		assertSame(CANONICALIZER.canonicalize(new Or(P1, new Or(P2, P1))), CANONICALIZER.canonicalize(new Or(P2, P1)));
+	}
+
+	@Test
+	void testDoubleNegation() {
+		assertSame(CANONICALIZER.canonicalize(P1), CANONICALIZER.canonicalize(new Not(new Not(P1))));
+		assertEquals(new ExistsNext(P1), CANONICALIZER.canonicalize(new ExistsNext(new Not(new Not(P1)))));
+	}
+
+	@Test
+	void testExistentialNormalForm() {
+		assertEquals(new Not(new ExistsAlways(new Not(P1))), EXISTENTIAL.canonicalize(new ForAllEventually(P1)));
+		assertEquals(new ExistsUntil(new True(), P1), EXISTENTIAL.canonicalize(new ExistsEventually(P1)));
+		assertEquals(new ExistsNext(P1), EXISTENTIAL.canonicalize(new Not(new ForAllNext(new Not(P1)))));
+	}
+
+	@RepeatedTest(TIMES)
+	void testIdempotent() {
+		Formula formula = Formula.random();
+		Formula canonical = CANONICALIZER.canonicalize(formula);
+		assertSame(canonical, CANONICALIZER.canonicalize(canonical));
+		assertSame(canonical, CANONICALIZER.canonicalize(parse(formula.toString())));
+		Formula existential = EXISTENTIAL.canonicalize(formula);
+		assertSame(existential, EXISTENTIAL.canonicalize(existential));
+	}
+
+	@RepeatedTest(TIMES)
+	void testEquivalent() {
+		assertSameAsModel((pts, formula) -> {
+			Model existential = new Model(pts);
+			existential.setExistentialNormalForm(true);
+			return existential.check(formula).getSat();
+		});
+	}
+}
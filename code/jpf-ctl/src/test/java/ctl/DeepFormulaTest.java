@@ -0,0 +1,159 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.LocalModelChecker;
+import algo.Model;
+import algo.StateSets;
+import listeners.StateProperty;
+
+/**
+ * Checks that formulas far deeper than the call stack allows for recursion can
+ * be built, parsed, printed, compared, simplified and checked.
+ */
+public class DeepFormulaTest extends BaseTest {
+	private static final int DEPTH = 100000;
+
+	/*
+	 * Returns the conjunction of the atomic propositions, nested to the left.
+	 */
+	private static Formula conjunction() {
+		Formula formula = ATOMS[0];
+		for (int i = 1; i < DEPTH; i++) {
+			formula = new And(formula, ATOMS[i % ATOMS.length]);
+		}
+		return formula;
+	}
+
+	@Test
+	void testTraversals() {
+		Formula formula = conjunction();
+		Formula other = conjunction();
+		assertNotSame(formula, other);
+		assertEquals(formula, other);
+		assertEquals(formula.toString(), other.toString());
+		Set<String> names = new HashSet<String>();
+		for (Formula atom : ATOMS) {
+			names.add(atom.toString());
+		}
+		assertEquals(names, formula.getAtomicPropositions());
+		assertEquals(DEPTH - 1, (int) Formulas.getHeights(formula).get(formula));
+	}
+
+	@Test
+	void testParse() {
+		StringBuilder text = new StringBuilder(ATOMS[0].toString());
+		for (int i = 1; i < DEPTH; i++) {
+			text.append(" && ").append(ATOMS[i % ATOMS.length]);
+		}
+		assertEquals(conjunction(), parse(text.toString()));
+	}
+
+	@Test
+	void testSimplify() {
+		Formula formula = ATOMS[0];
+		for (int i = 0; i < DEPTH; i++) {
+			formula = new Not(new ExistsEventually(formula));
+		}
+		Formula simplified = formula.simplify();
+		assertEquals(simplified, simplified.simplify());
+		assertEquals(new And(new And(ATOMS[0], ATOMS[1]), ATOMS[2]), conjunction().simplify());
+	}
+
+	@Test
+	void testCanonicalize() {
+		// chains of conjunctions and disjunctions, separated by EX, with the operands in either order
+		Formula formula = ATOMS[0];
+		Formula swapped = ATOMS[0];
+		for (int i = 0; i < DEPTH; i++) {
+			Formula atom = new AtomicProposition("algo.JavaFields.q" + i);
+			if (i % 3 == 0) {
+				formula = new And(formula, atom);
+				swapped = new And(atom, swapped);
+			} else if (i % 3 == 1) {
+				formula = new Or(formula, atom);
+				swapped = new Or(atom, swapped);
+			} else {
+				formula = new ExistsNext(formula);
+				swapped = new ExistsNext(swapped);
+			}
+		}
+		Canonicalizer canonicalizer = new Canonicalizer(false);
+		Formula canonical = canonicalizer.canonicalize(formula);
+		assertSame(canonical, canonicalizer.canonicalize(swapped));
+		assertSame(canonical, new Canonicalizer(false).canonicalize(swapped));
+		assertSame(canonical, canonicalizer.canonicalize(canonical));
+	}
+
+	@Test
+	void testCheck() {
+		LabelledPartialTransitionSystem pts = randomSystem(50);
+		Model model = new Model(pts);
+		Model parallel = new Model(pts);
+		parallel.setParallelism(2);
+		parallel.setParallelThreshold(0);
+		Model stepwise = new Model(pts);
+
+		// the stepwise model checks the formula one level at a time
+		Formula formula = ATOMS[0];
+		StateSets expected = null;
+		for (int i = 0; i < DEPTH; i++) {
+			formula = i % 2 == 0 ? new ExistsNext(formula) : new ForAllUntil(ATOMS[1], formula);
+			expected = stepwise.check(formula);
+		}
+		assertEquals(expected, model.check(formula), withSeeds("nested EX and AU"));
+		assertEquals(expected, parallel.check(formula), withSeeds("nested EX and AU"));
+		parallel.close();
+
+		Formula and = conjunction();
+		assertEquals(model.check(new And(new And(ATOMS[0], ATOMS[1]), ATOMS[2])), model.check(and),
+				withSeeds("conjunction"));
+		assertTrue(model.check(new Or(and, new Not(and))).getUnSat().isEmpty(), withSeeds("tautology"));
+	}
+
+	@Test
+	void testLocalCheck() {
+		LabelledPartialTransitionSystem pts = randomSystem(50);
+		Model model = new Model(pts);
+
+		// distinct disjunctions, so that neither simplification nor canonicalization shortens the conjunction
+		Formula formula = new Or(ATOMS[0], new AtomicProposition("algo.JavaFields.q0"));
+		for (int i = 1; i < DEPTH / 5; i++) {
+			formula = new And(formula, new Or(ATOMS[0], new AtomicProposition("algo.JavaFields.q" + i)));
+		}
+		// more nested temporal operators than the local checker evaluates itself
+		Formula temporal = ATOMS[0];
+		for (int i = 0; i < DEPTH; i++) {
+			temporal = i % 2 == 0 ? new ExistsNext(temporal) : new ForAllUntil(ATOMS[1], temporal);
+		}
+		for (Formula f : new Formula[] { formula, formula.simplify(), new ForAllAlways(formula), temporal }) {
+			StateSets expected = model.check(f);
+			LocalModelChecker checker = new LocalModelChecker(pts);
+			for (int state : pts.getStates()) {
+				assertEquals(expected.getSat().contains(state), checker.check(f, state),
+						withSeeds("state " + state));
+			}
+		}
+	}
+
+	@Test
+	void testStateProperty() {
+		Formula formula = new Or(ATOMS[0], new AtomicProposition("algo.JavaFields.q0"));
+		for (int i = 1; i < DEPTH; i++) {
+			formula = new And(formula, new Or(ATOMS[0], new AtomicProposition("algo.JavaFields.q" + i)));
+		}
+		StateProperty invariant = StateProperty.of(new ForAllAlways(formula));
+		assertEquals(null, invariant.visit(name -> name.equals(ATOMS[0].toString())));
+		assertEquals(false, invariant.visit(name -> false));
+		assertEquals(null, StateProperty.of(new ForAllAlways(new And(formula, new ExistsNext(ATOMS[0])))));
+	}
+}
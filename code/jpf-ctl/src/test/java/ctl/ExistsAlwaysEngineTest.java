@@ -0,0 +1,195 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import algo.CompressedSparseRow;
+import algo.ExistsAlwaysEngine;
+import algo.LabelledPartialTransitionSystem;
+import algo.Model;
+import algo.StateSets;
+
+/**
+ * Checks that both algorithms for EG give the same results for the operators
+ * that use EG, and the same results for EG as the fixpoint they replaced, and
+ * compares their running times on a large graph.
+ */
+public class ExistsAlwaysEngineTest {
+	private static final int TIMES = 100;
+
+	// size of the graph that is checked on every run, and of the benchmark
+	private static final int STATES = 10000;
+	private static final int BENCHMARK_STATES = 200000;
+	private static final int DEGREE = 2;
+
+	private static final Formula P1 = new AtomicProposition("algo.JavaFields.p1");
+	private static final Formula P2 = new AtomicProposition("algo.JavaFields.p2");
+
+	private static final Formula[] FORMULAS = { new ExistsAlways(P1), new ForAllEventually(P2),
+			new ForAllUntil(P1, P2), new ExistsAlways(new Or(P1, P2)) };
+
+	/*
+	 * Returns a model of the given system that uses the given algorithm for EG.
+	 */
+	private static Model model(LabelledPartialTransitionSystem pts, ExistsAlwaysEngine engine) {
+		Model model = new Model(pts);
+		model.setExistsAlwaysEngine(ExistsAlways.class, engine);
+		model.setExistsAlwaysEngine(ForAllEventually.class, engine);
+		model.setExistsAlwaysEngine(ForAllUntil.class, engine);
+		return model;
+	}
+
+	/*
+	 * Returns a random graph with the given number of states, generated from the
+	 * given seed, in which p1 holds in most states and p2 in few.
+	 */
+	private static LabelledPartialTransitionSystem random(int states, long seed) {
+		Random random = new Random(seed);
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		builder.addField("algo.JavaFields.p1", 0);
+		builder.addField("algo.JavaFields.p2", 1);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+			int successors = random.nextInt(2 * DEGREE + 1);
+			for (int i = 0; i < successors; i++) {
+				builder.addTransition(state, random.nextInt(states));
+			}
+			if (random.nextInt(10) > 0) {
+				builder.addLabel(state, 0);
+			}
+			if (random.nextInt(10) == 0) {
+				builder.addLabel(state, 1);
+			}
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Returns the successors, or the predecessors if reverse, of the states of the
+	 * given system.
+	 */
+	private static CompressedSparseRow adjacency(LabelledPartialTransitionSystem pts, boolean reverse) {
+		int edges = pts.getNumberOfTransitions();
+		int[] sources = new int[edges];
+		int[] targets = new int[edges];
+		for (int edge = 0; edge < edges; edge++) {
+			sources[edge] = pts.getSourceIndex(edge);
+			targets[edge] = pts.getTargetIndex(edge);
+		}
+		return reverse ? new CompressedSparseRow(pts.getNumberOfStates(), targets, sources, edges)
+				: new CompressedSparseRow(pts.getNumberOfStates(), sources, targets, edges);
+	}
+
+	/*
+	 * Returns the (indices of the) states that satisfy EG p, where p holds in the
+	 * given states, using the greatest fixpoint that Model used before the
+	 * ExistsAlwaysEngine, with the successor counts in a HashMap.
+	 */
+	private static BitSet existsAlways(CompressedSparseRow post, CompressedSparseRow pre, BitSet states) {
+		int n = post.size();
+		BitSet T = (BitSet) states.clone();
+		List<Integer> E = new ArrayList<Integer>();
+		for (int s = T.nextClearBit(0); s < n; s = T.nextClearBit(s + 1)) {
+			E.add(s);
+		}
+
+		Map<Integer, Integer> count = new HashMap<Integer, Integer>();
+		for (int s = T.nextSetBit(0); s >= 0; s = T.nextSetBit(s + 1)) {
+			count.put(s, post.degree(s));
+		}
+		while (!E.isEmpty()) {
+			int sP = E.remove(0);
+			for (int position = pre.start(sP); position < pre.end(sP); position++) {
+				int s = pre.get(position);
+				if (T.get(s)) {
+					count.compute(s, (k, v) -> v - 1);
+					if (count.get(s) == 0) {
+						T.clear(s);
+						E.add(s);
+					}
+				}
+			}
+		}
+		return T;
+	}
+
+	/*
+	 * Checks that both engines give the same result for EG of the given formula
+	 * as the fixpoint they replaced.
+	 */
+	private static void assertSameAsFixpoint(LabelledPartialTransitionSystem pts, Formula formula) {
+		Formula eg = new ExistsAlways(formula);
+		BitSet expected = existsAlways(adjacency(pts, false), adjacency(pts, true),
+				model(pts, ExistsAlwaysEngine.COUNTING).check(formula).getSatStates().toBitSet());
+		for (ExistsAlwaysEngine engine : ExistsAlwaysEngine.values()) {
+			assertEquals(expected, model(pts, engine).check(eg).getSatStates().toBitSet(), engine + " " + eg);
+		}
+	}
+
+	@RepeatedTest(TIMES)
+	void testRandom() {
+		LabelledPartialTransitionSystem pts = new LabelledPartialTransitionSystem();
+		Model counting = model(pts, ExistsAlwaysEngine.COUNTING);
+		Model scc = model(pts, ExistsAlwaysEngine.SCC);
+		for (Formula formula : FORMULAS) {
+			assertEquals(counting.check(formula), scc.check(formula), formula.toString());
+		}
+		assertSameAsFixpoint(pts, P1);
+		assertSameAsFixpoint(pts, new Or(P1, P2));
+	}
+
+	@Test
+	void testLarge() {
+		LabelledPartialTransitionSystem pts = random(STATES, STATES);
+		for (Formula formula : FORMULAS) {
+			assertEquals(model(pts, ExistsAlwaysEngine.COUNTING).check(formula),
+					model(pts, ExistsAlwaysEngine.SCC).check(formula), formula.toString());
+		}
+		assertSameAsFixpoint(pts, P1);
+		assertSameAsFixpoint(pts, new Or(P1, P2));
+	}
+
+	/*
+	 * Times EG with the fixpoint that was replaced and with both engines, model
+	 * construction excluded. Not run by the test task; run it with the benchmark
+	 * task.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmark() {
+		LabelledPartialTransitionSystem pts = random(BENCHMARK_STATES, BENCHMARK_STATES);
+		for (Formula formula : new Formula[] { P1, new Or(P1, P2) }) {
+			Formula eg = new ExistsAlways(formula);
+			CompressedSparseRow post = adjacency(pts, false);
+			CompressedSparseRow pre = adjacency(pts, true);
+			Model counting = model(pts, ExistsAlwaysEngine.COUNTING);
+			Model scc = model(pts, ExistsAlwaysEngine.SCC);
+			BitSet states = counting.check(formula).getSatStates().toBitSet();
+			scc.check(formula);
+
+			long start = System.nanoTime();
+			BitSet expected = existsAlways(post, pre, states);
+			long fixpoint = System.nanoTime() - start;
+			start = System.nanoTime();
+			StateSets actual = counting.check(eg);
+			long countingTime = System.nanoTime() - start;
+			assertEquals(expected, actual.getSatStates().toBitSet(), eg.toString());
+			start = System.nanoTime();
+			actual = scc.check(eg);
+			long sccTime = System.nanoTime() - start;
+			assertEquals(expected, actual.getSatStates().toBitSet(), eg.toString());
+			System.out.printf("%s: fixpoint %d ms, counting %d ms, scc %d ms%n", eg, fixpoint / 1000000,
+					countingTime / 1000000, sccTime / 1000000);
+		}
+	}
+}
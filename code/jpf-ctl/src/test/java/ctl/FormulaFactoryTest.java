@@ -0,0 +1,33 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.RepeatedTest;
+
+/**
+ * Checks that parsing the textual representation of a formula twice gives the
+ * same object, and that formulas built by the factory share equal subformulas.
+ */
+public class FormulaFactoryTest extends BaseTest {
+
+	@RepeatedTest(TIMES)
+	void testParse() {
+		Formula randomFormula = Formula.random();
+		Formula first = parse(randomFormula.toString());
+		Formula second = parse(randomFormula.toString());
+		assertSame(randomFormula, first);
+		assertSame(first, second);
+	}
+
+	@RepeatedTest(TIMES)
+	void testSharing() {
+		Formula left = Formula.random();
+		Formula right = parse(left.toString());
+		And and = FormulaFactory.and(left, right);
+		assertSame(and.getLeft(), and.getRight());
+		assertSame(and, FormulaFactory.and(right, left));
+		assertEquals(new And(left, right), and);
+		assertEquals(new And(left, right).hashCode(), and.hashCode());
+	}
+}
@@ -0,0 +1,66 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.RepeatedTest;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.StateSet;
+
+/**
+ * Checks that the labels of a labelled partial transition system are stored
+ * and indexed correctly, both when they fit in a bit mask and when they do not.
+ */
+public class LabelledPartialTransitionSystemTest {
+	private static final int TIMES = 100;
+	private static final int MAX_STATES = 200;
+
+	private static final Random RANDOM = new Random();
+
+	/*
+	 * Builds a random system whose labels are smaller than the given bound and
+	 * checks its labelling and label index against the labels that were added.
+	 */
+	private void check(int bound) {
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		Map<Integer, Set<Integer>> expected = new HashMap<Integer, Set<Integer>>();
+		int states = 1 + RANDOM.nextInt(MAX_STATES);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+			int labels = RANDOM.nextInt(4);
+			for (int i = 0; i < labels; i++) {
+				int label = RANDOM.nextInt(bound);
+				builder.addLabel(state, label);
+				expected.computeIfAbsent(state, s -> new HashSet<Integer>()).add(label);
+			}
+		}
+		LabelledPartialTransitionSystem pts = builder.build();
+
+		assertEquals(expected, pts.getLabelling());
+		for (int label = 0; label < bound; label++) {
+			StateSet labelled = pts.getStatesWithLabel(label);
+			for (int index = 0; index < pts.getNumberOfStates(); index++) {
+				Set<Integer> labels = expected.get(pts.getState(index));
+				boolean has = labels != null && labels.contains(label);
+				assertEquals(has, labelled.contains(index));
+				assertEquals(has, pts.hasLabel(index, label));
+			}
+		}
+	}
+
+	@RepeatedTest(TIMES)
+	void testMasks() {
+		check(64);
+	}
+
+	@RepeatedTest(TIMES)
+	void testDictionary() {
+		check(200);
+	}
+}
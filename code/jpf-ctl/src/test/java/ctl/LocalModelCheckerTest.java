@@ -0,0 +1,53 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.RepeatedTest;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.LocalModelChecker;
+import algo.Model;
+
+/**
+ * Checks that the local model checker decides for each state whether it
+ * satisfies a formula in the same way as the model does.
+ */
+public class LocalModelCheckerTest extends BaseTest {
+	private static LabelledPartialTransitionSystem pts;
+	private static Model model;
+	private static LocalModelChecker checker;
+
+	@BeforeAll
+	static void setUp() {
+		pts = randomSystem(200);
+		model = new Model(pts);
+		checker = new LocalModelChecker(pts);
+	}
+
+	@RepeatedTest(TIMES)
+	void test() {
+		Formula formula = randomFormula(5);
+		for (int state : pts.getStates()) {
+			assertEquals(model.check(formula).getSat().contains(state), checker.check(formula, state),
+					withSeeds(formula + " in state " + state));
+		}
+	}
+
+	@RepeatedTest(TIMES)
+	void testFresh() {
+		assertSameAsModel((pts, formula) -> {
+			Set<Integer> sat = new HashSet<Integer>();
+			for (int state : pts.getStates()) {
+				// a fresh checker decides the state without the results for other states
+				if (new LocalModelChecker(pts).check(formula, state)) {
+					sat.add(state);
+				}
+			}
+			return sat;
+		});
+	}
+}
@@ -0,0 +1,60 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import algo.LongHashSet;
+
+/**
+ * Checks that a primitive set of longs contains the same elements as a hash
+ * set, for packed transitions and arbitrary longs, including 0.
+ */
+public class LongHashSetTest {
+	private static final int TIMES = 10;
+	private static final int MAX_ELEMENTS = 100000;
+
+	private static final Random RANDOM = new Random();
+
+	@RepeatedTest(TIMES)
+	void testRandom() {
+		LongHashSet actual = new LongHashSet();
+		Set<Long> expected = new HashSet<Long>();
+		int states = 1 + RANDOM.nextInt(1000);
+		for (int i = RANDOM.nextInt(MAX_ELEMENTS); i > 0; i--) {
+			long element;
+			if (RANDOM.nextBoolean()) {
+				// a transition, whose source may be the initial state -1
+				int source = RANDOM.nextInt(states + 1) - 1;
+				int target = RANDOM.nextInt(states);
+				element = (long) source << 32 | (target & 0xFFFFFFFFL);
+			} else {
+				element = RANDOM.nextInt(4) == 0 ? 0 : RANDOM.nextLong();
+			}
+			assertEquals(expected.add(element), actual.add(element));
+			assertTrue(actual.contains(element));
+		}
+		assertEquals(expected.size(), actual.size());
+		for (long element : expected) {
+			assertTrue(actual.contains(element));
+		}
+	}
+
+	@Test
+	void testZero() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(1));
+		assertEquals(1, set.size());
+	}
+}
@@ -0,0 +1,197 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.io.TempDir;
+
+import algo.Adjacency;
+import algo.CompressedSparseRow;
+import algo.LabelledPartialTransitionSystem;
+import algo.MappedCompressedSparseRow;
+import algo.Model;
+import algo.StateSet;
+import algo.StateSets;
+
+/**
+ * Checks that the transitions kept in memory-mapped files are the same as
+ * those kept on the heap, that a system built in memory-mapped files is the
+ * same as one built on the heap, and that a model gives the same results with
+ * either.
+ */
+public class MappedCompressedSparseRowTest {
+	private static final int TIMES = 10;
+	private static final int MAX_STATES = 10000;
+
+	private static final Random RANDOM = new Random();
+
+	private static final Formula P1 = new AtomicProposition("algo.JavaFields.p1");
+	private static final Formula P2 = new AtomicProposition("algo.JavaFields.p2");
+
+	private static final Formula[] FORMULAS = { new ExistsNext(P1), new ForAllNext(P1), new ExistsEventually(P2),
+			new ExistsUntil(P1, P2), new ForAllAlways(P1), new ExistsAlways(P1), new ForAllUntil(P1, P2),
+			new ForAllEventually(new And(P1, P2)), new ExistsUntil(P1, new ForAllAlways(new Or(P1, P2))) };
+
+	@TempDir
+	Path directory;
+
+	/*
+	 * Returns a random system with the given number of states.
+	 */
+	private static LabelledPartialTransitionSystem random(int states) {
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		builder.addField("algo.JavaFields.p1", 0);
+		builder.addField("algo.JavaFields.p2", 1);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+			for (int i = RANDOM.nextInt(4); i > 0; i--) {
+				builder.addTransition(state, RANDOM.nextInt(states));
+			}
+			if (RANDOM.nextInt(10) > 0) {
+				builder.addLabel(state, 0);
+			}
+			if (RANDOM.nextInt(20) == 0) {
+				builder.addLabel(state, 1);
+			}
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Adds a random system with the given number of states, whose ids are spread
+	 * over the negative and positive ints, to the given builder. The system has
+	 * duplicate transitions, states that only occur in transitions, partial
+	 * states, and labels that do not fit in a mask.
+	 */
+	private static void random(LabelledPartialTransitionSystem.Builder builder, int states, long seed) {
+		Random random = new Random(seed);
+		int[] ids = new int[states];
+		for (int state = 0; state < states; state++) {
+			ids[state] = random.nextInt();
+		}
+		builder.addField("algo.JavaFields.p1", 0);
+		builder.addField("algo.JavaFields.p2", 1);
+		for (int state = 0; state < states; state++) {
+			if (random.nextInt(10) > 0) {
+				builder.addState(ids[state]);
+			}
+			for (int i = random.nextInt(6); i > 0; i--) {
+				builder.addTransition(ids[state], ids[random.nextInt(states)]);
+			}
+			if (random.nextInt(10) == 0) {
+				builder.addPartial(ids[state]);
+			}
+			if (random.nextInt(10) > 0) {
+				builder.addLabelled(ids[state]);
+				for (int i = random.nextInt(3); i > 0; i--) {
+					builder.addLabel(ids[state], random.nextInt(2));
+				}
+				if (random.nextInt(100) == 0) {
+					builder.addLabel(ids[state], 100);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Checks that the given sets contain the same states.
+	 */
+	private static void assertSameStates(StateSet expected, StateSet actual) {
+		assertEquals(expected.toBitSet(), actual.toBitSet());
+		assertEquals(expected.cardinality(), actual.cardinality());
+		int size = expected.toBitSet().length() + Integer.SIZE;
+		for (int index = 0; index < size; index++) {
+			assertEquals(expected.contains(index), actual.contains(index));
+			assertEquals(expected.nextSetBit(index), actual.nextSetBit(index));
+			assertEquals(expected.nextClearBit(index), actual.nextClearBit(index));
+		}
+	}
+
+	/*
+	 * Checks that the given CSRs have the same neighbours in the same order.
+	 */
+	private static void assertSameAdjacency(Adjacency expected, Adjacency actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int node = 0; node < expected.size(); node++) {
+			assertEquals(expected.start(node), actual.start(node));
+			assertEquals(expected.end(node), actual.end(node));
+			assertEquals(expected.degree(node), actual.degree(node));
+			for (int position = expected.start(node); position < expected.end(node); position++) {
+				assertEquals(expected.get(position), actual.get(position));
+			}
+		}
+	}
+
+	@RepeatedTest(TIMES)
+	void testAdjacency() throws IOException {
+		LabelledPartialTransitionSystem pts = random(1 + RANDOM.nextInt(MAX_STATES));
+		int n = pts.getNumberOfStates();
+		int edges = pts.getNumberOfTransitions();
+		int[] sources = new int[edges];
+		int[] targets = new int[edges];
+		for (int edge = 0; edge < edges; edge++) {
+			sources[edge] = pts.getSourceIndex(edge);
+			targets[edge] = pts.getTargetIndex(edge);
+		}
+		assertSameAdjacency(new CompressedSparseRow(n, sources, targets, edges),
+				MappedCompressedSparseRow.of(pts, false, this.directory));
+		assertSameAdjacency(new CompressedSparseRow(n, targets, sources, edges),
+				MappedCompressedSparseRow.of(pts, true, this.directory));
+	}
+
+	@RepeatedTest(TIMES)
+	void testSystem() throws IOException {
+		int states = 1 + RANDOM.nextInt(MAX_STATES);
+		long seed = RANDOM.nextLong();
+		LabelledPartialTransitionSystem.Builder onHeap = new LabelledPartialTransitionSystem.Builder();
+		LabelledPartialTransitionSystem.Builder inFiles = new LabelledPartialTransitionSystem.Builder(this.directory);
+		random(onHeap, states, seed);
+		random(inFiles, states, seed);
+		LabelledPartialTransitionSystem expected = onHeap.build();
+		LabelledPartialTransitionSystem actual = inFiles.build();
+
+		assertEquals(expected.getStates(), actual.getStates());
+		assertEquals(expected.getTransitions(), actual.getTransitions());
+		assertEquals(expected.getPartial(), actual.getPartial());
+		assertEquals(expected.getLabelling(), actual.getLabelling());
+		assertSameAdjacency(expected.getSuccessors(), actual.getSuccessors());
+		for (int index = 0; index < expected.getNumberOfStates(); index++) {
+			assertEquals(expected.getState(index), actual.getState(index));
+			assertEquals(index, actual.getIndex(actual.getState(index)));
+			assertEquals(expected.isPartial(index), actual.isPartial(index));
+		}
+		for (int transition = 0; transition < expected.getNumberOfTransitions(); transition++) {
+			assertEquals(expected.getSourceIndex(transition), actual.getSourceIndex(transition));
+		}
+		for (int label : new int[] { 0, 1, 100, 2 }) {
+			assertSameStates(expected.getStatesWithLabel(label), actual.getStatesWithLabel(label));
+			for (int index = 0; index < expected.getNumberOfStates(); index++) {
+				assertEquals(expected.hasLabel(index, label), actual.hasLabel(index, label));
+			}
+		}
+
+		Model heap = new Model(expected);
+		Model mapped = new Model(actual, this.directory);
+		for (Formula formula : FORMULAS) {
+			StateSets expectedSets = heap.check(formula);
+			StateSets actualSets = mapped.check(formula);
+			assertEquals(expectedSets, actualSets, formula.toString());
+		}
+	}
+
+	@RepeatedTest(TIMES)
+	void testModel() throws IOException {
+		LabelledPartialTransitionSystem pts = random(1 + RANDOM.nextInt(MAX_STATES));
+		Model heap = new Model(pts);
+		Model mapped = new Model(pts, this.directory);
+		for (Formula formula : FORMULAS) {
+			StateSets expected = heap.check(formula);
+			StateSets actual = mapped.check(formula);
+			assertEquals(expected, actual, formula.toString());
+		}
+	}
+}
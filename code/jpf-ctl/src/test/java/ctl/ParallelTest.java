@@ -0,0 +1,104 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.Model;
+import algo.StateSets;
+
+/**
+ * Checks that the model checker gives the same results whether formulas are
+ * checked by one or several threads, on systems large enough to be split
+ * among the threads.
+ */
+public class ParallelTest {
+	private static final int TIMES = 5;
+	private static final int MAX_STATES = 300000;
+	private static final int PARALLELISM = 4;
+	private static final int MODELS = 1000;
+
+	private static final Random RANDOM = new Random();
+
+	private static final Formula P1 = new AtomicProposition("algo.JavaFields.p1");
+	private static final Formula P2 = new AtomicProposition("algo.JavaFields.p2");
+
+	private static final Formula[] FORMULAS = { new ExistsNext(P1), new ForAllNext(P1), new ExistsEventually(P2),
+			new ExistsUntil(P1, P2), new ForAllAlways(P1), new ForAllUntil(P1, P2),
+			new ExistsUntil(P1, new ForAllAlways(new Or(P1, P2))),
+			new And(new ExistsEventually(P2), new Or(new ForAllAlways(P1), new ExistsEventually(P2))),
+			new Iff(new Implies(new ExistsNext(P2), new ForAllUntil(P1, P2)), new ExistsEventually(P2)) };
+
+	/*
+	 * Returns a random system with the given number of states, few of which
+	 * have many predecessors, so that some levels of the search are wide.
+	 */
+	private static LabelledPartialTransitionSystem random(int states) {
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		builder.addField("algo.JavaFields.p1", 0);
+		builder.addField("algo.JavaFields.p2", 1);
+		for (int state = 0; state < states; state++) {
+			builder.addState(state);
+			int successors = RANDOM.nextInt(4);
+			for (int i = 0; i < successors; i++) {
+				int target = RANDOM.nextBoolean() ? RANDOM.nextInt(states) : RANDOM.nextInt(1 + states / 100);
+				builder.addTransition(state, target);
+			}
+			if (RANDOM.nextInt(10) > 0) {
+				builder.addLabel(state, 0);
+			}
+			if (RANDOM.nextInt(50) == 0) {
+				builder.addLabel(state, 1);
+			}
+		}
+		return builder.build();
+	}
+
+	@RepeatedTest(TIMES)
+	void test() {
+		LabelledPartialTransitionSystem pts = random(1 + RANDOM.nextInt(MAX_STATES));
+		Model sequential = new Model(pts);
+		try (Model parallel = new Model(pts)) {
+			parallel.setParallelism(PARALLELISM);
+			parallel.setParallelThreshold(0);
+			for (Formula formula : FORMULAS) {
+				StateSets expected = sequential.check(formula);
+				StateSets actual = parallel.check(formula);
+				assertEquals(expected, actual, formula.toString());
+			}
+		}
+	}
+
+	/*
+	 * Returns the number of live threads of pools other than the common one.
+	 */
+	private static long poolThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("ForkJoinPool-")).count();
+	}
+
+	/*
+	 * Closing a model ends its threads, so that creating many models does not
+	 * exhaust the threads of the virtual machine.
+	 */
+	@Test
+	void testClose() throws InterruptedException {
+		LabelledPartialTransitionSystem pts = random(100);
+		for (int i = 0; i < MODELS; i++) {
+			try (Model parallel = new Model(pts)) {
+				parallel.setParallelism(PARALLELISM);
+				parallel.setParallelThreshold(0);
+				parallel.check(FORMULAS[FORMULAS.length - 1]);
+			}
+		}
+		for (int i = 0; i < 100 && poolThreads() > PARALLELISM; i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(poolThreads() <= PARALLELISM, poolThreads() + " threads are still alive");
+	}
+}
@@ -0,0 +1,52 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.RepeatedTest;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.Model;
+
+/**
+ * Checks that formulas compiled into a plan, which is how formulas are checked
+ * by a single thread, give the same results as formulas evaluated operator by
+ * operator, which is how they are checked by several threads.
+ */
+public class PlanTest extends BaseTest {
+	private static LabelledPartialTransitionSystem pts;
+	private static Model compiled;
+	private static Model evaluated;
+
+	@BeforeAll
+	static void setUp() {
+		pts = randomSystem(200);
+		compiled = new Model(pts);
+		evaluated = new Model(pts);
+		evaluated.setParallelism(2);
+		evaluated.setParallelThreshold(0);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		evaluated.close();
+	}
+
+	@RepeatedTest(TIMES)
+	void test() {
+		Formula formula = randomFormula(5);
+		assertEquals(evaluated.check(formula), compiled.check(formula), withSeeds(formula));
+	}
+
+	@RepeatedTest(TIMES)
+	void testFresh() {
+		assertSameAsModel((pts, formula) -> {
+			try (Model evaluated = new Model(pts)) {
+				evaluated.setParallelism(2);
+				evaluated.setParallelThreshold(0);
+				return evaluated.check(formula).getSat();
+			}
+		});
+	}
+}
@@ -0,0 +1,70 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import algo.Model;
+
+/**
+ * Checks the rewrite rules of the simplifier, and that a simplified formula is
+ * satisfied by the same states as the original formula.
+ */
+public class SimplifyTest extends BaseTest {
+	private static final Formula P = ATOMS[0];
+	private static final Formula Q = ATOMS[1];
+
+	@Test
+	void testIdempotence() {
+		assertEquals(new ForAllAlways(P), new ForAllAlways(new ForAllAlways(P)).simplify());
+		assertEquals(new ExistsEventually(P), new ExistsEventually(new ExistsEventually(P)).simplify());
+		assertEquals(new ForAllEventually(P), new ForAllEventually(new ForAllEventually(P)).simplify());
+		assertEquals(new ExistsAlways(P), new ExistsAlways(new ExistsAlways(P)).simplify());
+		assertEquals(P, new And(P, P).simplify());
+		assertEquals(P, new Or(P, P).simplify());
+	}
+
+	@Test
+	void testAbsorption() {
+		assertEquals(P, new And(P, new Or(Q, P)).simplify());
+		assertEquals(P, new Or(new And(Q, P), P).simplify());
+		assertEquals(P, new And(P, new ExistsEventually(P)).simplify());
+		assertEquals(new ExistsEventually(P), new Or(P, new ExistsEventually(P)).simplify());
+		assertEquals(new ForAllAlways(P), new ExistsAlways(new ForAllAlways(P)).simplify());
+		assertEquals(new ExistsEventually(P), new ForAllEventually(new ExistsEventually(P)).simplify());
+	}
+
+	@Test
+	void testTautologyAndContradiction() {
+		assertEquals(new True(), new Or(P, new Not(P)).simplify());
+		assertEquals(new False(), new And(new Not(P), P).simplify());
+		assertEquals(new True(), new Implies(P, new Or(P, Q)).simplify());
+		assertEquals(new True(), new Iff(P, P).simplify());
+		assertEquals(new False(), new Iff(P, new Not(P)).simplify());
+	}
+
+	@Test
+	void testTemporalIdentities() {
+		assertEquals(new ExistsEventually(Q), new ExistsUntil(new True(), Q).simplify());
+		assertEquals(new ForAllEventually(Q), new ForAllUntil(new True(), Q).simplify());
+		assertEquals(Q, new ExistsUntil(new False(), Q).simplify());
+		assertEquals(Q, new ForAllUntil(Q, Q).simplify());
+		assertEquals(new ExistsEventually(Q), new ExistsEventually(new ExistsUntil(P, Q)).simplify());
+		assertEquals(new Iff(P, Q), new Iff(P, Q).simplify());
+	}
+
+	@RepeatedTest(TIMES)
+	void testMemoized() {
+		Formula formula = Formula.random();
+		Formula simplified = formula.simplify();
+		assertSame(simplified, formula.simplify());
+		assertSame(simplified, parse(formula.toString()).simplify());
+	}
+
+	@RepeatedTest(TIMES)
+	void testEquivalent() {
+		assertSameAsModel((pts, formula) -> new Model(pts).check(formula.simplify()).getSat());
+	}
+}
@@ -0,0 +1,144 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.Transition;
+import listeners.StateProperty;
+
+/**
+ * Checks that invariants and reachability properties are decided by the states
+ * that violate or satisfy them, and by the end of the exploration otherwise.
+ */
+public class StatePropertyTest extends BaseTest {
+
+	/*
+	 * Returns the verdict of the given property decided by a state with the given
+	 * atomic propositions.
+	 */
+	private static Boolean visit(StateProperty property, String... labels) {
+		Set<String> set = new HashSet<String>(Arrays.asList(labels));
+		return property.visit(set::contains);
+	}
+
+	@Test
+	void testSupported() {
+		assertNotNull(StateProperty.of(parse("AG (algo.JavaFields.p1 && !algo.JavaFields.p2)")));
+		assertNotNull(StateProperty.of(parse("EF (algo.JavaFields.p1 -> algo.JavaFields.p2)")));
+		assertNotNull(StateProperty.of(parse("! AG algo.JavaFields.p1")));
+		assertNull(StateProperty.of(parse("AG EF algo.JavaFields.p1")));
+		assertNull(StateProperty.of(parse("AF algo.JavaFields.p1")));
+		assertNull(StateProperty.of(parse("algo.JavaFields.p1")));
+	}
+
+	@Test
+	void testInvariant() {
+		StateProperty property = StateProperty.of(parse("AG (algo.JavaFields.p1 || algo.JavaFields.p2)"));
+		assertNull(visit(property, "algo.JavaFields.p1"));
+		assertNull(visit(property, "algo.JavaFields.p2"));
+		assertEquals(false, visit(property, "algo.JavaFields.p3"));
+		assertEquals(true, property.finish());
+	}
+
+	@Test
+	void testReachability() {
+		StateProperty property = StateProperty.of(parse("EF (algo.JavaFields.p1 <-> algo.JavaFields.p2)"));
+		assertNull(visit(property, "algo.JavaFields.p1"));
+		assertEquals(true, visit(property));
+		assertEquals(false, property.finish());
+	}
+
+	@Test
+	void testNegated() {
+		StateProperty property = StateProperty.of(parse("! EF algo.JavaFields.p1"));
+		assertNull(visit(property));
+		assertEquals(false, visit(property, "algo.JavaFields.p1"));
+		assertEquals(true, property.finish());
+
+		property = StateProperty.of(parse("! AG algo.JavaFields.p1"));
+		assertEquals(true, visit(property));
+		assertEquals(false, property.finish());
+	}
+
+	/*
+	 * The verdicts agree with the model for random invariants and reachability
+	 * properties that are decided by a reachable state or by all of them.
+	 */
+	@RepeatedTest(TIMES)
+	void testModel() {
+		assertSameAsModel(() -> {
+			Formula stateFormula = randomStateFormula(3);
+			return RANDOM.nextBoolean() ? new ForAllAlways(stateFormula) : new ExistsEventually(stateFormula);
+		}, (pts, formula) -> {
+			Set<Integer> sat = new HashSet<Integer>();
+			for (int state : pts.getStates()) {
+				if (verdict(pts, formula, state)) {
+					sat.add(state);
+				}
+			}
+			return sat;
+		});
+	}
+
+	/*
+	 * Returns the verdict of the property of the given formula in the given
+	 * state, as decided by the search from that state.
+	 */
+	private static boolean verdict(LabelledPartialTransitionSystem pts, Formula formula, int initial) {
+		StateProperty property = StateProperty.of(formula);
+		for (int state : reachable(pts, initial)) {
+			Set<Integer> labels = pts.getLabelling().get(state);
+			Boolean verdict = property.visit(name -> {
+				Integer label = pts.getFields().get(name);
+				return labels != null && label != null && labels.contains(label);
+			});
+			if (verdict != null) {
+				return verdict;
+			}
+		}
+		return property.finish();
+	}
+
+	/*
+	 * Returns the states reachable from the given state.
+	 */
+	private static Set<Integer> reachable(LabelledPartialTransitionSystem pts, int initial) {
+		Set<Integer> reached = new HashSet<Integer>();
+		Deque<Integer> stack = new ArrayDeque<Integer>();
+		stack.push(initial);
+		while (!stack.isEmpty()) {
+			int state = stack.pop();
+			if (reached.add(state)) {
+				for (Transition transition : pts.getTransitions()) {
+					if (transition.source == state) {
+						stack.push(transition.target);
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	/*
+	 * Returns a random formula without temporal operators of at most the given
+	 * depth.
+	 */
+	private static Formula randomStateFormula(int depth) {
+		Formula formula;
+		do {
+			formula = randomFormula(depth);
+		} while (StateProperty.of(new ForAllAlways(formula)) == null);
+		return formula;
+	}
+}
@@ -0,0 +1,112 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+
+import algo.BitStateSet;
+import algo.ComplementStateSet;
+import algo.CompressedStateSet;
+import algo.StateSet;
+
+/**
+ * Checks that compressed and complemented state sets contain the same states
+ * as the bit sets they are built from, for sparse, clustered and dense sets
+ * that span several chunks.
+ */
+public class StateSetTest {
+	private static final int TIMES = 100;
+	private static final int MAX_STATES = 300000;
+
+	private static final Random RANDOM = new Random();
+
+	/*
+	 * Returns a random set mixing sparse states, long ranges and dense regions.
+	 */
+	private static BitSet random() {
+		BitSet bits = new BitSet();
+		int parts = 1 + RANDOM.nextInt(10);
+		for (int part = 0; part < parts; part++) {
+			int start = RANDOM.nextInt(MAX_STATES);
+			int length = RANDOM.nextInt(70000);
+			switch (RANDOM.nextInt(3)) {
+			case 0 :
+				bits.set(start);
+				break;
+			case 1 :
+				bits.set(start, start + length);
+				break;
+			default :
+				for (int i = start; i < start + length; i++) {
+					if (RANDOM.nextBoolean()) {
+						bits.set(i);
+					}
+				}
+			}
+		}
+		return bits;
+	}
+
+	@RepeatedTest(TIMES)
+	void testCompressed() {
+		BitSet bits = random();
+		StateSet set = new CompressedStateSet((BitSet) bits.clone());
+
+		assertEquals(bits, set.toBitSet());
+		assertEquals(bits.cardinality(), set.cardinality());
+		for (int i = 0; i < 1000; i++) {
+			int index = RANDOM.nextInt(MAX_STATES + 70000);
+			assertEquals(bits.get(index), set.contains(index));
+			assertEquals(bits.nextSetBit(index), set.nextSetBit(index));
+		}
+
+		BitSet other = random();
+		BitSet expected = (BitSet) other.clone();
+		BitSet actual = (BitSet) other.clone();
+		expected.and(bits);
+		set.retainIn(actual);
+		assertEquals(expected, actual);
+
+		expected = (BitSet) other.clone();
+		actual = (BitSet) other.clone();
+		expected.or(bits);
+		set.addTo(actual);
+		assertEquals(expected, actual);
+
+		expected = (BitSet) other.clone();
+		actual = (BitSet) other.clone();
+		expected.andNot(bits);
+		set.removeFrom(actual);
+		assertEquals(expected, actual);
+	}
+
+	@RepeatedTest(TIMES)
+	void testOf() {
+		BitSet bits = random();
+		StateSet set = StateSet.of((BitSet) bits.clone());
+		assertEquals(bits, set.toBitSet());
+		assertEquals(bits, new BitStateSet(bits).toBitSet());
+	}
+
+	@RepeatedTest(TIMES)
+	void testComplement() {
+		BitSet bits = random();
+		int size = bits.length() + RANDOM.nextInt(1000);
+		BitSet complement = (BitSet) bits.clone();
+		complement.flip(0, size);
+		StateSet set = ComplementStateSet.of(StateSet.of(bits), size);
+
+		assertEquals(complement, set.toBitSet());
+		assertEquals(complement.cardinality(), set.cardinality());
+		for (int i = 0; i < 1000; i++) {
+			int index = RANDOM.nextInt(size);
+			assertEquals(complement.get(index), set.contains(index));
+			assertEquals(complement.nextSetBit(index), set.nextSetBit(index));
+			assertEquals(complement.nextClearBit(index), set.nextClearBit(index));
+		}
+		assertEquals(bits, ComplementStateSet.of(set, size).toBitSet());
+	}
+}
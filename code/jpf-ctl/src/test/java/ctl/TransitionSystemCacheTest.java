@@ -0,0 +1,132 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import algo.LabelledPartialTransitionSystem;
+import algo.TransitionSystemCache;
+
+/**
+ * Checks that the transition system cache returns the systems it stored,
+ * removes the least recently used systems when it grows too large, and that its
+ * keys change whenever the class files, the settings or the tools change.
+ */
+public class TransitionSystemCacheTest extends BaseTest {
+	private static final Random RANDOM = new Random();
+
+	private static final List<Class<?>> TOOLS = Arrays.asList(LabelledPartialTransitionSystem.class);
+
+	@TempDir
+	Path directory;
+
+	/*
+	 * Checks that the given systems have the same states, transitions, partial
+	 * states, labelling and fields.
+	 */
+	private static void assertSameSystem(LabelledPartialTransitionSystem expected,
+			LabelledPartialTransitionSystem actual) {
+		assertEquals(expected.getStates(), actual.getStates());
+		assertEquals(expected.getTransitions(), actual.getTransitions());
+		assertEquals(expected.getPartial(), actual.getPartial());
+		assertEquals(expected.getLabelling(), actual.getLabelling());
+		assertEquals(expected.getFields(), actual.getFields());
+	}
+
+	@RepeatedTest(TIMES)
+	void testRoundTrip() throws IOException {
+		TransitionSystemCache cache = new TransitionSystemCache(this.directory, TransitionSystemCache.DEFAULT_MAXIMUM_SIZE);
+		LabelledPartialTransitionSystem system = new LabelledPartialTransitionSystem();
+		cache.put("system", system);
+		assertSameSystem(system, cache.get("system"));
+	}
+
+	@RepeatedTest(TIMES)
+	void testLargeLabels() throws IOException {
+		TransitionSystemCache cache = new TransitionSystemCache(this.directory, TransitionSystemCache.DEFAULT_MAXIMUM_SIZE);
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		int states = 1 + RANDOM.nextInt(100);
+		for (int state = 0; state < states; state++) {
+			builder.addTransition(state, RANDOM.nextInt(states));
+			builder.addLabel(state, RANDOM.nextInt(200));
+		}
+		builder.addPartial(RANDOM.nextInt(states));
+		builder.addField("algo.JavaFields.p1", 100);
+		LabelledPartialTransitionSystem system = builder.build();
+		cache.put("system", system);
+		assertSameSystem(system, cache.get("system"));
+	}
+
+	@Test
+	void testMissing() throws IOException {
+		TransitionSystemCache cache = new TransitionSystemCache(this.directory.resolve("cache"),
+				TransitionSystemCache.DEFAULT_MAXIMUM_SIZE);
+		assertNull(cache.get("missing"));
+		Files.createDirectories(this.directory.resolve("cache"));
+		Files.write(this.directory.resolve("cache").resolve("corrupt.lpts"), new byte[] { 1, 2, 3 });
+		assertNull(cache.get("corrupt"));
+		cache.put("corrupt", new LabelledPartialTransitionSystem());
+		assertNotNull(cache.get("corrupt"));
+	}
+
+	@Test
+	void testKey() throws IOException {
+		Path classes = Files.createDirectories(this.directory.resolve("classes").resolve("example"));
+		Path file = classes.resolve("Main.class");
+		Files.write(file, new byte[] { 1, 2, 3 });
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put("target", "example.Main");
+		settings.put("target.args", null);
+
+		String key = TransitionSystemCache.getKey(this.directory.resolve("classes"), settings, TOOLS);
+		assertEquals(key, TransitionSystemCache.getKey(this.directory.resolve("classes"), settings, TOOLS));
+
+		Files.write(classes.resolve("Main.java"), new byte[] { 4 });
+		assertEquals(key, TransitionSystemCache.getKey(this.directory.resolve("classes"), settings, TOOLS));
+
+		Files.write(file, new byte[] { 1, 2, 4 });
+		String changed = TransitionSystemCache.getKey(this.directory.resolve("classes"), settings, TOOLS);
+		assertNotEquals(key, changed);
+
+		settings.put("target.args", "1");
+		String argument = TransitionSystemCache.getKey(this.directory.resolve("classes"), settings, TOOLS);
+		assertNotEquals(changed, argument);
+
+		// another version of the tools gives another key
+		assertNotEquals(argument, TransitionSystemCache.getKey(this.directory.resolve("classes"), settings,
+				Arrays.asList(TransitionSystemCache.class)));
+	}
+
+	@Test
+	void testEvict() throws IOException {
+		LabelledPartialTransitionSystem system = new LabelledPartialTransitionSystem();
+		Path measure = this.directory.resolve("measure");
+		new TransitionSystemCache(measure, TransitionSystemCache.DEFAULT_MAXIMUM_SIZE).put("system", system);
+		long size = Files.size(measure.resolve("system.lpts"));
+
+		// there is room for two copies of the system, and using s0 makes s1 the least recently used one
+		TransitionSystemCache cache = new TransitionSystemCache(this.directory.resolve("cache"), 2 * size);
+		cache.put("s0", system);
+		cache.put("s1", system);
+		assertNotNull(cache.get("s0"));
+		cache.put("s2", system);
+
+		assertNull(cache.get("s1"));
+		assertNotNull(cache.get("s0"));
+		assertNotNull(cache.get("s2"));
+	}
+}
@@ -0,0 +1,200 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import algo.LabelledPartialTransitionSystem;
+
+/**
+ * Checks that the .tra and .lab files written by JPF are read as they were
+ * read with regular expressions, that malformed files are rejected with their
+ * line and column, and compares the time it takes to read large files.
+ */
+public class TransitionSystemReaderTest {
+	private static final Random RANDOM = new Random();
+	private static final int SINK_STATE = -2;
+	private static final int FIELDS = 3;
+
+	@TempDir
+	Path directory;
+
+	/*
+	 * Writes a random .tra file with the given number of states, of which one in
+	 * the given rate is not fully explored, and a matching .lab file.
+	 */
+	private void write(Path tra, Path lab, int states, int partialRate) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tra))) {
+			writer.printf("%d -> %d%n", -1, 0);
+			StringJoiner partial = new StringJoiner(" ");
+			for (int state = 0; state < states; state++) {
+				for (int i = RANDOM.nextInt(4); i > 0; i--) {
+					writer.printf("%d -> %d%n", state, RANDOM.nextInt(states));
+				}
+				if (RANDOM.nextInt(partialRate) == 0) {
+					writer.printf("%d -> %d%n", state, SINK_STATE);
+					partial.add("" + state);
+				}
+			}
+			writer.print(partial.toString());
+		}
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(lab))) {
+			StringJoiner names = new StringJoiner(" ");
+			names.add("0=\"init\"");
+			for (int field = 0; field < FIELDS; field++) {
+				names.add((2 * field + 1) + "=\"true__algo_JavaFields_p" + (field + 1) + "\"");
+				names.add((2 * field + 2) + "=\"false__algo_JavaFields_p" + (field + 1) + "\"");
+			}
+			writer.println(names);
+			for (int state = 0; state < states; state++) {
+				StringJoiner labels = new StringJoiner(" ");
+				if (state == 0) {
+					labels.add("0");
+				}
+				for (int field = 0; field < FIELDS; field++) {
+					labels.add("" + (2 * field + 1 + RANDOM.nextInt(2)));
+				}
+				writer.println(state + ": " + labels);
+			}
+		}
+	}
+
+	/*
+	 * Reads the given files with the regular expressions that were used before.
+	 */
+	private static LabelledPartialTransitionSystem readWithRegularExpressions(Path lab, Path tra)
+			throws IOException {
+		final String TRANSITION = "-?\\d+\\s->\\s\\d+";
+		final String TRANSITION_DELIMETER = "\\s->\\s";
+		final String PARTIAL = "(\\d+\\s?)+";
+		final String PARTIAL_DELIMETER = "\\s";
+		final String MAPPING = "(\\d+=\"(([a-zA-Z_$][a-zA-Z\\d_$]*\\.)*[a-zA-Z_$][a-zA-Z\\d_$]*)\"\\s?)+";
+		final String MAPPING_DELIMETER = "\\s";
+		final String LABELLING = "\\d+:\\s(\\d+\\s?)+";
+		final String LABELLING_DELIMETER = ":\\s";
+
+		LabelledPartialTransitionSystem.Builder builder = new LabelledPartialTransitionSystem.Builder();
+		try (Stream<String> lines = Files.lines(tra)) {
+			lines.forEach(line -> {
+				if (line.matches(TRANSITION)) {
+					String[] t = line.split(TRANSITION_DELIMETER);
+					builder.addTransition(Integer.parseInt(t[0]), Integer.parseInt(t[1]));
+				}
+				if (line.matches(PARTIAL)) {
+					Pattern.compile(PARTIAL_DELIMETER).splitAsStream(line).mapToInt(Integer::parseInt)
+							.forEach(builder::addPartial);
+				}
+			});
+		}
+		builder.addState(SINK_STATE);
+		Map<String, Integer> fields = new HashMap<String, Integer>();
+		try (Stream<String> lines = Files.lines(lab)) {
+			lines.forEach(line -> {
+				if (line.matches(LABELLING)) {
+					String[] lr = line.split(LABELLING_DELIMETER);
+					int state = Integer.parseInt(lr[0]);
+					Pattern.compile(MAPPING_DELIMETER).splitAsStream(lr[1]).map(Integer::parseInt)
+							.filter(fields::containsValue).forEach(label -> builder.addLabel(state, label));
+				}
+				if (line.matches(MAPPING)) {
+					Pattern.compile(MAPPING_DELIMETER).splitAsStream(line).forEach(e -> {
+						String l = e.replace("\"", "");
+						int index = Integer.parseInt(l.split("=")[0]);
+						String[] LR = l.split("=")[1].split("__");
+						if (LR[0].equals("true")) {
+							fields.put(LR[1].replace("_", "."), index);
+							builder.addField(LR[1].replace("_", "."), index);
+						}
+					});
+				}
+			});
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Checks that the given systems have the same states, transitions, partial
+	 * states, labelling and fields.
+	 */
+	private static void assertSameSystem(LabelledPartialTransitionSystem expected,
+			LabelledPartialTransitionSystem actual) {
+		assertEquals(expected.getStates(), actual.getStates());
+		assertEquals(expected.getTransitions(), actual.getTransitions());
+		assertEquals(expected.getPartial(), actual.getPartial());
+		assertEquals(expected.getLabelling(), actual.getLabelling());
+		assertEquals(expected.getFields(), actual.getFields());
+	}
+
+	@Test
+	void testRandom() throws IOException {
+		Path tra = this.directory.resolve("random.tra");
+		Path lab = this.directory.resolve("random.lab");
+		for (int i = 0; i < 100; i++) {
+			this.write(tra, lab, 1 + RANDOM.nextInt(100), 10);
+			assertSameSystem(readWithRegularExpressions(lab, tra),
+					new LabelledPartialTransitionSystem(lab.toString(), tra.toString()));
+		}
+	}
+
+	/*
+	 * Reads the given content as a .tra file and returns the message of the
+	 * exception.
+	 */
+	private String error(String content) throws IOException {
+		Path tra = this.directory.resolve("error.tra");
+		Path lab = this.directory.resolve("error.lab");
+		Files.write(tra, content.getBytes());
+		Files.write(lab, new byte[0]);
+		return assertThrows(IOException.class,
+				() -> new LabelledPartialTransitionSystem(lab.toString(), tra.toString())).getMessage();
+	}
+
+	@Test
+	void testErrors() throws IOException {
+		assertTrue(error("0 -> 1\n1 -= 2\n").endsWith(":2:4: expected '>' but found '='"));
+		assertTrue(error("0 -> 1\r\n\r\n1 -> x\r\n").endsWith(":3:6: expected a number but found 'x'"));
+		assertTrue(error("0 -> 1 2\n").endsWith(":1:8: expected the end of the line but found '2'"));
+		assertTrue(error("1 => 2\n").endsWith(":1:3: expected the end of the line but found '='"));
+		assertTrue(error("1 2 -3").endsWith(":1:5: expected the end of the line but found '-'"));
+		assertTrue(error("0 -> 99999999999\n").endsWith(":1:6: expected a number that fits in an int"));
+	}
+
+	@Test
+	void testBenchmark() throws IOException {
+		Path tra = this.directory.resolve("large.tra");
+		Path lab = this.directory.resolve("large.lab");
+		// the regular expressions overflow the stack for long lines of states that are not fully explored
+		this.write(tra, lab, 100000, 1000);
+
+		// warm up both readers
+		for (int i = 0; i < 2; i++) {
+			readWithRegularExpressions(lab, tra);
+			new LabelledPartialTransitionSystem(lab.toString(), tra.toString());
+		}
+
+		long start = System.nanoTime();
+		LabelledPartialTransitionSystem expected = readWithRegularExpressions(lab, tra);
+		long regular = System.nanoTime() - start;
+		start = System.nanoTime();
+		LabelledPartialTransitionSystem actual = new LabelledPartialTransitionSystem(lab.toString(), tra.toString());
+		long scanned = System.nanoTime() - start;
+
+		System.out.printf("Reading %d bytes: regular expressions %d ms, scanner %d ms%n",
+				Files.size(tra) + Files.size(lab), regular / 1000000, scanned / 1000000);
+		assertSameSystem(expected, actual);
+	}
+}
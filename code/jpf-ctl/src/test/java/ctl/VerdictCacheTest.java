@@ -0,0 +1,110 @@
+package ctl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import algo.VerdictCache;
+
+/**
+ * Checks that the verdict cache returns the verdicts it stored, counts its hits
+ * and misses, and removes the least recently used verdicts when it grows too
+ * large.
+ */
+public class VerdictCacheTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	void testGet() throws IOException {
+		VerdictCache cache = new VerdictCache(this.directory, VerdictCache.DEFAULT_MAXIMUM_SIZE);
+		assertNull(cache.get("model", "p"));
+		cache.put("model", "p", new VerdictCache.Verdict(true, null));
+		cache.put("model", "q", new VerdictCache.Verdict(false, "counter example"));
+
+		VerdictCache.Verdict holds = cache.get("model", "p");
+		assertTrue(holds.holds());
+		assertNull(holds.getCounterExample());
+		VerdictCache.Verdict fails = cache.get("model", "q");
+		assertFalse(fails.holds());
+		assertEquals("counter example", fails.getCounterExample());
+		assertNull(cache.get("other model", "p"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		// the verdicts are persistent
+		VerdictCache reopened = new VerdictCache(this.directory, VerdictCache.DEFAULT_MAXIMUM_SIZE);
+		assertNotNull(reopened.get("model", "p"));
+		assertEquals(1, reopened.getHits());
+		assertEquals(0, reopened.getMisses());
+	}
+
+	@Test
+	void testEvict() throws IOException {
+		StringBuilder counterExample = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			counterExample.append("state ").append(i).append('\n');
+		}
+		VerdictCache.Verdict verdict = new VerdictCache.Verdict(false, counterExample.toString());
+		VerdictCache cache = new VerdictCache(this.directory, 3 * (counterExample.length() + 100));
+		for (int i = 0; i < 3; i++) {
+			cache.put("model", "p" + i, verdict);
+			age();
+		}
+		// there is room for three verdicts, and using p0 makes p1 the least recently used verdict
+		assertNotNull(cache.get("model", "p0"));
+		cache.put("model", "p3", verdict);
+
+		assertNull(cache.get("model", "p1"));
+		assertNotNull(cache.get("model", "p0"));
+		assertNotNull(cache.get("model", "p3"));
+	}
+
+	@Test
+	void testReopen() throws IOException {
+		VerdictCache.Verdict verdict = new VerdictCache.Verdict(true, null);
+		VerdictCache cache = new VerdictCache(this.directory, VerdictCache.DEFAULT_MAXIMUM_SIZE);
+		for (int i = 0; i < 3; i++) {
+			cache.put("model", "p" + i, verdict);
+			age();
+		}
+		long size;
+		try (Stream<Path> files = Files.list(this.directory)) {
+			size = files.mapToLong(file -> file.toFile().length()).sum();
+		}
+
+		// a cache that lists the directory orders the verdicts by when they were last used
+		VerdictCache reopened = new VerdictCache(this.directory, size);
+		assertNotNull(reopened.get("model", "p0"));
+		reopened.put("model", "p3", verdict);
+
+		assertNull(reopened.get("model", "p1"));
+		assertNotNull(reopened.get("model", "p0"));
+		assertNotNull(reopened.get("model", "p2"));
+		assertNotNull(reopened.get("model", "p3"));
+	}
+
+	/*
+	 * Makes the cached verdicts appear to have been used a second earlier.
+	 */
+	private void age() throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				long modified = Files.getLastModifiedTime(file).toMillis();
+				Files.setLastModifiedTime(file, FileTime.fromMillis(modified - 1000));
+			}
+		}
+	}
+}